@@ -0,0 +1,53 @@
+package com.library.system.config;
+
+import com.library.system.service.WriteAdmissionLimiter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Admits circulation POSTs through {@link WriteAdmissionLimiter} and answers the ones over
+ * its cap at once with 503 and Retry-After, instead of letting them wait on the writer.
+ * Reads never pass through here, so catalog pages stay fast during a checkout storm.
+ */
+public class AdmissionInterceptor implements HandlerInterceptor {
+
+    private static final String STARTED_AT = AdmissionInterceptor.class.getName() + ".startedAt";
+
+    private final WriteAdmissionLimiter limiter;
+    private final String retryAfterSeconds;
+
+    public AdmissionInterceptor(WriteAdmissionLimiter limiter, Duration retryAfter) {
+        this.limiter = limiter;
+        this.retryAfterSeconds = String.valueOf(Math.max(1, retryAfter.toSeconds()));
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if (!HttpMethod.POST.matches(request.getMethod())) {
+            return true;
+        }
+        if (!limiter.tryAcquire()) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "The library is busy, please try again shortly");
+            return false;
+        }
+        request.setAttribute(STARTED_AT, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Long startedAt = (Long) request.getAttribute(STARTED_AT);
+        if (startedAt != null) {
+            request.removeAttribute(STARTED_AT);
+            limiter.release(System.nanoTime() - startedAt);
+        }
+    }
+}
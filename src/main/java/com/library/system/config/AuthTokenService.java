@@ -0,0 +1,193 @@
+package com.library.system.config;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.system.domain.UserRole;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Signed, short-lived login tokens for library.security.mode=token. An access token carries
+ * everything {@link CurrentUser} needs, so any instance sharing the secret can authenticate a
+ * request without a session or a query. A longer-lived refresh token only names the user; it
+ * is exchanged for a new pair through the login cache, so deactivated users stop refreshing.
+ */
+@Component
+@ConditionalOnProperty(name = "library.security.mode", havingValue = "token")
+public class AuthTokenService {
+
+    private static final Logger log = LoggerFactory.getLogger(AuthTokenService.class);
+
+    public static final String ACCESS_COOKIE = "LIBRARY_ACCESS";
+    public static final String REFRESH_COOKIE = "LIBRARY_REFRESH";
+
+    private static final String ACCESS = "access";
+    private static final String REFRESH = "refresh";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final ObjectMapper objectMapper;
+    private final SecretKeySpec key;
+    private final Duration accessTtl;
+    private final Duration refreshTtl;
+
+    public AuthTokenService(ObjectMapper objectMapper,
+                            @Value("${library.security.token.secret:}") String secret,
+                            @Value("${library.security.token.access-ttl:PT15M}") Duration accessTtl,
+                            @Value("${library.security.token.refresh-ttl:P14D}") Duration refreshTtl) {
+        this.objectMapper = objectMapper;
+        this.accessTtl = accessTtl;
+        this.refreshTtl = refreshTtl;
+        byte[] keyBytes;
+        if (secret.isBlank()) {
+            log.warn("No library.security.token.secret set; using a random key, so logins end on restart "
+                + "and are not accepted by other instances");
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(keyBytes, "HmacSHA256");
+    }
+
+    /**
+     * Set fresh access and refresh cookies for this user.
+     */
+    public void writeCookies(CurrentUser user, HttpServletRequest request, HttpServletResponse response) {
+        Instant now = Instant.now();
+        addCookie(response, request, ACCESS_COOKIE, issue(new Claims(ACCESS, user.getId(), user.getUsername(),
+            user.getFullName(), user.getRole(), now.plus(accessTtl).getEpochSecond())), accessTtl);
+        addCookie(response, request, REFRESH_COOKIE, issue(new Claims(REFRESH, user.getId(), user.getUsername(),
+            null, null, now.plus(refreshTtl).getEpochSecond())), refreshTtl);
+    }
+
+    /**
+     * The user an unexpired access token was issued to, or null if it is missing, expired or forged.
+     */
+    public CurrentUser readAccessToken(String token) {
+        Claims claims = verify(token, ACCESS);
+        if (claims == null) {
+            return null;
+        }
+        return new CurrentUser(claims.uid(), claims.sub(), "", true,
+            List.of(new SimpleGrantedAuthority("ROLE_" + claims.role().name())), claims.name(), claims.role());
+    }
+
+    /**
+     * The username an unexpired refresh token was issued to, or null.
+     */
+    public String readRefreshToken(String token) {
+        Claims claims = verify(token, REFRESH);
+        return claims != null ? claims.sub() : null;
+    }
+
+    /**
+     * The value followed by its signature, for state kept on the client.
+     */
+    public String sign(byte[] value) {
+        return ENCODER.encodeToString(value) + "." + ENCODER.encodeToString(mac(value));
+    }
+
+    /**
+     * The value of a string produced by {@link #sign}, or null if it was altered.
+     */
+    public byte[] unsign(String signed) {
+        if (signed == null) {
+            return null;
+        }
+        int dot = signed.indexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        try {
+            byte[] value = DECODER.decode(signed.substring(0, dot));
+            byte[] signature = DECODER.decode(signed.substring(dot + 1));
+            return MessageDigest.isEqual(mac(value), signature) ? value : null;
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    public static String cookieValue(HttpServletRequest request, String name) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (name.equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    public static void addCookie(HttpServletResponse response, HttpServletRequest request,
+                                 String name, String value, Duration maxAge) {
+        ResponseCookie cookie = ResponseCookie.from(name, value)
+            .path(request.getContextPath().isEmpty() ? "/" : request.getContextPath())
+            .httpOnly(true)
+            .secure(request.isSecure())
+            .sameSite("Lax")
+            .maxAge(maxAge)
+            .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+    }
+
+    private String issue(Claims claims) {
+        try {
+            return sign(objectMapper.writeValueAsBytes(claims));
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Could not write login token", ex);
+        }
+    }
+
+    private Claims verify(String token, String type) {
+        byte[] payload = unsign(token);
+        if (payload == null) {
+            return null;
+        }
+        try {
+            Claims claims = objectMapper.readValue(payload, Claims.class);
+            if (!type.equals(claims.typ()) || claims.exp() < Instant.now().getEpochSecond()) {
+                return null;
+            }
+            return claims;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private byte[] mac(byte[] value) {
+        try {
+            // Mac instances are not thread-safe and cheap to create
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            return mac.doFinal(value);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("HmacSHA256 unavailable", ex);
+        }
+    }
+
+    private record Claims(String typ, Long uid, String sub, String name, UserRole role, long exp) {
+    }
+}
@@ -0,0 +1,128 @@
+package com.library.system.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * BCrypt on a small dedicated pool. A burst of logins queues here instead of occupying every
+ * core, so catalog pages keep their CPU; when the queue is full the login is refused at once.
+ * The cost is calibrated at startup (see {@link #calibrateStrength}), and hashes made with a
+ * lower cost report {@link #upgradeEncoding} so they are re-hashed on the next login.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(BoundedPasswordEncoder.class);
+
+    // Calibration measures at BCrypt's default cost and never goes below it
+    static final int DEFAULT_STRENGTH = 10;
+    private static final int MAX_STRENGTH = 16;
+
+    private final BCryptPasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final Timer queueWaitTimer;
+    private final Timer hashTimer;
+
+    public BoundedPasswordEncoder(int strength, int threads, int queueCapacity, MeterRegistry meterRegistry) {
+        this.delegate = new BCryptPasswordEncoder(strength);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("password-hash-"));
+        this.queueWaitTimer = Timer.builder("library.password.hashing.queue-wait")
+            .description("Time password checks wait for a hashing thread")
+            .register(meterRegistry);
+        this.hashTimer = Timer.builder("library.password.hashing.duration")
+            .description("Time taken by one BCrypt hash or verification")
+            .register(meterRegistry);
+        meterRegistry.gauge("library.password.hashing.queued", executor, pool -> pool.getQueue().size());
+        meterRegistry.gauge("library.password.hashing.active", executor, ThreadPoolExecutor::getActiveCount);
+        log.info("Password hashing: BCrypt strength {} on {} threads, queue of {}", strength, threads, queueCapacity);
+    }
+
+    /**
+     * The highest BCrypt strength whose verification stays within the target on this host,
+     * estimated from a timed hash at the default strength (each step doubles the work).
+     */
+    public static int calibrateStrength(Duration target, int minStrength) {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(DEFAULT_STRENGTH);
+        String hash = probe.encode("calibration");
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            probe.matches("calibration", hash);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        int strength = DEFAULT_STRENGTH;
+        while (strength < MAX_STRENGTH && best * (1L << (strength + 1 - DEFAULT_STRENGTH)) <= target.toNanos()) {
+            strength++;
+        }
+        strength = Math.max(minStrength, strength);
+        log.info("Password hashing: strength {} measured at {}ms, calibrated to strength {} for a {}ms target",
+            DEFAULT_STRENGTH, best / 1_000_000, strength, target.toMillis());
+        return strength;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private <T> T run(Supplier<T> hashing) {
+        long submittedAt = System.nanoTime();
+        Future<T> result;
+        try {
+            result = executor.submit(() -> {
+                long startedAt = System.nanoTime();
+                queueWaitTimer.record(startedAt - submittedAt, TimeUnit.NANOSECONDS);
+                try {
+                    return hashing.get();
+                } finally {
+                    hashTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            throw new AuthenticationServiceException("Too many sign-ins in progress, please try again shortly");
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException ex) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AuthenticationServiceException("Interrupted while checking the password", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Password hashing failed", ex.getCause());
+        }
+    }
+}
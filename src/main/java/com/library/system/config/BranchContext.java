@@ -0,0 +1,184 @@
+package com.library.system.config;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * The branch whose database the current thread works against.
+ * <p>
+ * With sharding enabled every branch has its own SQLite file and writer, and
+ * {@link BranchRoutingDataSource} hands out connections for the branch set here. Books,
+ * loans and reservations live in the shard of the branch that owns the copy, and their
+ * ids carry that branch in the bits above {@link #BRANCH_ID_BITS}, so any id can be routed
+ * without a lookup. A transaction is bound to one branch: switching inside one fails.
+ * <p>
+ * Without sharding there is a single branch and every method here simply runs the work.
+ */
+public final class BranchContext {
+
+    /**
+     * The branch kept in the primary database, and the one all existing rows belong to.
+     */
+    public static final String DEFAULT_BRANCH = "MAIN";
+
+    /**
+     * Ids below 2^40 belong to the first branch, the next 2^40 to the second and so on.
+     */
+    public static final int BRANCH_ID_BITS = 40;
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private static volatile List<String> branches = List.of(DEFAULT_BRANCH);
+    private static volatile ExecutorService fanOutExecutor;
+
+    private BranchContext() {
+    }
+
+    /**
+     * Set the branches, in id order. Called once the shard pools are built; the order is
+     * part of every stored id, so new branches go at the end.
+     */
+    static synchronized void configure(List<String> configured) {
+        if (configured.isEmpty() || !DEFAULT_BRANCH.equals(configured.get(0))) {
+            throw new IllegalStateException("The first branch must be " + DEFAULT_BRANCH + ": it lives in the primary database");
+        }
+        if (configured.stream().distinct().count() != configured.size()) {
+            throw new IllegalStateException("Duplicate branch in " + configured);
+        }
+        branches = List.copyOf(configured);
+        if (configured.size() > 1 && fanOutExecutor == null) {
+            fanOutExecutor = Executors.newFixedThreadPool(configured.size(), runnable -> {
+                Thread thread = new Thread(runnable, "branch-fan-out");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public static List<String> branches() {
+        return branches;
+    }
+
+    public static boolean isSharded() {
+        return branches.size() > 1;
+    }
+
+    public static boolean isBranch(String branch) {
+        return branches.contains(branch);
+    }
+
+    /**
+     * The branch the current thread is routed to.
+     */
+    public static String current() {
+        String branch = CURRENT.get();
+        return branch != null ? branch : DEFAULT_BRANCH;
+    }
+
+    /**
+     * The branch whose shard holds the row with this id.
+     */
+    public static String branchOf(Long id) {
+        if (!isSharded() || id == null) {
+            return DEFAULT_BRANCH;
+        }
+        long index = id >>> BRANCH_ID_BITS;
+        if (index >= branches.size()) {
+            throw new IllegalArgumentException("Id " + id + " does not belong to a configured branch");
+        }
+        return branches.get((int) index);
+    }
+
+    /**
+     * Position of the branch in the id space.
+     */
+    public static int indexOf(String branch) {
+        int index = branches.indexOf(branch);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown branch: " + branch);
+        }
+        return index;
+    }
+
+    /**
+     * Run the work against the given branch's shard. It must start its own transaction,
+     * or already be inside one on the same branch.
+     */
+    public static <T> T call(String branch, Supplier<T> work) {
+        if (!isSharded()) {
+            return work.get();
+        }
+        String target = branch != null ? branch : DEFAULT_BRANCH;
+        String previous = CURRENT.get();
+        if (target.equals(current())) {
+            return work.get();
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Cannot switch to branch " + target + " inside a transaction on branch " + current());
+        }
+        indexOf(target);
+        CURRENT.set(target);
+        try {
+            return work.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    public static void run(String branch, Runnable work) {
+        call(branch, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Run the work once per branch, one after another.
+     */
+    public static void forEachBranch(Runnable work) {
+        for (String branch : branches) {
+            run(branch, work);
+        }
+    }
+
+    /**
+     * Run a query against every branch at once and concatenate the results in branch order.
+     * Inside a transaction the current branch is queried on the calling thread, so it sees
+     * the transaction's own writes and does not wait for the connection the caller holds.
+     */
+    public static <T> List<T> fanOut(Supplier<? extends Collection<T>> query) {
+        if (!isSharded()) {
+            return new ArrayList<>(query.get());
+        }
+        String inline = TransactionSynchronizationManager.isActualTransactionActive() ? current() : null;
+        List<CompletableFuture<? extends Collection<T>>> parts = new ArrayList<>();
+        for (String branch : branches) {
+            parts.add(branch.equals(inline) ? null : CompletableFuture.supplyAsync(() -> call(branch, query), fanOutExecutor));
+        }
+        if (inline != null) {
+            parts.set(branches.indexOf(inline), CompletableFuture.completedFuture(query.get()));
+        }
+        List<T> merged = new ArrayList<>();
+        try {
+            parts.forEach(part -> merged.addAll(part.join()));
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,137 @@
+package com.library.system.config;
+
+import com.library.system.domain.BranchScoped;
+import com.library.system.domain.BranchScopedId;
+import org.hibernate.HibernateException;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.jdbc.spi.JdbcCoordinator;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.OnExecutionGenerator;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.IdentityGenerator;
+import org.hibernate.id.PostInsertIdentityPersister;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+import org.hibernate.id.insert.InsertGeneratedIdentifierDelegate;
+import org.hibernate.mapping.SimpleValue;
+
+import java.lang.reflect.Member;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * With only the primary database this is plain {@code IDENTITY}: the database assigns the id
+ * on insert.
+ * <p>
+ * With a shard per branch, ids come from the range of the branch a row belongs to. Each shard
+ * keeps the last id it handed out per table in {@code branch_id_sequences} (created by the V3
+ * migration), bumped on the inserting session's connection, so the increment commits or rolls
+ * back with the row and every instance writing to the shard draws from the same counter. A
+ * table's counter starts from the highest id already in its range.
+ * <p>
+ * Rows that are not {@link BranchScoped} take the branch of the current context.
+ */
+public class BranchIdGenerator implements IdentifierGenerator, OnExecutionGenerator {
+
+    private static final long RANGE = 1L << BranchContext.BRANCH_ID_BITS;
+
+    private static final String BUMP_SQL = "update branch_id_sequences set last_id = last_id + 1 where name = ?";
+    private static final String READ_SQL = "select last_id from branch_id_sequences where name = ?";
+
+    private final boolean sharded;
+    private final IdentityGenerator identity = new IdentityGenerator();
+    private final String table;
+    private final String startSql;
+
+    public BranchIdGenerator(BranchScopedId config, Member member, CustomIdGeneratorCreationContext context) {
+        this.sharded = BranchContext.isSharded();
+        if (!sharded) {
+            // Schema generation only makes the column an identity column for the identity strategy
+            SimpleValue identifier = (SimpleValue) context.getPersistentClass().getIdentifier();
+            identifier.setIdentifierGeneratorStrategy("identity");
+            context.getPersistentClass().getTable().setIdentifierValue(identifier);
+        }
+        this.table = context.getPersistentClass().getTable().getName();
+        String column = context.getPersistentClass().getIdentifier().getColumns().get(0).getName();
+        this.startSql = "insert into branch_id_sequences (name, last_id) select ?, coalesce(max(" + column + "), ?) + 1 from "
+            + table + " where " + column + " >= ? and " + column + " < ?";
+    }
+
+    @Override
+    public boolean generatedOnExecution() {
+        return !sharded;
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner) {
+        String branch = owner instanceof BranchScoped scoped && scoped.getBranch() != null
+            ? scoped.getBranch() : BranchContext.current();
+        if (!branch.equals(BranchContext.current())) {
+            throw new IllegalStateException("A row of branch " + branch + " cannot be written to the shard of branch " + BranchContext.current());
+        }
+        int index = BranchContext.indexOf(branch);
+        long id = next(session, index);
+        if (id >>> BranchContext.BRANCH_ID_BITS != index) {
+            throw new IllegalStateException("Id range of branch " + index + " is exhausted");
+        }
+        return id;
+    }
+
+    private long next(SharedSessionContractImplementor session, int index) {
+        if (update(session, BUMP_SQL, table) == 0) {
+            long first = index * RANGE;
+            update(session, startSql, table, first, first, first + RANGE);
+        }
+        JdbcCoordinator jdbc = session.getJdbcCoordinator();
+        PreparedStatement statement = jdbc.getStatementPreparer().prepareStatement(READ_SQL);
+        try {
+            statement.setString(1, table);
+            ResultSet rs = jdbc.getResultSetReturn().extract(statement, READ_SQL);
+            if (!rs.next()) {
+                throw new IllegalStateException("No id sequence for " + table);
+            }
+            return rs.getLong(1);
+        } catch (SQLException ex) {
+            throw new HibernateException("Could not read the id sequence of " + table, ex);
+        } finally {
+            jdbc.getLogicalConnection().getResourceRegistry().release(statement);
+            jdbc.afterStatementExecution();
+        }
+    }
+
+    private static int update(SharedSessionContractImplementor session, String sql, Object... parameters) {
+        JdbcCoordinator jdbc = session.getJdbcCoordinator();
+        PreparedStatement statement = jdbc.getStatementPreparer().prepareStatement(sql);
+        try {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            return jdbc.getResultSetReturn().executeUpdate(statement, sql);
+        } catch (SQLException ex) {
+            throw new HibernateException("Could not update the id sequence with: " + sql, ex);
+        } finally {
+            jdbc.getLogicalConnection().getResourceRegistry().release(statement);
+            jdbc.afterStatementExecution();
+        }
+    }
+
+    @Override
+    public boolean referenceColumnsInSql(Dialect dialect) {
+        return identity.referenceColumnsInSql(dialect);
+    }
+
+    @Override
+    public boolean writePropertyValue() {
+        return false;
+    }
+
+    @Override
+    public String[] getReferencedColumnValues(Dialect dialect) {
+        return identity.getReferencedColumnValues(dialect);
+    }
+
+    @Override
+    public InsertGeneratedIdentifierDelegate getGeneratedIdentifierDelegate(PostInsertIdentityPersister persister) {
+        return identity.getGeneratedIdentifierDelegate(persister);
+    }
+}
@@ -0,0 +1,57 @@
+package com.library.system.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends each connection request to the shard of the branch in {@link BranchContext}; each
+ * shard is a {@link ReadWriteRoutingDataSource} with its own writer and readers, so
+ * checkouts at different branches never wait for the same write lock.
+ * Must sit behind a LazyConnectionDataSourceProxy like the read/write routing it wraps.
+ */
+public class BranchRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private final Map<String, ReadWriteRoutingDataSource> shards;
+
+    public BranchRoutingDataSource(Map<String, ReadWriteRoutingDataSource> shards) {
+        this.shards = new LinkedHashMap<>(shards);
+        setTargetDataSources(new LinkedHashMap<>(shards));
+        setDefaultTargetDataSource(shards.get(BranchContext.DEFAULT_BRANCH));
+        // Lookups must never fall back to the primary for a branch that has no shard
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return BranchContext.current();
+    }
+
+    public Map<String, ReadWriteRoutingDataSource> getShards() {
+        return shards;
+    }
+
+    /**
+     * The database URL of every branch, for work that opens its own connections per file
+     * (backups, checkpoints). Just the primary URL when routing is off.
+     */
+    public static Map<String, String> databaseUrls(BranchRoutingDataSource routing, String primaryUrl) {
+        Map<String, String> urls = new LinkedHashMap<>();
+        if (routing == null) {
+            urls.put(BranchContext.DEFAULT_BRANCH, primaryUrl);
+            return urls;
+        }
+        routing.shards.forEach((branch, shard) -> urls.put(branch, shard.getWriter().getJdbcUrl()));
+        return urls;
+    }
+
+    @Override
+    public void close() {
+        shards.values().forEach(ReadWriteRoutingDataSource::close);
+        if (shards.size() > 1) {
+            BranchContext.configure(List.of(BranchContext.DEFAULT_BRANCH));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.library.system.config;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.web.servlet.FlashMap;
+import org.springframework.web.servlet.support.AbstractFlashMapManager;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps flash attributes in a signed cookie instead of the HTTP session, so redirect-after-POST
+ * messages work in token mode without creating a session per patron.
+ */
+public class CookieFlashMapManager extends AbstractFlashMapManager {
+
+    static final String FLASH_COOKIE = "LIBRARY_FLASH";
+
+    private final AuthTokenService tokens;
+    private final ObjectMapper objectMapper;
+
+    public CookieFlashMapManager(AuthTokenService tokens, ObjectMapper objectMapper) {
+        this.tokens = tokens;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected List<FlashMap> retrieveFlashMaps(HttpServletRequest request) {
+        byte[] value = tokens.unsign(AuthTokenService.cookieValue(request, FLASH_COOKIE));
+        if (value == null) {
+            return null;
+        }
+        try {
+            List<StoredFlash> stored = objectMapper.readValue(value, new TypeReference<List<StoredFlash>>() { });
+            List<FlashMap> flashMaps = new ArrayList<>(stored.size());
+            for (StoredFlash flash : stored) {
+                FlashMap flashMap = new FlashMap();
+                flashMap.setTargetRequestPath(flash.path());
+                flashMap.addTargetRequestParams(new LinkedMultiValueMap<>(flash.params()));
+                flashMap.putAll(flash.attributes());
+                flashMap.setExpirationTime(flash.expiresAt());
+                flashMaps.add(flashMap);
+            }
+            return flashMaps;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    @Override
+    protected void updateFlashMaps(List<FlashMap> flashMaps, HttpServletRequest request, HttpServletResponse response) {
+        if (flashMaps.isEmpty()) {
+            AuthTokenService.addCookie(response, request, FLASH_COOKIE, "", Duration.ZERO);
+            return;
+        }
+        List<StoredFlash> stored = flashMaps.stream()
+            .map(flashMap -> new StoredFlash(flashMap.getTargetRequestPath(), flashMap.getTargetRequestParams(),
+                new LinkedHashMap<>(flashMap), flashMap.getExpirationTime()))
+            .toList();
+        try {
+            AuthTokenService.addCookie(response, request, FLASH_COOKIE,
+                tokens.sign(objectMapper.writeValueAsBytes(stored)), Duration.ofSeconds(getFlashMapTimeout()));
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not store flash attributes", ex);
+        }
+    }
+
+    // Each request carries its own cookie, so there is nothing shared to lock
+    @Override
+    protected Object getFlashMapsMutex(HttpServletRequest request) {
+        return null;
+    }
+
+    private record StoredFlash(String path, Map<String, List<String>> params, Map<String, Object> attributes,
+                               long expiresAt) {
+    }
+}
@@ -0,0 +1,40 @@
+package com.library.system.config;
+
+import com.library.system.domain.UserRole;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * The signed-in patron as kept in the security context. Carries what pages need about the
+ * user (id, full name, role) so controllers take it as a parameter instead of querying the
+ * users table on every request; see {@link CurrentUserArgumentResolver}.
+ */
+public class CurrentUser extends User {
+
+    private final Long id;
+    private final String fullName;
+    private final UserRole role;
+
+    public CurrentUser(Long id, String username, String password, boolean enabled,
+                       Collection<? extends GrantedAuthority> authorities, String fullName, UserRole role) {
+        super(username, password, enabled, true, true, true, authorities);
+        this.id = id;
+        this.fullName = fullName;
+        this.role = role;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getFullName() {
+        return fullName;
+    }
+
+    public UserRole getRole() {
+        return role;
+    }
+
+}
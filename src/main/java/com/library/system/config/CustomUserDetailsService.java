@@ -1,41 +1,165 @@
 package com.library.system.config;
 
 import com.library.system.domain.User;
+import com.library.system.domain.UserRole;
 import com.library.system.repository.UserRepository;
-import org.springframework.beans.factory.annotation.Autowired;
+import com.library.system.service.BranchShardService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Loads login details, remembering them for library.security.user-cache.ttl so kiosks that
+ * authenticate constantly do not reach the database each time. Unknown usernames are
+ * remembered too, in a separate and shorter-lived map, so credential stuffing with made-up
+ * names cannot push real users out. UserService invalidates entries when a user changes.
+ * Also stores re-hashed passwords after a login with a hash below the current BCrypt cost.
+ */
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
-    
-    @Autowired
-    private UserRepository userRepository;
-    
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
+
+    private final UserRepository userRepository;
+    private final BranchShardService branchShardService;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final Map<String, CachedUser> users;
+    private final Map<String, Long> unknownUsernames;
+    private long evictions;
+
+    public CustomUserDetailsService(UserRepository userRepository,
+                                    BranchShardService branchShardService,
+                                    @Value("${library.security.user-cache.size:1000}") int size,
+                                    @Value("${library.security.user-cache.ttl:PT5M}") Duration ttl,
+                                    @Value("${library.security.user-cache.negative-size:10000}") int negativeSize,
+                                    @Value("${library.security.user-cache.negative-ttl:PT1M}") Duration negativeTtl) {
+        this.userRepository = userRepository;
+        this.branchShardService = branchShardService;
+        this.ttlNanos = ttl.toNanos();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        this.users = boundedMap(size);
+        this.unknownUsernames = boundedMap(negativeSize);
+    }
+
     @Override
-    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
-        
-        return new org.springframework.security.core.userdetails.User(
-                user.getUsername(),
-                user.getPassword(),
-                user.isActive(),
-                true, // accountNonExpired
-                true, // credentialsNonExpired
-                true, // accountNonLocked
-                getAuthorities(user.getRole().name())
-        );
-    }
-    
+    public CurrentUser loadUserByUsername(String username) throws UsernameNotFoundException {
+        long now = System.nanoTime();
+        long evictionsBefore;
+        synchronized (this) {
+            evictionsBefore = evictions;
+            CachedUser cached = users.get(username);
+            if (cached != null && now - cached.loadedAt() < ttlNanos) {
+                return cached.toUserDetails();
+            }
+            Long missedAt = unknownUsernames.get(username);
+            if (missedAt != null && now - missedAt < negativeTtlNanos) {
+                throw new UsernameNotFoundException("User not found: " + username);
+            }
+        }
+
+        User user = userRepository.findByUsername(username).orElse(null);
+        synchronized (this) {
+            // A user changed while we were reading: use the result, but do not keep it
+            boolean cacheable = evictions == evictionsBefore;
+            if (user == null) {
+                if (cacheable) {
+                    unknownUsernames.put(username, now);
+                }
+                throw new UsernameNotFoundException("User not found: " + username);
+            }
+            CachedUser cached = cache(user, now);
+            if (cacheable) {
+                users.put(username, cached);
+            }
+            return cached.toUserDetails();
+        }
+    }
+
+    /**
+     * Called by Spring Security after a successful login whose stored hash used a lower cost
+     * than the encoder's, with the password re-hashed at the current cost.
+     */
+    @Override
+    @Transactional
+    public CurrentUser updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userRepository.findByUsername(userDetails.getUsername())
+            .orElseThrow(() -> new UsernameNotFoundException("User not found: " + userDetails.getUsername()));
+        user.setPassword(newPassword);
+        userRepository.save(user);
+        invalidate(user.getId(), user.getUsername());
+        branchShardService.usersChanged(List.of(user.getId()));
+        return cache(user, System.nanoTime()).toUserDetails();
+    }
+
+    /**
+     * Forget the user with this id and anything remembered under this username, now and again
+     * once the current transaction commits, so a login racing the change cannot re-cache it.
+     */
+    public void invalidate(Long userId, String username) {
+        evict(userId, username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(userId, username);
+                }
+            });
+        }
+    }
+
+    private synchronized void evict(Long userId, String username) {
+        evictions++;
+        if (username != null) {
+            users.remove(username);
+            unknownUsernames.remove(username);
+        }
+        if (userId != null) {
+            // Also catches the entry under the old name when a username changes
+            users.values().removeIf(cached -> userId.equals(cached.userId()));
+        }
+    }
+
+    private CachedUser cache(User user, long now) {
+        return new CachedUser(user.getId(), user.getUsername(), user.getPassword(), user.isActive(),
+            getAuthorities(user.getRole().name()), user.getFullName(), user.getRole(), now);
+    }
+
     private Collection<? extends GrantedAuthority> getAuthorities(String role) {
         return Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + role));
     }
+
+    private static <V> Map<String, V> boundedMap(int maxEntries) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    private record CachedUser(Long userId, String username, String password, boolean enabled,
+                              Collection<? extends GrantedAuthority> authorities, String fullName,
+                              UserRole role, long loadedAt) {
+
+        /**
+         * A fresh instance every time: Spring Security erases the password of the one it is given.
+         */
+        CurrentUser toUserDetails() {
+            return new CurrentUser(userId, username, password, enabled, authorities, fullName, role);
+        }
+    }
 }
@@ -0,0 +1,142 @@
+package com.library.system.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits SQLite access into one writer connection and a pool of read-only connections.
+ * In WAL mode readers never block the writer (or each other), so catalog reads served by
+ * {@code @Transactional(readOnly = true)} methods no longer queue behind checkouts.
+ * <p>
+ * Both pools start from the regular {@code spring.datasource.*} settings; the writer is
+ * always capped at one connection and readers are opened with SQLite's read-only flag.
+ * <p>
+ * With library.sharding.enabled every branch after the first gets a database file of its
+ * own in library.sharding.directory, with its own writer and readers (see {@link BranchContext}).
+ */
+@Configuration
+@ConditionalOnProperty(name = "library.datasource.routing.enabled", havingValue = "true")
+public class DataSourceRoutingConfig {
+
+    // SQLITE_OPEN_READONLY, passed through to the driver as the open_mode property
+    private static final String SQLITE_OPEN_READONLY = "1";
+
+    private static final String SQLITE_URL_PREFIX = "jdbc:sqlite:";
+
+    @Bean
+    public ReadWriteRoutingDataSource readWriteRoutingDataSource(DataSourceProperties properties,
+                                                                 Environment environment,
+                                                                 SqliteTuning sqliteTuning,
+                                                                 @Value("${library.datasource.routing.reader-pool-size:0}") int readerPoolSize) {
+        return createShard(properties, environment, sqliteTuning, readerPoolSize, properties.determineUrl(), "sqlite");
+    }
+
+    @Bean
+    public BranchRoutingDataSource branchRoutingDataSource(ReadWriteRoutingDataSource readWriteRoutingDataSource,
+                                                           DataSourceProperties properties,
+                                                           Environment environment,
+                                                           SqliteTuning sqliteTuning,
+                                                           @Value("${library.datasource.routing.reader-pool-size:0}") int readerPoolSize,
+                                                           @Value("${library.sharding.enabled:false}") boolean shardingEnabled,
+                                                           @Value("${library.sharding.branches:MAIN}") List<String> branches,
+                                                           @Value("${library.sharding.directory:shards}") String directory) {
+        Map<String, ReadWriteRoutingDataSource> shards = new LinkedHashMap<>();
+        shards.put(BranchContext.DEFAULT_BRANCH, readWriteRoutingDataSource);
+        if (!shardingEnabled) {
+            return new BranchRoutingDataSource(shards);
+        }
+
+        BranchContext.configure(branches);
+        Path shardDirectory = Paths.get(directory);
+        try {
+            Files.createDirectories(shardDirectory);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to create shard directory " + shardDirectory, ex);
+        }
+        for (String branch : branches.subList(1, branches.size())) {
+            String url = shardUrl(properties.determineUrl(), shardDirectory, branch);
+            // Not beans themselves, so resolve their writer/reader targets here
+            ReadWriteRoutingDataSource shard = createShard(properties, environment, sqliteTuning, readerPoolSize, url, "sqlite-" + branch.toLowerCase());
+            shard.afterPropertiesSet();
+            shards.put(branch, shard);
+        }
+        return new BranchRoutingDataSource(shards);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(BranchRoutingDataSource branchRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(branchRoutingDataSource);
+    }
+
+    /**
+     * Spring Boot defaults Hibernate to holding its connection for the whole session, which
+     * with open-in-view would pin the first connection of a request (often a reader) for every
+     * later transaction. Releasing after each transaction lets every one be routed on its own.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer routingConnectionHandlingCustomizer() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+            PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+
+    private ReadWriteRoutingDataSource createShard(DataSourceProperties properties, Environment environment,
+                                                   SqliteTuning sqliteTuning, int readerPoolSize, String url, String name) {
+        HikariDataSource writer = createPool(properties, environment, url, name + "-writer");
+        writer.setMaximumPoolSize(1);
+        writer.setMinimumIdle(1);
+        sqliteTuning.apply(writer, true);
+
+        HikariDataSource reader = createPool(properties, environment, url, name + "-reader");
+        int readers = readerPoolSize > 0 ? readerPoolSize : Runtime.getRuntime().availableProcessors();
+        reader.setMaximumPoolSize(readers);
+        reader.setMinimumIdle(1);
+        reader.addDataSourceProperty("open_mode", SQLITE_OPEN_READONLY);
+        // Keeps Hikari's connection reset in line with the open mode; the driver rejects flips
+        reader.setReadOnly(true);
+        sqliteTuning.apply(reader, false);
+
+        return new ReadWriteRoutingDataSource(writer, reader);
+    }
+
+    private HikariDataSource createPool(DataSourceProperties properties, Environment environment, String url, String poolName) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setJdbcUrl(url);
+        pool.setPoolName(poolName);
+        return pool;
+    }
+
+    /**
+     * The primary database URL with its file swapped for the branch's file, keeping the parameters.
+     */
+    static String shardUrl(String primaryUrl, Path directory, String branch) {
+        if (!primaryUrl.startsWith(SQLITE_URL_PREFIX)) {
+            throw new IllegalStateException("Sharding needs a SQLite database, not " + primaryUrl);
+        }
+        int query = primaryUrl.indexOf('?');
+        String parameters = query >= 0 ? primaryUrl.substring(query) : "";
+        return SQLITE_URL_PREFIX + directory.resolve("library-" + branch.toLowerCase() + ".db") + parameters;
+    }
+}
@@ -0,0 +1,130 @@
+package com.library.system.config;
+
+import com.library.system.domain.IdempotentResponse;
+import com.library.system.service.IdempotencyService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.FlashMap;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.support.RequestContextUtils;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Makes circulation POSTs safe to retry. A request carrying an {@value #HEADER} header runs
+ * once; a retry with the same key (same user, URI and form) gets the original redirect and
+ * flash message back without reaching the controller. A retry that arrives while the first
+ * request is still running is answered with 409.
+ */
+public class IdempotencyInterceptor implements HandlerInterceptor {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 100;
+    private static final int MAX_FINGERPRINT_LENGTH = 500;
+    private static final String REDIRECT_PREFIX = "redirect:";
+    private static final String SCOPED_KEY = IdempotencyInterceptor.class.getName() + ".scopedKey";
+    private static final String OUTCOME = IdempotencyInterceptor.class.getName() + ".outcome";
+
+    private final IdempotencyService idempotencyService;
+
+    public IdempotencyInterceptor(IdempotencyService idempotencyService) {
+        this.idempotencyService = idempotencyService;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        String key = request.getHeader(HEADER);
+        Principal principal = request.getUserPrincipal();
+        if (!HttpMethod.POST.matches(request.getMethod()) || key == null || key.isBlank() || principal == null) {
+            return true;
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), HEADER + " must be at most " + MAX_KEY_LENGTH + " characters");
+            return false;
+        }
+
+        String scopedKey = IdempotencyService.scope(principal.getName(), key);
+        Optional<IdempotentResponse> stored = idempotencyService.find(scopedKey);
+        if (stored.isPresent()) {
+            return replay(stored.get(), request, response);
+        }
+        if (!idempotencyService.begin(scopedKey)) {
+            response.sendError(HttpStatus.CONFLICT.value(), "A request with this " + HEADER + " is still in progress");
+            return false;
+        }
+        // The first request may have finished between the lookup and the claim
+        stored = idempotencyService.find(scopedKey);
+        if (stored.isPresent()) {
+            idempotencyService.abandon(scopedKey);
+            return replay(stored.get(), request, response);
+        }
+        request.setAttribute(SCOPED_KEY, scopedKey);
+        return true;
+    }
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler, ModelAndView modelAndView) {
+        String scopedKey = (String) request.getAttribute(SCOPED_KEY);
+        if (scopedKey == null || modelAndView == null || modelAndView.getViewName() == null
+            || !modelAndView.getViewName().startsWith(REDIRECT_PREFIX)) {
+            return;
+        }
+        FlashMap flash = RequestContextUtils.getOutputFlashMap(request);
+        request.setAttribute(OUTCOME, new IdempotentResponse(scopedKey, fingerprint(request),
+            modelAndView.getViewName().substring(REDIRECT_PREFIX.length()), message(flash, "success"), message(flash, "error")));
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        String scopedKey = (String) request.getAttribute(SCOPED_KEY);
+        if (scopedKey == null) {
+            return;
+        }
+        IdempotentResponse outcome = (IdempotentResponse) request.getAttribute(OUTCOME);
+        if (ex == null && outcome != null) {
+            idempotencyService.complete(outcome);
+        } else {
+            idempotencyService.abandon(scopedKey);
+        }
+    }
+
+    private boolean replay(IdempotentResponse stored, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!stored.getRequestFingerprint().equals(fingerprint(request))) {
+            response.sendError(HttpStatus.UNPROCESSABLE_ENTITY.value(), HEADER + " was already used for a different request");
+            return false;
+        }
+        FlashMap flash = RequestContextUtils.getOutputFlashMap(request);
+        if (stored.getSuccessMessage() != null) {
+            flash.put("success", stored.getSuccessMessage());
+        }
+        if (stored.getErrorMessage() != null) {
+            flash.put("error", stored.getErrorMessage());
+        }
+        String location = request.getContextPath() + stored.getRedirectUrl();
+        RequestContextUtils.saveOutputFlashMap(location, request, response);
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.sendRedirect(location);
+        return false;
+    }
+
+    private static String fingerprint(HttpServletRequest request) {
+        StringBuilder fingerprint = new StringBuilder(request.getRequestURI());
+        new TreeMap<>(request.getParameterMap()).forEach((name, values) ->
+            fingerprint.append(fingerprint.indexOf("?") < 0 ? '?' : '&').append(name).append('=').append(String.join(",", values)));
+        return fingerprint.length() > MAX_FINGERPRINT_LENGTH ? fingerprint.substring(0, MAX_FINGERPRINT_LENGTH) : fingerprint.toString();
+    }
+
+    private static String message(FlashMap flash, String name) {
+        Object value = flash != null ? flash.get(name) : null;
+        return value != null ? value.toString() : null;
+    }
+}
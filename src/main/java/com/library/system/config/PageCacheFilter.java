@@ -0,0 +1,137 @@
+package com.library.system.config;
+
+import com.library.system.service.PageCache;
+import com.library.system.service.PageCache.CachedPage;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AuthenticationTrustResolver;
+import org.springframework.security.authentication.AuthenticationTrustResolverImpl;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.FlashMap;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Serves catalog pages to anonymous visitors from {@link PageCache}, so crawlers and the
+ * public catalog do not re-run queries and templates for every hit. Runs after Spring
+ * Security; signed-in users always get a freshly rendered page.
+ * <p>
+ * Cached pages carry an ETag and library.page-cache.max-age in Cache-Control, vary on
+ * Cookie so shared caches never hand them to a signed-in user, and are sent gzipped to
+ * clients that accept it.
+ */
+public class PageCacheFilter extends OncePerRequestFilter {
+
+    static final String BOOK_IDS = PageCacheFilter.class.getName() + ".bookIds";
+    static final String LISTING = PageCacheFilter.class.getName() + ".listing";
+    static final String BY_STATUS = PageCacheFilter.class.getName() + ".byStatus";
+
+    private static final String VARY = HttpHeaders.ACCEPT_ENCODING + ", " + HttpHeaders.COOKIE;
+
+    private final PageCache pageCache;
+    private final String cacheControl;
+    private final AuthenticationTrustResolver trustResolver = new AuthenticationTrustResolverImpl();
+
+    public PageCacheFilter(PageCache pageCache, Duration maxAge) {
+        this.pageCache = pageCache;
+        this.cacheControl = CacheControl.maxAge(maxAge).cachePublic().mustRevalidate().getHeaderValue();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return !HttpMethod.GET.matches(request.getMethod())
+            || (authentication != null && !trustResolver.isAnonymous(authentication));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String key = request.getQueryString() != null
+            ? request.getRequestURI() + "?" + request.getQueryString()
+            : request.getRequestURI();
+        CachedPage cached = pageCache.get(key).orElse(null);
+        if (cached != null) {
+            send(cached, request, response);
+            return;
+        }
+
+        long generation = pageCache.generation();
+        PageCapture wrapper = new PageCapture(response);
+        chain.doFilter(request, wrapper);
+        if (!wrapper.streamed && isCacheable(request, wrapper)) {
+            @SuppressWarnings("unchecked")
+            Set<Long> bookIds = (Set<Long>) request.getAttribute(BOOK_IDS);
+            CachedPage page = pageCache.put(key, generation, wrapper.getContentAsByteArray(), wrapper.getContentType(),
+                bookIds, Boolean.TRUE.equals(request.getAttribute(LISTING)), Boolean.TRUE.equals(request.getAttribute(BY_STATUS)));
+            wrapper.setHeader(HttpHeaders.ETAG, page.etag());
+            wrapper.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+            wrapper.setHeader(HttpHeaders.VARY, VARY);
+        }
+        wrapper.copyBodyToResponse();
+    }
+
+    private void send(CachedPage page, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.setHeader(HttpHeaders.VARY, VARY);
+        if (new ServletWebRequest(request, response).checkNotModified(page.etag())) {
+            return;
+        }
+        response.setContentType(page.contentType());
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            response.setContentLength(page.gzipped().length);
+            response.getOutputStream().write(page.gzipped());
+        } else {
+            response.setContentLength(page.length());
+            response.getOutputStream().write(page.body());
+        }
+    }
+
+    /**
+     * Only complete, impersonal pages: described by {@link PageCacheInterceptor}, rendered as
+     * HTML, and neither setting a cookie nor showing a flash message meant for this visitor.
+     */
+    private static boolean isCacheable(HttpServletRequest request, ContentCachingResponseWrapper response) {
+        FlashMap flash = (FlashMap) request.getAttribute(DispatcherServlet.INPUT_FLASH_MAP_ATTRIBUTE);
+        return response.getStatus() == HttpStatus.OK.value()
+            && request.getAttribute(BOOK_IDS) != null
+            && response.getContentType() != null && response.getContentType().startsWith("text/html")
+            && response.getHeaders(HttpHeaders.SET_COOKIE).isEmpty()
+            && (flash == null || flash.isEmpty());
+    }
+
+    /**
+     * Keeps the page for caching, unless it is flushed while rendering (see
+     * {@link StreamingListRenderer}): then it is sent on as it comes and not cached.
+     */
+    private static final class PageCapture extends ContentCachingResponseWrapper {
+
+        private boolean streamed;
+
+        PageCapture(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            streamed = true;
+            copyBodyToResponse(false);
+            getResponse().flushBuffer();
+        }
+    }
+}
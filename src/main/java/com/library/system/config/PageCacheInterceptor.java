@@ -0,0 +1,46 @@
+package com.library.system.config;
+
+import com.library.system.domain.Book;
+import com.library.system.dto.BookListItem;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tells {@link PageCacheFilter} which books a catalog page shows, from its "book" or "books"
+ * model attribute, so the cached copy can be dropped when one of them changes. Pages it has
+ * not described (redirects, errors) are never cached.
+ */
+public class PageCacheInterceptor implements HandlerInterceptor {
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler, ModelAndView modelAndView) {
+        if (modelAndView == null || modelAndView.getViewName() == null || modelAndView.getViewName().startsWith("redirect:")) {
+            return;
+        }
+        Set<Long> bookIds = new HashSet<>();
+        if (modelAndView.getModel().get("book") instanceof Book book) {
+            bookIds.add(book.getId());
+        }
+        Object books = modelAndView.getModel().get("books");
+        if (books instanceof Collection<?> items) {
+            for (Object item : items) {
+                if (item instanceof BookListItem book) {
+                    bookIds.add(book.id());
+                } else if (item instanceof Book book) {
+                    bookIds.add(book.getId());
+                }
+            }
+        }
+        request.setAttribute(PageCacheFilter.BOOK_IDS, bookIds);
+        request.setAttribute(PageCacheFilter.LISTING, books instanceof Collection<?>);
+        // A list filtered by status gains or loses books on every checkout and return
+        request.setAttribute(PageCacheFilter.BY_STATUS, books instanceof Collection<?>
+            && modelAndView.getModel().get("status") instanceof String status && !status.isBlank());
+    }
+}
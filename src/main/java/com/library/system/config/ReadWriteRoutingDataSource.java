@@ -0,0 +1,47 @@
+package com.library.system.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+
+/**
+ * Sends read-only transactions to the reader pool and everything else to the single
+ * writer connection. Must sit behind a LazyConnectionDataSourceProxy so the lookup
+ * happens after the transaction's read-only flag has been bound.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    static final String WRITER = "writer";
+    static final String READER = "reader";
+
+    private final HikariDataSource writer;
+    private final HikariDataSource reader;
+
+    public ReadWriteRoutingDataSource(HikariDataSource writer, HikariDataSource reader) {
+        this.writer = writer;
+        this.reader = reader;
+        setTargetDataSources(Map.of(WRITER, writer, READER, reader));
+        setDefaultTargetDataSource(writer);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? READER : WRITER;
+    }
+
+    public HikariDataSource getWriter() {
+        return writer;
+    }
+
+    public HikariDataSource getReader() {
+        return reader;
+    }
+
+    @Override
+    public void close() {
+        reader.close();
+        writer.close();
+    }
+}
@@ -1,14 +1,25 @@
 package com.library.system.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+
+import java.time.Duration;
 
 @Configuration
 @EnableWebSecurity
@@ -16,20 +27,43 @@ public class SecurityConfig {
     
     @Autowired
     private UserDetailsService userDetailsService;
+
+    // "session" keeps the login in the HTTP session; "token" uses signed cookies, see AuthTokenService
+    @Value("${library.security.mode:session}")
+    private String mode;
     
+    /**
+     * BCrypt on its own bounded pool; strength 0 picks the cost that verifies in about
+     * library.security.hashing.target on this host.
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(MeterRegistry meterRegistry,
+                                           @Value("${library.security.hashing.strength:0}") int strength,
+                                           @Value("${library.security.hashing.target:PT0.1S}") Duration target,
+                                           @Value("${library.security.hashing.min-strength:10}") int minStrength,
+                                           @Value("${library.security.hashing.threads:0}") int threads,
+                                           @Value("${library.security.hashing.queue-capacity:64}") int queueCapacity) {
+        if (strength <= 0) {
+            strength = BoundedPasswordEncoder.calibrateStrength(target, minStrength);
+        }
+        if (threads <= 0) {
+            // Leave at least half the cores for page rendering during a login burst
+            threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        }
+        return new BoundedPasswordEncoder(strength, threads, queueCapacity, meterRegistry);
     }
     
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, ObjectProvider<AuthTokenService> authTokenService,
+                                           CustomUserDetailsService customUserDetailsService) throws Exception {
         http
             .userDetailsService(userDetailsService)
             .authorizeHttpRequests(authz -> authz
                 .requestMatchers("/", "/search", "/advanced-search", "/books/**", "/css/**", "/js/**", "/images/**").permitAll()
                 .requestMatchers("/auth/login").permitAll()
-                .requestMatchers("/admin/**").hasRole("ADMIN")
+                .requestMatchers(HttpMethod.GET, "/api/v1/books", "/api/v1/books/**").permitAll()
+                .requestMatchers("/actuator/health").permitAll()
+                .requestMatchers("/admin/**", "/actuator/**").hasRole("ADMIN")
                 .anyRequest().authenticated()
             )
             .formLogin(form -> form
@@ -45,8 +79,31 @@ public class SecurityConfig {
                 .deleteCookies("JSESSIONID")
                 .permitAll()
             )
+            // API clients get a 401 rather than a redirect to the login page
+            .exceptionHandling(exceptions -> exceptions.defaultAuthenticationEntryPointFor(
+                new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED), new AntPathRequestMatcher("/api/**")))
             .csrf(csrf -> csrf.disable());
-            
+
+        if ("token".equals(mode)) {
+            AuthTokenService tokens = authTokenService.getObject();
+            SimpleUrlAuthenticationFailureHandler failureHandler = new SimpleUrlAuthenticationFailureHandler("/auth/login?error=true");
+            failureHandler.setAllowSessionCreation(false);
+            http
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .addFilterBefore(new TokenAuthenticationFilter(tokens, customUserDetailsService),
+                    UsernamePasswordAuthenticationFilter.class)
+                .formLogin(form -> form
+                    .successHandler((request, response, authentication) -> {
+                        tokens.writeCookies((CurrentUser) authentication.getPrincipal(), request, response);
+                        response.sendRedirect(request.getContextPath() + "/");
+                    })
+                    .failureHandler(failureHandler)
+                )
+                .logout(logout -> logout
+                    .deleteCookies(AuthTokenService.ACCESS_COOKIE, AuthTokenService.REFRESH_COOKIE)
+                );
+        }
+
         return http.build();
     }
 }
@@ -0,0 +1,85 @@
+package com.library.system.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-connection SQLite PRAGMAs, set from library.sqlite.* so each profile can size them
+ * for its host. Values are passed to the driver as connection properties, which it applies
+ * as PRAGMAs every time a pool opens a connection.
+ * <p>
+ * Pools built by {@link DataSourceRoutingConfig} are tuned there; a plain Hikari pool
+ * (routing disabled) is tuned here as a bean post-processor.
+ */
+@Component
+public class SqliteTuning implements BeanPostProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(SqliteTuning.class);
+
+    private final boolean enabled;
+    private final String journalMode;
+    private final int busyTimeout;
+    private final long mmapSize;
+    private final int cacheSize;
+    private final String synchronous;
+    private final String tempStore;
+    private final long journalSizeLimit;
+    private final int walAutocheckpoint;
+
+    public SqliteTuning(@Value("${library.sqlite.tuning.enabled:true}") boolean enabled,
+                        @Value("${library.sqlite.tuning.journal-mode:WAL}") String journalMode,
+                        @Value("${library.sqlite.tuning.busy-timeout:5000}") int busyTimeout,
+                        @Value("${library.sqlite.tuning.mmap-size:67108864}") long mmapSize,
+                        @Value("${library.sqlite.tuning.cache-size:-8000}") int cacheSize,
+                        @Value("${library.sqlite.tuning.synchronous:NORMAL}") String synchronous,
+                        @Value("${library.sqlite.tuning.temp-store:MEMORY}") String tempStore,
+                        @Value("${library.sqlite.tuning.journal-size-limit:67108864}") long journalSizeLimit,
+                        @Value("${library.sqlite.tuning.wal-autocheckpoint:1000}") int walAutocheckpoint) {
+        this.enabled = enabled;
+        this.journalMode = journalMode;
+        this.busyTimeout = busyTimeout;
+        this.mmapSize = mmapSize;
+        this.cacheSize = cacheSize;
+        this.synchronous = synchronous;
+        this.tempStore = tempStore;
+        this.journalSizeLimit = journalSizeLimit;
+        this.walAutocheckpoint = walAutocheckpoint;
+    }
+
+    /**
+     * Add the tuning PRAGMAs to a pool that has not opened any connection yet.
+     * Only the writer checkpoints on commit, so wal_autocheckpoint is set on the writer alone.
+     * These override the same settings given in the JDBC URL.
+     */
+    public void apply(HikariDataSource pool, boolean writer) {
+        if (!enabled || pool.getJdbcUrl() == null || !pool.getJdbcUrl().startsWith("jdbc:sqlite:")) {
+            return;
+        }
+        pool.addDataSourceProperty("busy_timeout", String.valueOf(busyTimeout));
+        pool.addDataSourceProperty("mmap_size", String.valueOf(mmapSize));
+        pool.addDataSourceProperty("cache_size", String.valueOf(cacheSize));
+        pool.addDataSourceProperty("synchronous", synchronous);
+        pool.addDataSourceProperty("temp_store", tempStore);
+        pool.addDataSourceProperty("journal_size_limit", String.valueOf(journalSizeLimit));
+        if (writer) {
+            // The journal mode is stored in the file; a read-only connection cannot change it
+            pool.addDataSourceProperty("journal_mode", journalMode);
+            // Not a driver property, so it goes in as init SQL
+            pool.setConnectionInitSql("PRAGMA wal_autocheckpoint=" + walAutocheckpoint);
+        }
+        log.debug("SQLite tuning for {}: mmap_size={}, cache_size={}, synchronous={}, temp_store={}",
+            pool.getPoolName(), mmapSize, cacheSize, synchronous, tempStore);
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof HikariDataSource pool) {
+            apply(pool, !pool.isReadOnly());
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,149 @@
+package com.library.system.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.View;
+import org.springframework.web.servlet.ViewResolver;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Renders result-list pages while their rows are still being read, for
+ * library.search.streaming.enabled. The page's template gets its "books" as {@link Rows},
+ * pulled one at a time from a query stream, and the response is flushed every
+ * library.search.streaming.flush-every rows: the first results reach the browser at once
+ * and only the current row is held in memory, however many match.
+ * <p>
+ * The stream needs its read-only transaction until the template is done with it, so that
+ * transaction spans the rendering. Sharded catalogs keep rendering merged lists, since one
+ * transaction cannot span every shard.
+ */
+@Component
+public class StreamingListRenderer {
+
+    private final ViewResolver viewResolver;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final int flushEvery;
+
+    public StreamingListRenderer(@Qualifier("thymeleafViewResolver") ViewResolver viewResolver,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${library.search.streaming.enabled:false}") boolean enabled,
+                                 @Value("${library.search.streaming.flush-every:50}") int flushEvery) {
+        this.viewResolver = viewResolver;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.flushEvery = Math.max(1, flushEvery);
+    }
+
+    public boolean isEnabled() {
+        return enabled && !BranchContext.isSharded();
+    }
+
+    /**
+     * The named page with "books" read from the stream as it is rendered.
+     */
+    public View listView(String viewName, Locale locale, Supplier<? extends Stream<?>> books) {
+        View page;
+        try {
+            page = viewResolver.resolveViewName(viewName, locale);
+        } catch (Exception ex) {
+            throw new IllegalStateException("Could not resolve view " + viewName, ex);
+        }
+        if (page == null) {
+            throw new IllegalStateException("No view named " + viewName);
+        }
+        return new View() {
+            @Override
+            public String getContentType() {
+                return page.getContentType();
+            }
+
+            @Override
+            public void render(Map<String, ?> model, HttpServletRequest request, HttpServletResponse response) throws Exception {
+                readOnlyTransaction.executeWithoutResult(status -> {
+                    try (Stream<?> rows = books.get()) {
+                        Map<String, Object> streamed = new HashMap<>(model);
+                        streamed.put("books", new Rows<>(rows.iterator(), flushEvery, () -> flush(response)));
+                        page.render(streamed, request, response);
+                    } catch (RuntimeException ex) {
+                        throw ex;
+                    } catch (Exception ex) {
+                        throw new IllegalStateException("Could not render " + viewName, ex);
+                    }
+                });
+            }
+        };
+    }
+
+    private static void flush(HttpServletResponse response) {
+        try {
+            response.getWriter().flush();
+            response.flushBuffer();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Rows a template iterates once, with {@code empty} answered by looking one row ahead.
+     */
+    public static final class Rows<T> implements Iterable<T>, Iterator<T> {
+
+        private final Iterator<T> rows;
+        private final int flushEvery;
+        private final Runnable flush;
+        private int count;
+
+        Rows(Iterator<T> rows, int flushEvery, Runnable flush) {
+            this.rows = rows;
+            this.flushEvery = flushEvery;
+            this.flush = flush;
+        }
+
+        public boolean isEmpty() {
+            return count == 0 && !rows.hasNext();
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return this;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return rows.hasNext();
+        }
+
+        @Override
+        public T next() {
+            if (!rows.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            // Send what is rendered so far: the page head, then each batch of rows
+            if (count % flushEvery == 0) {
+                flush.run();
+            }
+            count++;
+            return rows.next();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.library.system.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Authenticates a request from its access token (Authorization: Bearer, or the access cookie)
+ * without touching the database. Once the access token has expired, the refresh cookie is
+ * exchanged for a new pair.
+ */
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String BEARER = "Bearer ";
+
+    private final AuthTokenService tokens;
+    private final CustomUserDetailsService userDetailsService;
+
+    public TokenAuthenticationFilter(AuthTokenService tokens, CustomUserDetailsService userDetailsService) {
+        this.tokens = tokens;
+        this.userDetailsService = userDetailsService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        CurrentUser user = tokens.readAccessToken(accessToken(request));
+        if (user == null) {
+            user = refresh(request, response);
+        }
+        if (user != null) {
+            SecurityContext context = SecurityContextHolder.createEmptyContext();
+            context.setAuthentication(UsernamePasswordAuthenticationToken.authenticated(user, null, user.getAuthorities()));
+            SecurityContextHolder.setContext(context);
+        }
+        chain.doFilter(request, response);
+    }
+
+    private CurrentUser refresh(HttpServletRequest request, HttpServletResponse response) {
+        String username = tokens.readRefreshToken(AuthTokenService.cookieValue(request, AuthTokenService.REFRESH_COOKIE));
+        if (username == null) {
+            return null;
+        }
+        try {
+            CurrentUser user = userDetailsService.loadUserByUsername(username);
+            if (!user.isEnabled()) {
+                return null;
+            }
+            tokens.writeCookies(user, request, response);
+            return user;
+        } catch (UsernameNotFoundException ex) {
+            return null;
+        }
+    }
+
+    private static String accessToken(HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.startsWith(BEARER)) {
+            return header.substring(BEARER.length());
+        }
+        return AuthTokenService.cookieValue(request, AuthTokenService.ACCESS_COOKIE);
+    }
+}
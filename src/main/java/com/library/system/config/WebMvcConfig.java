@@ -0,0 +1,78 @@
+package com.library.system.config;
+
+import com.library.system.service.IdempotencyService;
+import com.library.system.service.PageCache;
+import com.library.system.service.WriteAdmissionLimiter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.FlashMapManager;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+import java.util.List;
+
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    private final IdempotencyService idempotencyService;
+    private final WriteAdmissionLimiter writeAdmissionLimiter;
+    private final CustomUserDetailsService userDetailsService;
+    private final Duration retryAfter;
+
+    public WebMvcConfig(IdempotencyService idempotencyService,
+                        WriteAdmissionLimiter writeAdmissionLimiter,
+                        CustomUserDetailsService userDetailsService,
+                        @Value("${library.admission.retry-after:PT1S}") Duration retryAfter) {
+        this.idempotencyService = idempotencyService;
+        this.writeAdmissionLimiter = writeAdmissionLimiter;
+        this.userDetailsService = userDetailsService;
+        this.retryAfter = retryAfter;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // Circulation POSTs that kiosks retry on flaky networks
+        registry.addInterceptor(new IdempotencyInterceptor(idempotencyService))
+            .addPathPatterns("/loans/borrow", "/loans/return/*", "/reservations/reserve/*");
+        // After idempotency, so replayed retries never take a write slot
+        registry.addInterceptor(new AdmissionInterceptor(writeAdmissionLimiter, retryAfter))
+            .addPathPatterns("/loans/**", "/reservations/**", "/api/v1/loans/**", "/api/v1/reservations/**");
+        // Describes the catalog pages PageCacheFilter may keep
+        registry.addInterceptor(new PageCacheInterceptor())
+            .addPathPatterns("/books/*", "/books/isbn/*", "/search");
+    }
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(new CurrentUserArgumentResolver(userDetailsService));
+    }
+
+    /**
+     * In token mode there is no session to hold flash messages, so they travel in a cookie.
+     */
+    @Bean(DispatcherServlet.FLASH_MAP_MANAGER_BEAN_NAME)
+    @ConditionalOnProperty(name = "library.security.mode", havingValue = "token")
+    public FlashMapManager flashMapManager(AuthTokenService authTokenService, ObjectMapper objectMapper) {
+        return new CookieFlashMapManager(authTokenService, objectMapper);
+    }
+
+    /**
+     * Rendered catalog pages for anonymous visitors. Registered with the default (last) order,
+     * so it runs after Spring Security has established who is asking.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "library.page-cache.enabled", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<PageCacheFilter> pageCacheFilter(PageCache pageCache,
+                                                                   @Value("${library.page-cache.max-age:PT0S}") Duration maxAge) {
+        FilterRegistrationBean<PageCacheFilter> registration = new FilterRegistrationBean<>(new PageCacheFilter(pageCache, maxAge));
+        registration.addUrlPatterns("/books/*", "/search");
+        return registration;
+    }
+}
@@ -0,0 +1,93 @@
+package com.library.system.controller;
+
+import com.library.system.domain.Reservation;
+import com.library.system.dto.BackupResult;
+import com.library.system.service.BackupInProgressException;
+import com.library.system.service.DatabaseBackupService;
+import com.library.system.service.ReservationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Operational endpoints for administrators; secured by the /admin/** rule in SecurityConfig.
+ */
+@RestController
+@RequestMapping("/admin")
+public class AdminController {
+
+    private static final Logger log = LoggerFactory.getLogger(AdminController.class);
+
+    @Autowired
+    private DatabaseBackupService databaseBackupService;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @GetMapping("/backups")
+    public List<String> listBackups() {
+        return databaseBackupService.listBackups();
+    }
+
+    @PostMapping("/backups")
+    public ResponseEntity<?> backup() {
+        try {
+            return ResponseEntity.ok(databaseBackupService.backup());
+        } catch (BackupInProgressException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            log.error("Backup requested by an administrator failed", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/backups/{file}/verify")
+    public ResponseEntity<?> verifyBackup(@PathVariable String file) {
+        try {
+            BackupResult result = databaseBackupService.verify(file);
+            return ResponseEntity.ok(result);
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            log.error("Verification of backup {} failed", file, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Holds in transit to the given branch, oldest dispatch first.
+     */
+    @GetMapping("/transfers")
+    public List<Map<String, Object>> incomingTransfers(@RequestParam String branch) {
+        return reservationService.getIncomingTransfers(branch).stream().map(this::transfer).toList();
+    }
+
+    @PostMapping("/transfers/{reservationId}/receive")
+    public ResponseEntity<?> receiveTransfer(@PathVariable Long reservationId, @RequestParam String branch) {
+        try {
+            return ResponseEntity.ok(transfer(reservationService.receiveTransfer(reservationId, branch)));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    private Map<String, Object> transfer(Reservation reservation) {
+        Map<String, Object> transfer = new LinkedHashMap<>();
+        transfer.put("reservationId", reservation.getId());
+        transfer.put("bookId", reservation.getBook().getId());
+        transfer.put("title", reservation.getBook().getTitle());
+        transfer.put("username", reservation.getUser().getUsername());
+        transfer.put("fromBranch", reservation.getBranch());
+        transfer.put("pickupBranch", reservation.getPickupBranch());
+        transfer.put("status", reservation.getStatus());
+        return transfer;
+    }
+}
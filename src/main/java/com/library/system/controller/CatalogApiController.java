@@ -0,0 +1,117 @@
+package com.library.system.controller;
+
+import com.library.system.domain.Book;
+import com.library.system.dto.AvailabilityResponse;
+import com.library.system.dto.BookAvailability;
+import com.library.system.dto.BookListPage;
+import com.library.system.dto.BookResponse;
+import com.library.system.dto.BookSummaryResponse;
+import com.library.system.service.AvailabilityProjection;
+import com.library.system.service.BookService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Read-only catalog for the mobile app. Searches come back a page at a time. Book responses
+ * carry a strong ETag built from the book's version; a matching If-None-Match is answered
+ * with 304 after reading only that version, never the book itself.
+ */
+@RestController
+@RequestMapping("/api/v1/books")
+public class CatalogApiController {
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private AvailabilityProjection availabilityProjection;
+
+    @Value("${library.api.page-size:20}")
+    private int defaultPageSize;
+
+    @Value("${library.api.max-page-size:100}")
+    private int maxPageSize;
+
+    /**
+     * One page of matches, or of the whole catalog without q, never longer than
+     * library.api.max-page-size. A Link header points to the next page while there is one.
+     */
+    @GetMapping
+    public ResponseEntity<List<BookSummaryResponse>> search(@RequestParam(required = false) String q,
+                                                            @RequestParam(defaultValue = "0") int page,
+                                                            @RequestParam(required = false) Integer size) {
+        int pageSize = Math.min(Math.max(size != null ? size : defaultPageSize, 1), maxPageSize);
+        BookListPage books = bookService.searchBookPage(q, Math.max(page, 0), pageSize);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (books.hasNext()) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("page", books.page() + 1)
+                .replaceQueryParam("size", pageSize)
+                .toUriString();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return response.body(books.books().stream().map(BookSummaryResponse::of).toList());
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<BookResponse> book(@PathVariable Long id, WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            Optional<Long> version = bookService.getBookVersion(id);
+            if (version.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            if (request.checkNotModified(etag(id, version.get()))) {
+                return null;
+            }
+        }
+        Optional<Book> book = bookService.getBookById(id);
+        return book.map(found -> ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(etag(found.getId(), found.getVersion()))
+                .body(BookResponse.of(found)))
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Served from the in-memory availability projection after reading only the book's version,
+     * which every loan and hold change bumps. The ETag is built from that version, so it is
+     * the same on every instance and across restarts.
+     */
+    @GetMapping("/{id}/availability")
+    public ResponseEntity<AvailabilityResponse> availability(@PathVariable Long id, WebRequest request) {
+        Optional<Long> version = bookService.getBookVersion(id);
+        if (version.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        String etag = etag(id, version.get());
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        BookAvailability availability = availabilityProjection.get(id, version.get());
+        if (availability == null) {
+            return ResponseEntity.notFound().build();
+        }
+        AvailabilityResponse response = AvailabilityResponse.of(id, availability);
+        return ResponseEntity.ok()
+            .cacheControl(CacheControl.noCache())
+            .eTag(etag)
+            .body(response);
+    }
+
+    private static String etag(Long id, Long version) {
+        return "\"" + id + "-" + version + "\"";
+    }
+}
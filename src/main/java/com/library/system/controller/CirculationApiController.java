@@ -0,0 +1,141 @@
+package com.library.system.controller;
+
+import com.library.system.config.CurrentUser;
+import com.library.system.domain.Book;
+import com.library.system.domain.User;
+import com.library.system.dto.LoanResponse;
+import com.library.system.dto.ReservationResponse;
+import com.library.system.service.BookService;
+import com.library.system.service.CirculationRefusedException;
+import com.library.system.service.LoanService;
+import com.library.system.service.ReservationService;
+import com.library.system.service.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.TypeMismatchException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * The signed-in patron's loans and holds for the mobile app, over the same services as the
+ * HTML pages. Only the patron's own loans and holds can be acted on; any other id is answered
+ * with 404, like a missing one. Requests the circulation rules refuse come back as 409 with
+ * the message the pages would have flashed; unexpected failures as a bare 500.
+ */
+@RestController
+@RequestMapping("/api/v1")
+public class CirculationApiController {
+
+    private static final Logger log = LoggerFactory.getLogger(CirculationApiController.class);
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private UserService userService;
+
+    @GetMapping("/loans")
+    public List<LoanResponse> loans(CurrentUser currentUser) {
+        return loanService.getActiveLoansByUser(userService.getUserReference(currentUser.getId())).stream()
+            .map(LoanResponse::of)
+            .toList();
+    }
+
+    @PostMapping("/loans")
+    @ResponseStatus(HttpStatus.CREATED)
+    public LoanResponse borrow(@RequestParam Long bookId, CurrentUser currentUser) {
+        return LoanResponse.of(loanService.borrowBook(currentUser.getId(), bookId));
+    }
+
+    @PostMapping("/loans/{loanId}/return")
+    public LoanResponse returnBook(@PathVariable Long loanId, CurrentUser currentUser) {
+        requireOwnLoan(loanId, currentUser);
+        return LoanResponse.of(loanService.returnBook(loanId));
+    }
+
+    @PostMapping("/loans/{loanId}/extend")
+    public LoanResponse extend(@PathVariable Long loanId, CurrentUser currentUser) {
+        requireOwnLoan(loanId, currentUser);
+        return LoanResponse.of(loanService.extendLoan(loanId));
+    }
+
+    @GetMapping("/reservations")
+    public List<ReservationResponse> reservations(CurrentUser currentUser) {
+        return reservationService.getUserReservations(userService.getUserReference(currentUser.getId())).stream()
+            .map(ReservationResponse::of)
+            .toList();
+    }
+
+    @PostMapping("/reservations")
+    @ResponseStatus(HttpStatus.CREATED)
+    public ReservationResponse reserve(@RequestParam Long bookId,
+                                       @RequestParam(required = false) String pickupBranch,
+                                       CurrentUser currentUser) {
+        User user = userService.getUserReference(currentUser.getId());
+        Book book = bookService.getBookById(bookId)
+            .orElseThrow(() -> new NoSuchElementException("Book not found"));
+        return ReservationResponse.of(reservationService.reserveBook(user, book, pickupBranch));
+    }
+
+    @DeleteMapping("/reservations/{reservationId}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void cancel(@PathVariable Long reservationId, CurrentUser currentUser) {
+        reservationService.getReservationById(reservationId)
+            .filter(reservation -> reservation.getUser().getId().equals(currentUser.getId()))
+            .orElseThrow(() -> new NoSuchElementException("Reservation not found"));
+        reservationService.cancelReservation(reservationId, userService.getUserReference(currentUser.getId()));
+    }
+
+    /**
+     * Another patron's loan is answered like a missing one, so loan ids cannot be probed.
+     */
+    private void requireOwnLoan(Long loanId, CurrentUser currentUser) {
+        loanService.getLoanById(loanId)
+            .filter(loan -> loan.getUser().getId().equals(currentUser.getId()))
+            .orElseThrow(() -> new NoSuchElementException("Loan not found"));
+    }
+
+    @ExceptionHandler(NoSuchElementException.class)
+    public ResponseEntity<Map<String, String>> handleNotFound(NoSuchElementException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+    }
+
+    @ExceptionHandler(CirculationRefusedException.class)
+    public ResponseEntity<Map<String, String>> handleRefusal(CirculationRefusedException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+    }
+
+    @ExceptionHandler(TypeMismatchException.class)
+    public ResponseEntity<Map<String, String>> handleBadParameter(TypeMismatchException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", "Invalid value for " + e.getPropertyName()));
+    }
+
+    /**
+     * Anything else is a fault on our side: logged in full, answered without its message.
+     */
+    @ExceptionHandler(RuntimeException.class)
+    public ResponseEntity<Map<String, String>> handleFailure(RuntimeException e) {
+        log.error("Circulation request failed", e);
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", "Internal error"));
+    }
+}
@@ -1,19 +1,21 @@
 package com.library.system.controller;
 
-import com.library.system.domain.Book;
+import com.library.system.config.CurrentUser;
+import com.library.system.config.StreamingListRenderer;
 import com.library.system.domain.BookStatus;
-import com.library.system.domain.User;
+import com.library.system.dto.BookListItem;
+import com.library.system.service.AvailabilityProjection;
 import com.library.system.service.BookService;
-import com.library.system.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.View;
 
 import java.util.List;
+import java.util.Locale;
 
 @Controller
 public class HomeController {
@@ -22,20 +24,24 @@ public class HomeController {
     private BookService bookService;
     
     @Autowired
-    private UserService userService;
+    private AvailabilityProjection availabilityProjection;
+
+    @Autowired
+    private StreamingListRenderer streamingListRenderer;
     
     @GetMapping("/")
-    public String home(@RequestParam(required = false) String search,
-                       @RequestParam(required = false) String author,
-                       @RequestParam(required = false) String publisher,
-                       @RequestParam(required = false) String status,
-                       @RequestParam(required = false) Integer fromYear,
-                       @RequestParam(required = false) Integer toYear,
-                       Model model) {
-        // Get current user if authenticated
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null && authentication.isAuthenticated() && !authentication.getName().equals("anonymousUser")) {
-            userService.getUserByUsername(authentication.getName()).ifPresent(user -> model.addAttribute("user", user));
+    public ModelAndView home(@RequestParam(required = false) String search,
+                             @RequestParam(required = false) String author,
+                             @RequestParam(required = false) String publisher,
+                             @RequestParam(required = false) String status,
+                             @RequestParam(required = false) Integer fromYear,
+                             @RequestParam(required = false) Integer toYear,
+                             CurrentUser user,
+                             Locale locale,
+                             Model model) {
+        // Current user if authenticated
+        if (user != null) {
+            model.addAttribute("user", user);
         }
 
         // Check if any refinement filters are applied
@@ -45,23 +51,31 @@ public class HomeController {
                                 fromYear != null || toYear != null;
 
         // Only search and display books if a search term is provided
+        View streamed = null;
         if (search != null && !search.trim().isEmpty()) {
-            List<Book> books;
-
-            if (hasRefinement) {
-                // Use advanced search with refinement filters
-                String authorParam = (author != null && !author.trim().isEmpty()) ? author.trim() : null;
-                String publisherParam = (publisher != null && !publisher.trim().isEmpty()) ? publisher.trim() : null;
-                BookStatus statusParam = (status != null && !status.trim().isEmpty()) ? BookStatus.valueOf(status) : null;
-
-                // Use the search term as title for advanced search
-                books = bookService.advancedSearch(search.trim(), authorParam, null, publisherParam, statusParam, fromYear, toYear);
+            String authorParam = (author != null && !author.trim().isEmpty()) ? author.trim() : null;
+            String publisherParam = (publisher != null && !publisher.trim().isEmpty()) ? publisher.trim() : null;
+            BookStatus statusParam = (status != null && !status.trim().isEmpty()) ? BookStatus.valueOf(status) : null;
+
+            if (streamingListRenderer.isEnabled()) {
+                // Rows are read while the page is written, each with its current status
+                streamed = streamingListRenderer.listView("index", locale, () -> hasRefinement
+                    ? bookService.streamAdvancedSearchList(search.trim(), authorParam, null, publisherParam, statusParam, fromYear, toYear)
+                    : bookService.streamBookList(search));
             } else {
-                // Use basic search
-                books = bookService.searchBooks(search);
+                List<BookListItem> books;
+
+                if (hasRefinement) {
+                    // Use advanced search with refinement filters, the search term as title
+                    books = bookService.advancedSearchList(search.trim(), authorParam, null, publisherParam, statusParam, fromYear, toYear);
+                } else {
+                    // Use basic search
+                    books = bookService.searchBookList(search);
+                }
+
+                model.addAttribute("books", books);
+                model.addAttribute("availability", availabilityProjection.getAll(books.stream().map(BookListItem::id).toList()));
             }
-
-            model.addAttribute("books", books);
             model.addAttribute("searchTerm", search);
         }
 
@@ -73,21 +87,22 @@ public class HomeController {
         model.addAttribute("toYear", toYear);
         model.addAttribute("bookStatuses", BookStatus.values());
 
-        return "index";
+        return streamed != null ? new ModelAndView(streamed) : new ModelAndView("index");
     }
     
     @GetMapping("/search")
-    public String search(@RequestParam(required = false) String q,
-                         @RequestParam(required = false) String author,
-                         @RequestParam(required = false) String publisher,
-                         @RequestParam(required = false) String status,
-                         @RequestParam(required = false) Integer fromYear,
-                         @RequestParam(required = false) Integer toYear,
-                         Model model) {
-        // Get current user if authenticated
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null && authentication.isAuthenticated() && !authentication.getName().equals("anonymousUser")) {
-            userService.getUserByUsername(authentication.getName()).ifPresent(user -> model.addAttribute("user", user));
+    public ModelAndView search(@RequestParam(required = false) String q,
+                               @RequestParam(required = false) String author,
+                               @RequestParam(required = false) String publisher,
+                               @RequestParam(required = false) String status,
+                               @RequestParam(required = false) Integer fromYear,
+                               @RequestParam(required = false) Integer toYear,
+                               CurrentUser user,
+                               Locale locale,
+                               Model model) {
+        // Current user if authenticated
+        if (user != null) {
+            model.addAttribute("user", user);
         }
 
         // Check if any refinement filters are applied
@@ -97,23 +112,31 @@ public class HomeController {
                                 fromYear != null || toYear != null;
 
         // Only search and display books if a search term is provided
+        View streamed = null;
         if (q != null && !q.trim().isEmpty()) {
-            List<Book> books;
-
-            if (hasRefinement) {
-                // Use advanced search with refinement filters
-                String authorParam = (author != null && !author.trim().isEmpty()) ? author.trim() : null;
-                String publisherParam = (publisher != null && !publisher.trim().isEmpty()) ? publisher.trim() : null;
-                BookStatus statusParam = (status != null && !status.trim().isEmpty()) ? BookStatus.valueOf(status) : null;
-
-                // Use the search term as title for advanced search
-                books = bookService.advancedSearch(q.trim(), authorParam, null, publisherParam, statusParam, fromYear, toYear);
+            String authorParam = (author != null && !author.trim().isEmpty()) ? author.trim() : null;
+            String publisherParam = (publisher != null && !publisher.trim().isEmpty()) ? publisher.trim() : null;
+            BookStatus statusParam = (status != null && !status.trim().isEmpty()) ? BookStatus.valueOf(status) : null;
+
+            if (streamingListRenderer.isEnabled()) {
+                // Rows are read while the page is written, each with its current status
+                streamed = streamingListRenderer.listView("search", locale, () -> hasRefinement
+                    ? bookService.streamAdvancedSearchList(q.trim(), authorParam, null, publisherParam, statusParam, fromYear, toYear)
+                    : bookService.streamBookList(q));
             } else {
-                // Use basic search
-                books = bookService.searchBooks(q);
+                List<BookListItem> books;
+
+                if (hasRefinement) {
+                    // Use advanced search with refinement filters, the search term as title
+                    books = bookService.advancedSearchList(q.trim(), authorParam, null, publisherParam, statusParam, fromYear, toYear);
+                } else {
+                    // Use basic search
+                    books = bookService.searchBookList(q);
+                }
+
+                model.addAttribute("books", books);
+                model.addAttribute("availability", availabilityProjection.getAll(books.stream().map(BookListItem::id).toList()));
             }
-
-            model.addAttribute("books", books);
             model.addAttribute("searchTerm", q);
         }
 
@@ -125,7 +148,7 @@ public class HomeController {
         model.addAttribute("toYear", toYear);
         model.addAttribute("bookStatuses", BookStatus.values());
 
-        return "search";
+        return streamed != null ? new ModelAndView(streamed) : new ModelAndView("search");
     }
 
     @GetMapping("/advanced-search")
@@ -136,11 +159,11 @@ public class HomeController {
                                   @RequestParam(required = false) String status,
                                   @RequestParam(required = false) Integer fromYear,
                                   @RequestParam(required = false) Integer toYear,
+                                  CurrentUser user,
                                   Model model) {
-        // Get current user if authenticated
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null && authentication.isAuthenticated() && !authentication.getName().equals("anonymousUser")) {
-            userService.getUserByUsername(authentication.getName()).ifPresent(user -> model.addAttribute("user", user));
+        // Current user if authenticated
+        if (user != null) {
+            model.addAttribute("user", user);
         }
 
         // Prepare search parameters
@@ -153,9 +176,10 @@ public class HomeController {
         // If at least one search parameter is provided, perform search
         if (titleParam != null || authorParam != null || isbnParam != null ||
             publisherParam != null || statusParam != null || fromYear != null || toYear != null) {
-            List<Book> books = bookService.advancedSearch(titleParam, authorParam, isbnParam,
-                                                          publisherParam, statusParam, fromYear, toYear);
+            List<BookListItem> books = bookService.advancedSearchList(titleParam, authorParam, isbnParam,
+                                                                      publisherParam, statusParam, fromYear, toYear);
             model.addAttribute("books", books);
+            model.addAttribute("availability", availabilityProjection.getAll(books.stream().map(BookListItem::id).toList()));
         }
 
         // Add search parameters back to the model for form retention
@@ -1,21 +1,16 @@
 package com.library.system.controller;
 
+import com.library.system.config.CurrentUser;
 import com.library.system.domain.Loan;
-import com.library.system.domain.Reservation;
-import com.library.system.domain.User;
+import com.library.system.dto.LoanHistoryPage;
 import com.library.system.service.LoanService;
 import com.library.system.service.ReservationService;
-import com.library.system.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
-import java.util.List;
-
 @Controller
 @RequestMapping("/loans")
 public class LoanController {
@@ -23,44 +18,30 @@ public class LoanController {
     @Autowired
     private LoanService loanService;
 
-    @Autowired
-    private UserService userService;
-
     @Autowired
     private ReservationService reservationService;
     
     @GetMapping("/my-loans")
-    public String myLoans(Model model) {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String username = auth.getName();
-
-        User user = userService.getUserByUsername(username)
-            .orElseThrow(() -> new RuntimeException("User not found"));
-
-        List<Loan> activeLoans = loanService.getActiveLoansByUser(user);
-        List<Loan> allLoans = loanService.getLoansByUser(user);
+    public String myLoans(@RequestParam(defaultValue = "0") int page, CurrentUser currentUser, Model model) {
+        LoanHistoryPage loans = loanService.getLoanHistory(currentUser.getId(), Math.max(page, 0));
 
-        // Get user's active reservations
-        List<Reservation> activeReservations = reservationService.getUserReservations(user);
-
-        model.addAttribute("activeLoans", activeLoans);
-        model.addAttribute("allLoans", allLoans);
-        model.addAttribute("activeReservations", activeReservations);
-        model.addAttribute("user", user);
+        // Active loans and holds are only shown above the first page of the history
+        if (loans.page() == 0) {
+            model.addAttribute("activeLoans", loans.activeLoans());
+            model.addAttribute("activeReservations", reservationService.getUserHoldRows(currentUser.getId()));
+        }
+        model.addAttribute("allLoans", loans.loans());
+        model.addAttribute("page", loans.page());
+        model.addAttribute("hasNextPage", loans.hasNext());
+        model.addAttribute("user", currentUser);
 
         return "my-loans";
     }
     
     @PostMapping("/borrow")
-    public String borrowBook(@RequestParam Long bookId, RedirectAttributes redirectAttributes) {
+    public String borrowBook(@RequestParam Long bookId, CurrentUser currentUser, RedirectAttributes redirectAttributes) {
         try {
-            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-            String username = auth.getName();
-            
-            User user = userService.getUserByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-            
-            Loan loan = loanService.borrowBook(user.getId(), bookId);
+            Loan loan = loanService.borrowBook(currentUser.getId(), bookId);
             redirectAttributes.addFlashAttribute("success", "Book borrowed successfully!");
             return "redirect:/books/" + bookId;
             
@@ -1,5 +1,6 @@
 package com.library.system.controller;
 
+import com.library.system.config.CurrentUser;
 import com.library.system.domain.Book;
 import com.library.system.domain.Reservation;
 import com.library.system.domain.User;
@@ -7,12 +8,11 @@ import com.library.system.service.BookService;
 import com.library.system.service.ReservationService;
 import com.library.system.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 @Controller
@@ -31,28 +31,31 @@ public class ReservationController {
     /**
      * Reserve a book
      * @param bookId The ID of the book to reserve
+     * @param pickupBranch Branch to collect the book at; defaults to the book's own branch
+     * @param currentUser The signed-in user, or null
      * @param redirectAttributes For flash messages
      * @return Redirect to book details page
      */
     @PostMapping("/reserve/{bookId}")
-    public String reserveBook(@PathVariable Long bookId, RedirectAttributes redirectAttributes) {
+    public String reserveBook(@PathVariable Long bookId,
+                              @RequestParam(required = false) String pickupBranch,
+                              CurrentUser currentUser,
+                              RedirectAttributes redirectAttributes) {
         try {
             // Get current user
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            if (authentication == null || !authentication.isAuthenticated() || authentication.getName().equals("anonymousUser")) {
+            if (currentUser == null) {
                 redirectAttributes.addFlashAttribute("error", "You must be logged in to reserve a book");
                 return "redirect:/auth/login";
             }
 
-            User user = userService.getUserByUsername(authentication.getName())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+            User user = userService.getUserReference(currentUser.getId());
 
             // Get the book
             Book book = bookService.getBookById(bookId)
                 .orElseThrow(() -> new RuntimeException("Book not found"));
 
             // Create the reservation
-            Reservation reservation = reservationService.reserveBook(user, book);
+            Reservation reservation = reservationService.reserveBook(user, book, pickupBranch);
 
             redirectAttributes.addFlashAttribute("success",
                 "Book reserved successfully! You are #" + reservation.getQueuePosition() + " in the queue.");
@@ -71,21 +74,21 @@ public class ReservationController {
     /**
      * Cancel a reservation
      * @param reservationId The ID of the reservation to cancel
+     * @param currentUser The signed-in user, or null
      * @param redirectAttributes For flash messages
      * @return Redirect to my-loans page
      */
     @PostMapping("/cancel/{reservationId}")
-    public String cancelReservation(@PathVariable Long reservationId, RedirectAttributes redirectAttributes) {
+    public String cancelReservation(@PathVariable Long reservationId, CurrentUser currentUser,
+                                    RedirectAttributes redirectAttributes) {
         try {
             // Get current user
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            if (authentication == null || !authentication.isAuthenticated() || authentication.getName().equals("anonymousUser")) {
+            if (currentUser == null) {
                 redirectAttributes.addFlashAttribute("error", "You must be logged in");
                 return "redirect:/auth/login";
             }
 
-            User user = userService.getUserByUsername(authentication.getName())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+            User user = userService.getUserReference(currentUser.getId());
 
             // Cancel the reservation
             reservationService.cancelReservation(reservationId, user);
@@ -0,0 +1,59 @@
+package com.library.system.domain;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.Size;
+
+import java.time.LocalDateTime;
+
+/**
+ * Small key/value table for application-level markers such as the applied seed data version.
+ */
+@Entity
+@Table(name = "app_metadata")
+public class AppMetadata {
+
+    @Id
+    @Size(max = 100)
+    @Column(name = "meta_key", length = 100)
+    private String key;
+
+    @Size(max = 255)
+    @Column(name = "meta_value")
+    private String value;
+
+    private LocalDateTime updatedAt;
+
+    // Constructors
+    public AppMetadata() {}
+
+    public AppMetadata(String key, String value) {
+        this.key = key;
+        this.value = value;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
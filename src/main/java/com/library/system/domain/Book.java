@@ -1,24 +1,34 @@
 package com.library.system.domain;
 
+import com.library.system.config.BranchContext;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NaturalIdCache
 @Table(name = "books")
-public class Book {
+public class Book implements BranchScoped {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @BranchScopedId
     private Long id;
     
     @NotBlank
     @Size(max = 20)
+    @NaturalId(mutable = true)
     @Column
     private String isbn;
     
@@ -40,6 +50,19 @@ public class Book {
     
     @Enumerated(EnumType.STRING)
     private BookStatus status = BookStatus.AVAILABLE;
+
+    // Branch that owns this copy; with sharding on, the book lives in that branch's database
+    @NotBlank
+    @Size(max = 20)
+    @Column(nullable = false, length = 20)
+    @ColumnDefault("'MAIN'")
+    private String branch = BranchContext.DEFAULT_BRANCH;
+
+    // Bumped on every change; API clients get it back as the book's ETag
+    @Version
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private Long version;
     
     @OneToMany(mappedBy = "book", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Loan> loans = new ArrayList<>();
@@ -60,6 +83,10 @@ public class Book {
     }
     
     // Getters and Setters
+    public Long getVersion() {
+        return version;
+    }
+
     public Long getId() {
         return id;
     }
@@ -124,6 +151,15 @@ public class Book {
         this.status = status;
     }
     
+    @Override
+    public String getBranch() {
+        return branch;
+    }
+    
+    public void setBranch(String branch) {
+        this.branch = branch;
+    }
+    
     public List<Loan> getLoans() {
         return loans;
     }
@@ -0,0 +1,9 @@
+package com.library.system.domain;
+
+/**
+ * Circulation data owned by one branch and stored in that branch's shard.
+ */
+public interface BranchScoped {
+
+    String getBranch();
+}
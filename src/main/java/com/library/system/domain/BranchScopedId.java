@@ -0,0 +1,19 @@
+package com.library.system.domain;
+
+import com.library.system.config.BranchIdGenerator;
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * An id taken from the id range of the branch the row is stored in, so ids stay unique
+ * across shards and tell which shard to look in. See {@link BranchIdGenerator}.
+ */
+@IdGeneratorType(BranchIdGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface BranchScopedId {
+}
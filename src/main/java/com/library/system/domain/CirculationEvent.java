@@ -0,0 +1,42 @@
+package com.library.system.domain;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Something that changed a book's circulation state, published by the services after the
+ * corresponding rows are written. Each event carries the resulting state it introduces
+ * (book status, due date), so listeners can apply it without reading the tables back.
+ *
+ * @param refId id of the loan or reservation involved, if any
+ */
+public record CirculationEvent(CirculationEventType type,
+                               long bookId,
+                               Long userId,
+                               Long refId,
+                               BookStatus bookStatus,
+                               LocalDate dueDate,
+                               Instant occurredAt) {
+
+    public static CirculationEvent bookUpdated(Book book) {
+        return new CirculationEvent(CirculationEventType.BOOK_UPDATED, book.getId(), null, null, book.getStatus(), null, Instant.now());
+    }
+
+    public static CirculationEvent bookStatusChanged(Book book) {
+        return new CirculationEvent(CirculationEventType.BOOK_STATUS_CHANGED, book.getId(), null, null, book.getStatus(), null, Instant.now());
+    }
+
+    public static CirculationEvent bookRemoved(Long bookId) {
+        return new CirculationEvent(CirculationEventType.BOOK_REMOVED, bookId, null, null, null, null, Instant.now());
+    }
+
+    public static CirculationEvent ofLoan(CirculationEventType type, Loan loan) {
+        return new CirculationEvent(type, loan.getBook().getId(), loan.getUser().getId(), loan.getId(),
+            loan.getBook().getStatus(), loan.getDueDate(), Instant.now());
+    }
+
+    public static CirculationEvent ofHold(CirculationEventType type, Reservation reservation) {
+        return new CirculationEvent(type, reservation.getBook().getId(), reservation.getUser().getId(), reservation.getId(),
+            null, null, Instant.now());
+    }
+}
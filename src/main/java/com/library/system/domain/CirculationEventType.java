@@ -0,0 +1,19 @@
+package com.library.system.domain;
+
+/**
+ * Stored by ordinal in the circulation event log: add new types at the end only.
+ */
+public enum CirculationEventType {
+    BOOK_UPDATED,
+    BOOK_REMOVED,
+    LOAN_BORROWED,
+    LOAN_EXTENDED,
+    LOAN_RETURNED,
+    HOLD_PLACED,
+    HOLD_READY,
+    HOLD_CANCELLED,
+    HOLD_EXPIRED,
+    HOLD_FULFILLED,
+    HOLD_IN_TRANSIT,
+    BOOK_STATUS_CHANGED
+}
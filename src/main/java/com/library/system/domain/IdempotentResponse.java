@@ -0,0 +1,103 @@
+package com.library.system.domain;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.Size;
+
+import java.time.LocalDateTime;
+
+/**
+ * The outcome of a circulation POST sent with an Idempotency-Key: where it redirected and
+ * the flash message it left, so a retry with the same key can be answered with the same.
+ */
+@Entity
+@Table(name = "idempotency_keys")
+public class IdempotentResponse {
+
+    // Username and client key, so keys never collide across patrons
+    @Id
+    @Size(max = 200)
+    @Column(name = "scoped_key", length = 200)
+    private String scopedKey;
+
+    // URI and form parameters, to tell a retry from a different request reusing the key
+    @Size(max = 500)
+    @Column(name = "request_fingerprint", nullable = false, length = 500)
+    private String requestFingerprint;
+
+    @Size(max = 255)
+    @Column(name = "redirect_url", nullable = false)
+    private String redirectUrl;
+
+    @Size(max = 500)
+    @Column(name = "success_message", length = 500)
+    private String successMessage;
+
+    @Size(max = 500)
+    @Column(name = "error_message", length = 500)
+    private String errorMessage;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    // Constructors
+    public IdempotentResponse() {}
+
+    public IdempotentResponse(String scopedKey, String requestFingerprint, String redirectUrl,
+                              String successMessage, String errorMessage) {
+        this.scopedKey = scopedKey;
+        this.requestFingerprint = requestFingerprint;
+        this.redirectUrl = redirectUrl;
+        this.successMessage = successMessage;
+        this.errorMessage = errorMessage;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public String getScopedKey() {
+        return scopedKey;
+    }
+
+    public void setScopedKey(String scopedKey) {
+        this.scopedKey = scopedKey;
+    }
+
+    public String getRequestFingerprint() {
+        return requestFingerprint;
+    }
+
+    public void setRequestFingerprint(String requestFingerprint) {
+        this.requestFingerprint = requestFingerprint;
+    }
+
+    public String getRedirectUrl() {
+        return redirectUrl;
+    }
+
+    public void setRedirectUrl(String redirectUrl) {
+        this.redirectUrl = redirectUrl;
+    }
+
+    public String getSuccessMessage() {
+        return successMessage;
+    }
+
+    public void setSuccessMessage(String successMessage) {
+        this.successMessage = successMessage;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -1,17 +1,19 @@
 package com.library.system.domain;
 
+import com.library.system.config.BranchContext;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "loans")
-public class Loan {
+public class Loan implements BranchScoped {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @BranchScopedId
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -41,6 +43,11 @@ public class Loan {
 
     @Column(name = "reminder_sent_at")
     private LocalDateTime reminderSentAt;
+
+    // Always the book's branch: a loan is stored next to the copy it is for
+    @Column(nullable = false, length = 20)
+    @ColumnDefault("'MAIN'")
+    private String branch = BranchContext.DEFAULT_BRANCH;
     
     // Constructors
     public Loan() {}
@@ -50,6 +57,7 @@ public class Loan {
         this.book = book;
         this.borrowDate = borrowDate;
         this.dueDate = dueDate;
+        this.branch = book.getBranch();
         this.createdAt = LocalDateTime.now();
         this.updatedAt = LocalDateTime.now();
         this.reminderSentAt = null;
@@ -135,4 +143,13 @@ public class Loan {
     public void setReminderSentAt(LocalDateTime reminderSentAt) {
         this.reminderSentAt = reminderSentAt;
     }
+
+    @Override
+    public String getBranch() {
+        return branch;
+    }
+
+    public void setBranch(String branch) {
+        this.branch = branch;
+    }
 }
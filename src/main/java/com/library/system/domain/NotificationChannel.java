@@ -0,0 +1,5 @@
+package com.library.system.domain;
+
+public enum NotificationChannel {
+    EMAIL
+}
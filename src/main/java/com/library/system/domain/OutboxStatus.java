@@ -0,0 +1,7 @@
+package com.library.system.domain;
+
+public enum OutboxStatus {
+    PENDING,
+    DELIVERED,
+    FAILED
+}
@@ -1,16 +1,18 @@
 package com.library.system.domain;
 
+import com.library.system.config.BranchContext;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "reservations")
-public class Reservation {
+public class Reservation implements BranchScoped {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @BranchScopedId
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -35,12 +37,25 @@ public class Reservation {
 
     private LocalDateTime expiresAt;
 
+    @Column(name = "pickup_notice_sent_at")
+    private LocalDateTime pickupNoticeSentAt;
+
+    // The book's branch, where the hold is stored
+    @Column(nullable = false, length = 20)
+    @ColumnDefault("'MAIN'")
+    private String branch = BranchContext.DEFAULT_BRANCH;
+
+    // Where the patron collects the book; a different branch means a transfer first
+    @Column(name = "pickup_branch", length = 20)
+    private String pickupBranch;
+
     // Constructors
     public Reservation() {}
 
     public Reservation(User user, Book book) {
         this.user = user;
         this.book = book;
+        this.branch = book.getBranch();
         this.createdAt = LocalDateTime.now();
     }
 
@@ -48,6 +63,7 @@ public class Reservation {
         this.user = user;
         this.book = book;
         this.queuePosition = queuePosition;
+        this.branch = book.getBranch();
         this.createdAt = LocalDateTime.now();
     }
     
@@ -115,4 +131,36 @@ public class Reservation {
     public void setQueuePosition(Integer queuePosition) {
         this.queuePosition = queuePosition;
     }
+
+    public LocalDateTime getPickupNoticeSentAt() {
+        return pickupNoticeSentAt;
+    }
+
+    public void setPickupNoticeSentAt(LocalDateTime pickupNoticeSentAt) {
+        this.pickupNoticeSentAt = pickupNoticeSentAt;
+    }
+
+    @Override
+    public String getBranch() {
+        return branch;
+    }
+
+    public void setBranch(String branch) {
+        this.branch = branch;
+    }
+
+    /**
+     * The pickup branch, which is the book's own branch unless the patron chose another.
+     */
+    public String getPickupBranch() {
+        return pickupBranch != null ? pickupBranch : branch;
+    }
+
+    public void setPickupBranch(String pickupBranch) {
+        this.pickupBranch = pickupBranch;
+    }
+
+    public boolean needsTransfer() {
+        return !getPickupBranch().equals(branch);
+    }
 }
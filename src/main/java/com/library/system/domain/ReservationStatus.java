@@ -5,5 +5,7 @@ public enum ReservationStatus {
     READY_FOR_PICKUP,
     EXPIRED,
     CANCELLED,
-    FULFILLED
+    FULFILLED,
+    // Set aside for a patron collecting at another branch, on its way there
+    IN_TRANSIT
 }
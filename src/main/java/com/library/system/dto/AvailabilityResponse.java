@@ -0,0 +1,17 @@
+package com.library.system.dto;
+
+import com.library.system.domain.BookStatus;
+
+import java.time.LocalDate;
+
+/**
+ * Circulation state of one book for the JSON API, without the patrons behind it.
+ */
+public record AvailabilityResponse(Long bookId, BookStatus status, LocalDate dueBack, int holdCount,
+                                   boolean heldForPickup) {
+
+    public static AvailabilityResponse of(Long bookId, BookAvailability availability) {
+        return new AvailabilityResponse(bookId, availability.status(), availability.dueBack(),
+            availability.holdCount(), availability.isHeldForPickup());
+    }
+}
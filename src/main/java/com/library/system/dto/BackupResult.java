@@ -0,0 +1,10 @@
+package com.library.system.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Outcome of one online backup or of re-verifying an existing snapshot.
+ */
+public record BackupResult(String file, LocalDateTime createdAt, long bytes, int pages, int restarts,
+                           long durationMs, boolean verified, String integrity) {
+}
@@ -0,0 +1,49 @@
+package com.library.system.dto;
+
+import com.library.system.domain.BookStatus;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Denormalized circulation state of one book, as kept by the availability projection.
+ *
+ * @param dueBack due date of the open loan, if the book is out
+ * @param borrowerUserId patron holding the open loan, if any
+ * @param waitingUserIds patrons with a pending hold, in queue order
+ * @param readyForUserId patron whose hold is waiting at the desk for pickup, if any
+ */
+public record BookAvailability(BookStatus status,
+                               LocalDate dueBack,
+                               Long borrowerUserId,
+                               List<Long> waitingUserIds,
+                               Long readyForUserId) {
+
+    public static BookAvailability of(BookStatus status) {
+        return new BookAvailability(status, null, null, List.of(), null);
+    }
+
+    public boolean isAvailable() {
+        return status == BookStatus.AVAILABLE;
+    }
+
+    public int holdCount() {
+        return waitingUserIds.size();
+    }
+
+    public boolean isHeldForPickup() {
+        return readyForUserId != null;
+    }
+
+    public boolean isBorrowedBy(Long userId) {
+        return userId != null && userId.equals(borrowerUserId);
+    }
+
+    public boolean hasHoldFor(Long userId) {
+        return userId != null && (waitingUserIds.contains(userId) || userId.equals(readyForUserId));
+    }
+
+    public boolean isNextInQueue(Long userId) {
+        return userId != null && !waitingUserIds.isEmpty() && waitingUserIds.get(0).equals(userId);
+    }
+}
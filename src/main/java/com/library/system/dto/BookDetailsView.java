@@ -0,0 +1,35 @@
+package com.library.system.dto;
+
+import com.library.system.domain.Book;
+import com.library.system.domain.BookStatus;
+
+/**
+ * Everything the book-details page shows: the book, its circulation state and what the
+ * signed-in patron may do with it.
+ *
+ * @param availability null only if the book vanished between the two reads
+ * @param canReserve the book is out, and neither borrowed by nor already held for this patron
+ * @param hasReservation the book is out and this patron is waiting for it or has it ready for pickup
+ */
+public record BookDetailsView(Book book,
+                              BookAvailability availability,
+                              boolean canReserve,
+                              boolean hasReservation) {
+
+    public static BookDetailsView of(Book book, BookAvailability availability, Long userId) {
+        // Reserving only makes sense for a copy that is out
+        if (availability == null || userId == null || availability.status() != BookStatus.BORROWED) {
+            return new BookDetailsView(book, availability, false, false);
+        }
+        boolean hasReservation = availability.hasHoldFor(userId);
+        return new BookDetailsView(book, availability, !availability.isBorrowedBy(userId) && !hasReservation, hasReservation);
+    }
+
+    public boolean isAvailable() {
+        return availability != null && availability.isAvailable();
+    }
+
+    public int reservationCount() {
+        return availability != null ? availability.holdCount() : 0;
+    }
+}
@@ -0,0 +1,17 @@
+package com.library.system.dto;
+
+import com.library.system.domain.BookStatus;
+
+import java.time.LocalDate;
+
+/**
+ * One row of a search result list: the columns the list pages show, read straight from the
+ * query without loading (or tracking) the book entity.
+ */
+public record BookListItem(Long id, String isbn, String title, String author, String publisher,
+                           LocalDate publicationDate, BookStatus status) {
+
+    public BookListItem withStatus(BookStatus status) {
+        return new BookListItem(id, isbn, title, author, publisher, publicationDate, status);
+    }
+}
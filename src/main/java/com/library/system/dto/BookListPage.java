@@ -0,0 +1,9 @@
+package com.library.system.dto;
+
+import java.util.List;
+
+/**
+ * One page of a search result list, ordered by title.
+ */
+public record BookListPage(List<BookListItem> books, int page, boolean hasNext) {
+}
@@ -0,0 +1,25 @@
+package com.library.system.dto;
+
+import com.library.system.domain.Book;
+import com.library.system.domain.BookStatus;
+
+import java.time.LocalDate;
+
+/**
+ * One book as served by the JSON API, without its loan and reservation collections.
+ */
+public record BookResponse(Long id,
+                           String isbn,
+                           String title,
+                           String author,
+                           String publisher,
+                           LocalDate publicationDate,
+                           String description,
+                           BookStatus status,
+                           String branch) {
+
+    public static BookResponse of(Book book) {
+        return new BookResponse(book.getId(), book.getIsbn(), book.getTitle(), book.getAuthor(), book.getPublisher(),
+            book.getPublicationDate(), book.getDescription(), book.getStatus(), book.getBranch());
+    }
+}
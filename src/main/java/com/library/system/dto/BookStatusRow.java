@@ -0,0 +1,10 @@
+package com.library.system.dto;
+
+import com.library.system.domain.BookStatus;
+
+/**
+ * Status of one book, as read when (re)building the availability projection, with the
+ * version of the row it was read from.
+ */
+public record BookStatusRow(Long bookId, BookStatus status, Long version) {
+}
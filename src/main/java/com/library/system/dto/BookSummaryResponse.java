@@ -0,0 +1,18 @@
+package com.library.system.dto;
+
+import com.library.system.domain.Book;
+import com.library.system.domain.BookStatus;
+
+/**
+ * A search hit in the JSON API: what a result list shows.
+ */
+public record BookSummaryResponse(Long id, String isbn, String title, String author, BookStatus status) {
+
+    public static BookSummaryResponse of(Book book) {
+        return new BookSummaryResponse(book.getId(), book.getIsbn(), book.getTitle(), book.getAuthor(), book.getStatus());
+    }
+
+    public static BookSummaryResponse of(BookListItem book) {
+        return new BookSummaryResponse(book.id(), book.isbn(), book.title(), book.author(), book.status());
+    }
+}
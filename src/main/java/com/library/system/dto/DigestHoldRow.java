@@ -0,0 +1,9 @@
+package com.library.system.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * One ready-for-pickup reservation as read by the digest query, without loading entities.
+ */
+public record DigestHoldRow(Long reservationId, Long userId, String fullName, String email, String bookTitle, LocalDateTime expiresAt) {
+}
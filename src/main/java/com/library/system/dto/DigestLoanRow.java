@@ -0,0 +1,9 @@
+package com.library.system.dto;
+
+import java.time.LocalDate;
+
+/**
+ * One due-soon loan as read by the digest query, without loading entities.
+ */
+public record DigestLoanRow(Long loanId, Long userId, String fullName, String email, String bookTitle, LocalDate dueDate) {
+}
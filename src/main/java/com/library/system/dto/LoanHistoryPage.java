@@ -0,0 +1,16 @@
+package com.library.system.dto;
+
+import com.library.system.domain.LoanStatus;
+
+import java.util.List;
+
+/**
+ * One page of a patron's loans, active ones first. A patron never has more active loans
+ * than fit on a page, so the first page holds all of them.
+ */
+public record LoanHistoryPage(List<PatronLoanRow> loans, int page, boolean hasNext) {
+
+    public List<PatronLoanRow> activeLoans() {
+        return loans.stream().filter(loan -> loan.status() == LoanStatus.ACTIVE).toList();
+    }
+}
@@ -0,0 +1,20 @@
+package com.library.system.dto;
+
+import com.library.system.domain.Loan;
+import com.library.system.domain.LoanStatus;
+
+import java.time.LocalDate;
+
+public record LoanResponse(Long id,
+                           Long bookId,
+                           String title,
+                           LocalDate borrowDate,
+                           LocalDate dueDate,
+                           LocalDate returnDate,
+                           LoanStatus status) {
+
+    public static LoanResponse of(Loan loan) {
+        return new LoanResponse(loan.getId(), loan.getBook().getId(), loan.getBook().getTitle(), loan.getBorrowDate(),
+            loan.getDueDate(), loan.getReturnDate(), loan.getStatus());
+    }
+}
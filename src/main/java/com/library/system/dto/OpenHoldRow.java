@@ -0,0 +1,9 @@
+package com.library.system.dto;
+
+import com.library.system.domain.ReservationStatus;
+
+/**
+ * One pending or ready-for-pickup hold, as read when (re)building the availability projection.
+ */
+public record OpenHoldRow(Long bookId, Long userId, ReservationStatus status) {
+}
@@ -0,0 +1,9 @@
+package com.library.system.dto;
+
+import java.time.LocalDate;
+
+/**
+ * One active or extended loan, as read when (re)building the availability projection.
+ */
+public record OpenLoanRow(Long bookId, Long userId, LocalDate dueDate) {
+}
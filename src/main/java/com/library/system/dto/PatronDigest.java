@@ -0,0 +1,18 @@
+package com.library.system.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Everything one patron should hear about in a single notification.
+ */
+public record PatronDigest(Long userId, String fullName, String email, List<DigestLoanRow> loans, List<DigestHoldRow> holds) {
+
+    public PatronDigest(Long userId, String fullName, String email) {
+        this(userId, fullName, email, new ArrayList<>(), new ArrayList<>());
+    }
+
+    public boolean isEmpty() {
+        return loans.isEmpty() && holds.isEmpty();
+    }
+}
@@ -0,0 +1,18 @@
+package com.library.system.dto;
+
+import com.library.system.domain.ReservationStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * One open hold as listed on the patron's my-loans page.
+ */
+public record PatronHoldRow(Long id,
+                            Long bookId,
+                            String title,
+                            String author,
+                            ReservationStatus status,
+                            Integer queuePosition,
+                            LocalDateTime createdAt,
+                            LocalDateTime expiresAt) {
+}
@@ -0,0 +1,18 @@
+package com.library.system.dto;
+
+import com.library.system.domain.LoanStatus;
+
+import java.time.LocalDate;
+
+/**
+ * One loan as listed on the patron's my-loans page: the columns it shows and nothing else.
+ */
+public record PatronLoanRow(Long id,
+                            Long bookId,
+                            String title,
+                            String author,
+                            LocalDate borrowDate,
+                            LocalDate dueDate,
+                            LocalDate returnDate,
+                            LoanStatus status) {
+}
@@ -0,0 +1,21 @@
+package com.library.system.dto;
+
+import com.library.system.domain.Reservation;
+import com.library.system.domain.ReservationStatus;
+
+import java.time.LocalDateTime;
+
+public record ReservationResponse(Long id,
+                                  Long bookId,
+                                  String title,
+                                  ReservationStatus status,
+                                  Integer queuePosition,
+                                  String pickupBranch,
+                                  LocalDateTime expiresAt) {
+
+    public static ReservationResponse of(Reservation reservation) {
+        return new ReservationResponse(reservation.getId(), reservation.getBook().getId(),
+            reservation.getBook().getTitle(), reservation.getStatus(), reservation.getQueuePosition(),
+            reservation.getPickupBranch(), reservation.getExpiresAt());
+    }
+}
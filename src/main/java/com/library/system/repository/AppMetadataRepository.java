@@ -0,0 +1,9 @@
+package com.library.system.repository;
+
+import com.library.system.domain.AppMetadata;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface AppMetadataRepository extends JpaRepository<AppMetadata, String> {
+}
@@ -2,22 +2,43 @@ package com.library.system.repository;
 
 import com.library.system.domain.Book;
 import com.library.system.domain.BookStatus;
+import com.library.system.dto.BookListItem;
+import com.library.system.dto.BookStatusRow;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface BookRepository extends JpaRepository<Book, Long> {
-    
-    Optional<Book> findByIsbn(String isbn);
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
     
     List<Book> findByStatus(BookStatus status);
+
+    /**
+     * Loads the book with a row lock where the database has them (SELECT ... FOR UPDATE), so
+     * concurrent checkouts of one copy queue up. SQLite ignores the lock; its single writer
+     * connection already serializes them.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Book b WHERE b.id = :id")
+    Optional<Book> findByIdForUpdate(@Param("id") Long id);
     
+    /**
+     * Just the version, for answering conditional requests without loading the book.
+     */
+    @Query("SELECT b.version FROM Book b WHERE b.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
     List<Book> findByTitleContainingIgnoreCase(String title);
     
     List<Book> findByAuthorContainingIgnoreCase(String author);
@@ -49,4 +70,64 @@ public interface BookRepository extends JpaRepository<Book, Long> {
                               @Param("status") BookStatus status,
                               @Param("fromDate") LocalDate fromDate,
                               @Param("toDate") LocalDate toDate);
+
+    // List-page variants of the searches above: only the columns a result list shows
+    String LIST_ITEM = "SELECT new com.library.system.dto.BookListItem(" +
+                       "b.id, b.isbn, b.title, b.author, b.publisher, b.publicationDate, b.status) FROM Book b";
+    String SEARCH_FILTER = " WHERE " +
+                           "LOWER(b.title) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
+                           "LOWER(b.author) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
+                           "LOWER(b.isbn) LIKE LOWER(CONCAT('%', :searchTerm, '%'))";
+    String ADVANCED_FILTER = " WHERE " +
+                             "(:title IS NULL OR LOWER(b.title) LIKE LOWER(CONCAT('%', :title, '%'))) AND " +
+                             "(:author IS NULL OR LOWER(b.author) LIKE LOWER(CONCAT('%', :author, '%'))) AND " +
+                             "(:isbn IS NULL OR LOWER(b.isbn) LIKE LOWER(CONCAT('%', :isbn, '%'))) AND " +
+                             "(:publisher IS NULL OR LOWER(b.publisher) LIKE LOWER(CONCAT('%', :publisher, '%'))) AND " +
+                             "(:status IS NULL OR b.status = :status) AND " +
+                             "(:fromDate IS NULL OR b.publicationDate >= :fromDate) AND " +
+                             "(:toDate IS NULL OR b.publicationDate <= :toDate)";
+
+    @Query(LIST_ITEM)
+    List<BookListItem> findAllListItems();
+
+    @Query(LIST_ITEM + SEARCH_FILTER)
+    List<BookListItem> searchListItems(@Param("searchTerm") String searchTerm);
+
+    @Query(LIST_ITEM + ADVANCED_FILTER)
+    List<BookListItem> advancedSearchListItems(@Param("title") String title,
+                                               @Param("author") String author,
+                                               @Param("isbn") String isbn,
+                                               @Param("publisher") String publisher,
+                                               @Param("status") BookStatus status,
+                                               @Param("fromDate") LocalDate fromDate,
+                                               @Param("toDate") LocalDate toDate);
+
+    // One page of a result list for the JSON API, in a stable order so pages never overlap
+    @Query(LIST_ITEM + " ORDER BY b.title, b.id")
+    Slice<BookListItem> findListItemPage(Pageable pageable);
+
+    @Query(LIST_ITEM + SEARCH_FILTER + " ORDER BY b.title, b.id")
+    Slice<BookListItem> searchListItemPage(@Param("searchTerm") String searchTerm, Pageable pageable);
+
+    // Streamed for pages rendered while the rows are read; consume inside a transaction
+    @Query(LIST_ITEM + SEARCH_FILTER)
+    Stream<BookListItem> streamListItems(@Param("searchTerm") String searchTerm);
+
+    @Query(LIST_ITEM + ADVANCED_FILTER)
+    Stream<BookListItem> streamAdvancedSearchListItems(@Param("title") String title,
+                                                       @Param("author") String author,
+                                                       @Param("isbn") String isbn,
+                                                       @Param("publisher") String publisher,
+                                                       @Param("status") BookStatus status,
+                                                       @Param("fromDate") LocalDate fromDate,
+                                                       @Param("toDate") LocalDate toDate);
+
+    @Query("SELECT b.isbn FROM Book b WHERE b.isbn IN :isbns")
+    List<String> findExistingIsbns(@Param("isbns") Collection<String> isbns);
+
+    @Query("SELECT new com.library.system.dto.BookStatusRow(b.id, b.status, b.version) FROM Book b")
+    List<BookStatusRow> findAllStatusRows();
+
+    @Query("SELECT new com.library.system.dto.BookStatusRow(b.id, b.status, b.version) FROM Book b WHERE b.id = :bookId")
+    List<BookStatusRow> findStatusRows(@Param("bookId") Long bookId);
 }
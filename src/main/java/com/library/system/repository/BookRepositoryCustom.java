@@ -0,0 +1,13 @@
+package com.library.system.repository;
+
+import com.library.system.domain.Book;
+
+import java.util.Optional;
+
+/**
+ * Book lookups that go through Hibernate's natural-id cache instead of a query.
+ */
+public interface BookRepositoryCustom {
+
+    Optional<Book> findByIsbn(String isbn);
+}
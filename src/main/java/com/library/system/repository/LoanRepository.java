@@ -3,14 +3,23 @@ package com.library.system.repository;
 import com.library.system.domain.Loan;
 import com.library.system.domain.LoanStatus;
 import com.library.system.domain.User;
+import com.library.system.dto.DigestLoanRow;
+import com.library.system.dto.OpenLoanRow;
+import com.library.system.dto.PatronLoanRow;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface LoanRepository extends JpaRepository<Loan, Long> {
@@ -48,4 +57,71 @@ public interface LoanRepository extends JpaRepository<Loan, Long> {
     List<Loan> findDueSoonLoansWithoutReminder(@Param("startDate") LocalDate startDate,
                                                @Param("endDate") LocalDate endDate,
                                                @Param("statuses") List<LoanStatus> statuses);
+
+    // Keyset page of due-soon loans ordered by id, used by the chunked reminder run
+    @Query("""
+        SELECT l FROM Loan l
+        JOIN FETCH l.user
+        JOIN FETCH l.book
+        WHERE l.id > :afterId
+          AND l.status IN :statuses
+          AND l.reminderSentAt IS NULL
+          AND l.dueDate BETWEEN :startDate AND :endDate
+        ORDER BY l.id ASC
+    """)
+    List<Loan> findDueSoonLoansWithoutReminderAfter(@Param("afterId") Long afterId,
+                                                    @Param("startDate") LocalDate startDate,
+                                                    @Param("endDate") LocalDate endDate,
+                                                    @Param("statuses") List<LoanStatus> statuses,
+                                                    Limit limit);
+
+    @Modifying
+    @Query("UPDATE Loan l SET l.reminderSentAt = :sentAt, l.updatedAt = :sentAt WHERE l.id IN :ids AND l.reminderSentAt IS NULL")
+    int markRemindersSent(@Param("ids") List<Long> ids, @Param("sentAt") LocalDateTime sentAt);
+
+    // Next page of patrons with due-soon loans, for per-patron digests
+    @Query("""
+        SELECT DISTINCT l.user.id FROM Loan l
+        WHERE l.user.id > :afterUserId
+          AND l.status IN :statuses
+          AND l.reminderSentAt IS NULL
+          AND l.dueDate BETWEEN :startDate AND :endDate
+        ORDER BY l.user.id ASC
+    """)
+    List<Long> findDueSoonReminderUserIds(@Param("afterUserId") Long afterUserId,
+                                          @Param("startDate") LocalDate startDate,
+                                          @Param("endDate") LocalDate endDate,
+                                          @Param("statuses") List<LoanStatus> statuses,
+                                          Limit limit);
+
+    @Query("""
+        SELECT new com.library.system.dto.DigestLoanRow(l.id, u.id, u.fullName, u.email, b.title, l.dueDate)
+        FROM Loan l JOIN l.user u JOIN l.book b
+        WHERE u.id IN :userIds
+          AND l.status IN :statuses
+          AND l.reminderSentAt IS NULL
+          AND l.dueDate BETWEEN :startDate AND :endDate
+        ORDER BY u.id ASC, l.dueDate ASC, l.id ASC
+    """)
+    Stream<DigestLoanRow> streamDueSoonDigestRows(@Param("userIds") List<Long> userIds,
+                                                  @Param("startDate") LocalDate startDate,
+                                                  @Param("endDate") LocalDate endDate,
+                                                  @Param("statuses") List<LoanStatus> statuses);
+
+    @Query("SELECT new com.library.system.dto.OpenLoanRow(l.book.id, l.user.id, l.dueDate) FROM Loan l WHERE l.status IN ('ACTIVE', 'EXTENDED')")
+    List<OpenLoanRow> findOpenLoanRows();
+
+    /**
+     * A page of the patron's loans, active ones first and then newest first.
+     */
+    @Query("""
+        SELECT new com.library.system.dto.PatronLoanRow(l.id, b.id, b.title, b.author, l.borrowDate, l.dueDate, l.returnDate, l.status)
+        FROM Loan l JOIN l.book b
+        WHERE l.user.id = :userId
+        ORDER BY CASE WHEN l.status = 'ACTIVE' THEN 0 ELSE 1 END, l.borrowDate DESC, l.id DESC
+    """)
+    Slice<PatronLoanRow> findPatronLoanRows(@Param("userId") Long userId, Pageable pageable);
+
+    @Query("SELECT new com.library.system.dto.OpenLoanRow(l.book.id, l.user.id, l.dueDate) FROM Loan l WHERE l.book.id = :bookId AND l.status IN ('ACTIVE', 'EXTENDED')")
+    List<OpenLoanRow> findOpenLoanRows(@Param("bookId") Long bookId);
 }
@@ -0,0 +1,50 @@
+package com.library.system.repository;
+
+import com.library.system.domain.OutboxMessage;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, Long> {
+
+    @Query("SELECT m FROM OutboxMessage m WHERE m.status = 'PENDING' AND m.nextAttemptAt <= :now ORDER BY m.id ASC")
+    List<OutboxMessage> findDispatchable(@Param("now") LocalDateTime now, Limit limit);
+
+    @Query("SELECT COUNT(m) FROM OutboxMessage m WHERE m.status = 'PENDING'")
+    long countPending();
+
+    /**
+     * Lease a due message to the caller by moving its next attempt to {@code leaseUntil}.
+     * Updates nothing if another instance got there first.
+     */
+    @Modifying
+    @Query("UPDATE OutboxMessage m SET m.nextAttemptAt = :leaseUntil WHERE m.id IN :ids AND m.status = 'PENDING' AND m.nextAttemptAt <= :now")
+    int claim(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /**
+     * The messages among {@code ids} holding this lease, that is the ones a {@link #claim} with
+     * it took.
+     */
+    @Query("SELECT m FROM OutboxMessage m WHERE m.id IN :ids AND m.status = 'PENDING' AND m.nextAttemptAt = :leaseUntil ORDER BY m.id ASC")
+    List<OutboxMessage> findClaimed(@Param("ids") Collection<Long> ids, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Modifying
+    @Query("UPDATE OutboxMessage m SET m.status = 'DELIVERED', m.deliveredAt = :deliveredAt, m.attempts = m.attempts + 1, m.lastError = NULL WHERE m.id = :id")
+    int markDelivered(@Param("id") Long id, @Param("deliveredAt") LocalDateTime deliveredAt);
+
+    @Modifying
+    @Query("UPDATE OutboxMessage m SET m.attempts = m.attempts + 1, m.nextAttemptAt = :nextAttemptAt, m.lastError = :error WHERE m.id = :id")
+    int markRetry(@Param("id") Long id, @Param("nextAttemptAt") LocalDateTime nextAttemptAt, @Param("error") String error);
+
+    @Modifying
+    @Query("UPDATE OutboxMessage m SET m.status = 'FAILED', m.attempts = m.attempts + 1, m.lastError = :error WHERE m.id = :id")
+    int markFailed(@Param("id") Long id, @Param("error") String error);
+}
@@ -3,7 +3,12 @@ package com.library.system.repository;
 import com.library.system.domain.Reservation;
 import com.library.system.domain.ReservationStatus;
 import com.library.system.domain.User;
+import com.library.system.dto.DigestHoldRow;
+import com.library.system.dto.OpenHoldRow;
+import com.library.system.dto.PatronHoldRow;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -11,6 +16,7 @@ import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ReservationRepository extends JpaRepository<Reservation, Long> {
@@ -36,12 +42,67 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
 
     Optional<Reservation> findByUserAndBookAndStatus(User user, com.library.system.domain.Book book, ReservationStatus status);
 
-    @Query("SELECT r FROM Reservation r WHERE r.book = :book AND r.user = :user AND r.status IN ('PENDING', 'READY_FOR_PICKUP')")
+    @Query("SELECT r FROM Reservation r WHERE r.book = :book AND r.user = :user AND r.status IN ('PENDING', 'READY_FOR_PICKUP', 'IN_TRANSIT')")
     Optional<Reservation> findActiveReservationByBookAndUser(@Param("book") com.library.system.domain.Book book, @Param("user") User user);
 
     @Query("SELECT COUNT(r) FROM Reservation r WHERE r.book = :book AND r.status = 'PENDING'")
     long countPendingReservationsByBook(@Param("book") com.library.system.domain.Book book);
 
-    @Query("SELECT r FROM Reservation r WHERE r.user = :user AND r.status IN ('PENDING', 'READY_FOR_PICKUP') ORDER BY r.createdAt DESC")
+    @Query("SELECT r FROM Reservation r WHERE r.user = :user AND r.status IN ('PENDING', 'READY_FOR_PICKUP', 'IN_TRANSIT') ORDER BY r.createdAt DESC")
     List<Reservation> findActiveReservationsByUser(@Param("user") User user);
+
+    // Next page of patrons with ready holds that have not been announced yet, for per-patron digests
+    @Query("""
+        SELECT DISTINCT r.user.id FROM Reservation r
+        WHERE r.user.id > :afterUserId
+          AND r.status = 'READY_FOR_PICKUP'
+          AND r.pickupNoticeSentAt IS NULL
+          AND r.expiresAt > :now
+        ORDER BY r.user.id ASC
+    """)
+    List<Long> findPickupNoticeUserIds(@Param("afterUserId") Long afterUserId, @Param("now") LocalDateTime now, Limit limit);
+
+    @Query("""
+        SELECT new com.library.system.dto.DigestHoldRow(r.id, u.id, u.fullName, u.email, b.title, r.expiresAt)
+        FROM Reservation r JOIN r.user u JOIN r.book b
+        WHERE u.id IN :userIds
+          AND r.status = 'READY_FOR_PICKUP'
+          AND r.pickupNoticeSentAt IS NULL
+          AND r.expiresAt > :now
+        ORDER BY u.id ASC, r.expiresAt ASC, r.id ASC
+    """)
+    Stream<DigestHoldRow> streamPickupDigestRows(@Param("userIds") List<Long> userIds, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE Reservation r SET r.pickupNoticeSentAt = :sentAt WHERE r.id IN :ids AND r.pickupNoticeSentAt IS NULL")
+    int markPickupNoticesSent(@Param("ids") List<Long> ids, @Param("sentAt") LocalDateTime sentAt);
+
+    @Query("""
+        SELECT new com.library.system.dto.OpenHoldRow(r.book.id, r.user.id, r.status) FROM Reservation r
+        WHERE r.status IN ('PENDING', 'READY_FOR_PICKUP', 'IN_TRANSIT')
+        ORDER BY r.book.id ASC, r.queuePosition ASC
+    """)
+    List<OpenHoldRow> findOpenHoldRows();
+
+    @Query("""
+        SELECT new com.library.system.dto.OpenHoldRow(r.book.id, r.user.id, r.status) FROM Reservation r
+        WHERE r.book.id = :bookId AND r.status IN ('PENDING', 'READY_FOR_PICKUP', 'IN_TRANSIT')
+        ORDER BY r.queuePosition ASC
+    """)
+    List<OpenHoldRow> findOpenHoldRows(@Param("bookId") Long bookId);
+
+    @Query("""
+        SELECT new com.library.system.dto.PatronHoldRow(r.id, b.id, b.title, b.author, r.status, r.queuePosition, r.createdAt, r.expiresAt)
+        FROM Reservation r JOIN r.book b
+        WHERE r.user.id = :userId AND r.status IN ('PENDING', 'READY_FOR_PICKUP', 'IN_TRANSIT')
+        ORDER BY r.createdAt DESC
+    """)
+    List<PatronHoldRow> findPatronHoldRows(@Param("userId") Long userId);
+
+    // Holds on their way to the given pickup branch, oldest dispatch first
+    @Query("SELECT r FROM Reservation r JOIN FETCH r.book JOIN FETCH r.user WHERE r.status = 'IN_TRANSIT' AND r.pickupBranch = :branch ORDER BY r.notifiedAt ASC")
+    List<Reservation> findInTransitByPickupBranch(@Param("branch") String branch);
+
+    @Query("SELECT r FROM Reservation r JOIN FETCH r.book JOIN FETCH r.user WHERE r.id = :id")
+    Optional<Reservation> findWithBookAndUserById(@Param("id") Long id);
 }
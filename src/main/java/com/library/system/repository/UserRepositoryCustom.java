@@ -0,0 +1,13 @@
+package com.library.system.repository;
+
+import com.library.system.domain.User;
+
+import java.util.Optional;
+
+/**
+ * User lookups that go through Hibernate's natural-id cache instead of a query.
+ */
+public interface UserRepositoryCustom {
+
+    Optional<User> findByUsername(String username);
+}
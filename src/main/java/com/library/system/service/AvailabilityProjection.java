@@ -0,0 +1,465 @@
+package com.library.system.service;
+
+import com.library.system.config.BranchContext;
+import com.library.system.domain.BookStatus;
+import com.library.system.domain.CirculationEvent;
+import com.library.system.domain.ReservationStatus;
+import com.library.system.dto.BookAvailability;
+import com.library.system.dto.BookStatusRow;
+import com.library.system.dto.OpenHoldRow;
+import com.library.system.dto.OpenLoanRow;
+import com.library.system.repository.BookRepository;
+import com.library.system.repository.LoanRepository;
+import com.library.system.repository.ReservationRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory read model of every book's availability: status, due-back date, who has it
+ * and who is waiting for it. Catalog pages read this instead of joining books, loans and
+ * reservations on every request.
+ * <p>
+ * The table is kept current by applying the {@link CirculationEvent}s handed over by the
+ * {@link CirculationEventLog} once their transaction commits. A snapshot tagged with the
+ * log sequence number it covers is written on a schedule and at shutdown; at startup the
+ * snapshot is loaded and only the events after it are replayed from the log. When the log
+ * cannot vouch for that tail, e.g. after a crash, the table is rebuilt from the tables.
+ * <p>
+ * Events only reach the instance that committed them. With several instances sharing the
+ * database, each one compares the version of every book row with the one its entry was read
+ * at every library.availability.sync-interval, and reads the books that moved again; the
+ * availability API does the same for the one book it serves on each request.
+ */
+@Service
+public class AvailabilityProjection {
+
+    private static final Logger log = LoggerFactory.getLogger(AvailabilityProjection.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x4C425641;
+    private static final int SNAPSHOT_VERSION = 3;
+    private static final long NONE = -1L;
+    private static final String SUBSCRIBER = "availability";
+
+    private final BookRepository bookRepository;
+    private final LoanRepository loanRepository;
+    private final ReservationRepository reservationRepository;
+    private final CirculationEventLog eventLog;
+    private final PageCache pageCache;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean snapshotEnabled;
+    private final Path snapshotFile;
+
+    private volatile Map<Long, BookAvailability> table = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+
+    // Version of the book row each entry was last read from the tables at
+    private final Map<Long, Long> versions = new ConcurrentHashMap<>();
+    // Events applied per book, so a re-read never overwrites an event applied while it ran
+    private final Map<Long, Long> appliedEvents = new ConcurrentHashMap<>();
+
+    // Events published before initialize() has finished, replayed on top of the loaded table.
+    // Guarded by its own lock: events arrive while the log holds its lock, so never lock this.
+    private final Object pendingLock = new Object();
+    private final List<CirculationEvent> pendingEvents = new ArrayList<>();
+
+    public AvailabilityProjection(BookRepository bookRepository,
+                                  LoanRepository loanRepository,
+                                  ReservationRepository reservationRepository,
+                                  CirculationEventLog eventLog,
+                                  PageCache pageCache,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${library.availability.snapshot.enabled:true}") boolean snapshotEnabled,
+                                  @Value("${library.availability.snapshot.file:availability.snapshot}") String snapshotFile) {
+        this.bookRepository = bookRepository;
+        this.loanRepository = loanRepository;
+        this.reservationRepository = reservationRepository;
+        this.eventLog = eventLog;
+        this.pageCache = pageCache;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.snapshotEnabled = snapshotEnabled;
+        this.snapshotFile = Paths.get(snapshotFile);
+        eventLog.subscribe(SUBSCRIBER, this::on);
+    }
+
+    /**
+     * Load the projection and start serving reads from it. Invoked by {@link StartupOrchestrator}.
+     */
+    public void initialize() {
+        long start = System.nanoTime();
+        Snapshot snapshot = snapshotEnabled ? readSnapshot() : null;
+        if (snapshot != null && eventLog.canReplayFrom(snapshot.sequence())) {
+            // Under the log lock, so no event slips in between the replay and going live
+            versions.putAll(snapshot.versions());
+            long replayed = eventLog.atConsistentPoint(last -> {
+                long count = eventLog.replay(snapshot.sequence(), event -> apply(snapshot.table(), event));
+                goLive(snapshot.table());
+                return count;
+            });
+            log.info("Availability projection: loaded {} books from snapshot + {} events in {}ms",
+                snapshot.table().size(), replayed, (System.nanoTime() - start) / 1_000_000);
+        } else {
+            // Each branch's books, loans and holds share a shard, so each shard builds its own part
+            Map<Long, BookAvailability> loaded = new ConcurrentHashMap<>();
+            BranchContext.forEachBranch(() -> loaded.putAll(readOnlyTransaction.execute(status -> {
+                List<BookStatusRow> books = bookRepository.findAllStatusRows();
+                books.forEach(book -> versions.put(book.bookId(), book.version()));
+                return build(books, loanRepository.findOpenLoanRows(), reservationRepository.findOpenHoldRows());
+            })));
+            goLive(loaded);
+            log.info("Availability projection: loaded {} books from tables in {}ms",
+                loaded.size(), (System.nanoTime() - start) / 1_000_000);
+            // The old snapshot, if any, no longer matches the log; replace it right away
+            checkpoint();
+        }
+    }
+
+    private void goLive(Map<Long, BookAvailability> loaded) {
+        synchronized (pendingLock) {
+            for (CirculationEvent event : pendingEvents) {
+                apply(loaded, event);
+            }
+            pendingEvents.clear();
+            table = loaded;
+            ready = true;
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Availability of one book, or null if there is no such book. Until the projection is
+     * initialized this reads the tables directly.
+     */
+    public BookAvailability get(Long bookId) {
+        if (bookId == null) {
+            return null;
+        }
+        BookAvailability availability = ready ? table.get(bookId) : null;
+        return availability != null ? availability : load(bookId);
+    }
+
+    /**
+     * Availability of the book as of the given version of its row. Every loan and hold change
+     * bumps that version, so when the table was not last read at it, a change this instance
+     * has not applied (or not read back yet) has committed: the book is read again from the
+     * tables. Null if there is no such book.
+     */
+    public BookAvailability get(Long bookId, long version) {
+        Long known = versions.get(bookId);
+        BookAvailability availability = ready && known != null && known == version ? table.get(bookId) : null;
+        return availability != null ? availability : reload(bookId);
+    }
+
+    /**
+     * Availability of several books, keyed by book id. Unknown ids are left out.
+     */
+    public Map<Long, BookAvailability> getAll(Collection<Long> bookIds) {
+        Map<Long, BookAvailability> result = new LinkedHashMap<>();
+        for (Long bookId : bookIds) {
+            BookAvailability availability = get(bookId);
+            if (availability != null) {
+                result.put(bookId, availability);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Apply a committed event. Called by {@link CirculationEventLog}, in log order.
+     */
+    public void on(CirculationEvent event) {
+        try {
+            if (!ready) {
+                synchronized (pendingLock) {
+                    if (!ready) {
+                        pendingEvents.add(event);
+                        return;
+                    }
+                }
+            }
+            apply(table, event);
+        } finally {
+            appliedEvents.merge(event.bookId(), 1L, Long::sum);
+        }
+    }
+
+    /**
+     * Catch up with changes committed by other instances: read again every book whose row is
+     * at another version than its entry was read at, and those added or removed meanwhile.
+     */
+    @Scheduled(fixedDelayString = "${library.availability.sync-interval:PT30S}", initialDelayString = "${library.availability.sync-interval:PT30S}")
+    public void sync() {
+        if (!ready) {
+            return;
+        }
+        Map<Long, Long> current = new HashMap<>();
+        BranchContext.fanOut(bookRepository::findAllStatusRows).forEach(book -> current.put(book.bookId(), book.version()));
+        List<Long> changed = new ArrayList<>();
+        current.forEach((bookId, version) -> {
+            if (!version.equals(versions.get(bookId))) {
+                changed.add(bookId);
+            }
+        });
+        table.keySet().stream().filter(bookId -> !current.containsKey(bookId)).forEach(changed::add);
+
+        for (Long bookId : changed) {
+            // Also the title or author may have changed, so cached pages go either way
+            boolean known = table.containsKey(bookId);
+            pageCache.onChangedElsewhere(bookId, !known || reload(bookId) == null);
+        }
+        if (!changed.isEmpty()) {
+            log.debug("Availability projection: read {} changed book(s) again", changed.size());
+        }
+    }
+
+    /**
+     * Write a snapshot of the table and tell the log it no longer needs the events before it.
+     */
+    @Scheduled(fixedDelayString = "${library.availability.checkpoint-interval:PT10M}", initialDelayString = "${library.availability.checkpoint-interval:PT10M}")
+    @PreDestroy
+    public void checkpoint() {
+        if (!ready) {
+            return;
+        }
+        if (!snapshotEnabled) {
+            // Nothing to replay onto at the next start, so the log can drop everything seen so far
+            eventLog.checkpointed(SUBSCRIBER, eventLog.getLastSequence());
+            return;
+        }
+
+        Snapshot snapshot = eventLog.atConsistentPoint(sequence -> new Snapshot(sequence, new HashMap<>(table), new HashMap<>(versions)));
+        try {
+            writeSnapshot(snapshot);
+            eventLog.checkpointed(SUBSCRIBER, snapshot.sequence());
+            log.info("Availability projection: wrote snapshot of {} books at sequence {} to {}",
+                snapshot.table().size(), snapshot.sequence(), snapshotFile);
+        } catch (IOException ex) {
+            log.warn("Availability projection: could not write snapshot to {}: {}", snapshotFile, ex.getMessage());
+        }
+    }
+
+    private void writeSnapshot(Snapshot snapshot) throws IOException {
+        Path directory = snapshotFile.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, snapshotFile.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(snapshot.sequence());
+            out.writeInt(snapshot.table().size());
+            for (Map.Entry<Long, BookAvailability> entry : snapshot.table().entrySet()) {
+                BookAvailability availability = entry.getValue();
+                out.writeLong(entry.getKey());
+                out.writeUTF(availability.status() != null ? availability.status().name() : "");
+                out.writeLong(availability.dueBack() != null ? availability.dueBack().toEpochDay() : Long.MIN_VALUE);
+                out.writeLong(availability.borrowerUserId() != null ? availability.borrowerUserId() : NONE);
+                out.writeLong(availability.readyForUserId() != null ? availability.readyForUserId() : NONE);
+                out.writeLong(snapshot.versions().getOrDefault(entry.getKey(), NONE));
+                out.writeInt(availability.waitingUserIds().size());
+                for (Long userId : availability.waitingUserIds()) {
+                    out.writeLong(userId);
+                }
+            }
+            out.flush();
+            // Durable before the log is allowed to compact the events it covers
+            channel.force(true);
+        }
+        Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Snapshot readSnapshot() {
+        if (!Files.exists(snapshotFile)) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                log.warn("Availability projection: ignoring snapshot {} with an unknown format", snapshotFile);
+                return null;
+            }
+            long sequence = in.readLong();
+            int size = in.readInt();
+            Map<Long, BookAvailability> loaded = new ConcurrentHashMap<>(Math.max(16, size * 2));
+            Map<Long, Long> loadedVersions = new HashMap<>(Math.max(16, size * 2));
+            for (int i = 0; i < size; i++) {
+                long bookId = in.readLong();
+                String status = in.readUTF();
+                long dueBack = in.readLong();
+                long borrower = in.readLong();
+                long readyFor = in.readLong();
+                long version = in.readLong();
+                if (version != NONE) {
+                    loadedVersions.put(bookId, version);
+                }
+                int waiting = in.readInt();
+                List<Long> waitingUserIds = new ArrayList<>(waiting);
+                for (int j = 0; j < waiting; j++) {
+                    waitingUserIds.add(in.readLong());
+                }
+                loaded.put(bookId, new BookAvailability(
+                    status.isEmpty() ? null : BookStatus.valueOf(status),
+                    dueBack == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(dueBack),
+                    borrower == NONE ? null : borrower,
+                    List.copyOf(waitingUserIds),
+                    readyFor == NONE ? null : readyFor));
+            }
+            return new Snapshot(sequence, loaded, loadedVersions);
+        } catch (IOException | IllegalArgumentException ex) {
+            log.warn("Availability projection: ignoring unreadable snapshot {}: {}", snapshotFile, ex.getMessage());
+            return null;
+        }
+    }
+
+    private BookAvailability load(Long bookId) {
+        return read(bookId).availability();
+    }
+
+    /**
+     * Read the book from the tables and, once the projection is live, put it in the table,
+     * unless an event for the book was applied meanwhile (the next read catches up with it).
+     */
+    private BookAvailability reload(Long bookId) {
+        long applied = appliedEvents.getOrDefault(bookId, 0L);
+        Reloaded reloaded = read(bookId);
+        if (ready) {
+            // Under the log lock, so no event is applied between the check and the update
+            eventLog.atConsistentPoint(sequence -> {
+                if (appliedEvents.getOrDefault(bookId, 0L) == applied) {
+                    if (reloaded.availability() == null) {
+                        table.remove(bookId);
+                        versions.remove(bookId);
+                    } else {
+                        table.put(bookId, reloaded.availability());
+                        versions.put(bookId, reloaded.version());
+                    }
+                }
+                return null;
+            });
+        }
+        return reloaded.availability();
+    }
+
+    // The book row, its loans and holds in one transaction, so the state matches the version
+    private Reloaded read(Long bookId) {
+        return BranchContext.call(BranchContext.branchOf(bookId), () -> readOnlyTransaction.execute(status -> {
+            List<BookStatusRow> books = bookRepository.findStatusRows(bookId);
+            BookAvailability availability = build(books, loanRepository.findOpenLoanRows(bookId),
+                reservationRepository.findOpenHoldRows(bookId)).get(bookId);
+            return new Reloaded(availability, books.isEmpty() ? null : books.get(0).version());
+        }));
+    }
+
+    static Map<Long, BookAvailability> build(List<BookStatusRow> books, List<OpenLoanRow> loans, List<OpenHoldRow> holds) {
+        Map<Long, List<Long>> waiting = new HashMap<>();
+        Map<Long, Long> readyFor = new HashMap<>();
+        for (OpenHoldRow hold : holds) {
+            // A copy on its way to another branch is as set aside as one waiting at the desk
+            if (hold.status() == ReservationStatus.READY_FOR_PICKUP || hold.status() == ReservationStatus.IN_TRANSIT) {
+                readyFor.put(hold.bookId(), hold.userId());
+            } else {
+                waiting.computeIfAbsent(hold.bookId(), id -> new ArrayList<>()).add(hold.userId());
+            }
+        }
+        Map<Long, OpenLoanRow> openLoans = new HashMap<>();
+        loans.forEach(loan -> openLoans.put(loan.bookId(), loan));
+
+        Map<Long, BookAvailability> result = new ConcurrentHashMap<>(Math.max(16, books.size() * 2));
+        for (BookStatusRow book : books) {
+            OpenLoanRow loan = openLoans.get(book.bookId());
+            result.put(book.bookId(), new BookAvailability(
+                book.status(),
+                loan != null ? loan.dueDate() : null,
+                loan != null ? loan.userId() : null,
+                List.copyOf(waiting.getOrDefault(book.bookId(), List.of())),
+                readyFor.get(book.bookId())));
+        }
+        return result;
+    }
+
+    static void apply(Map<Long, BookAvailability> table, CirculationEvent event) {
+        switch (event.type()) {
+            case BOOK_REMOVED -> table.remove(event.bookId());
+            default -> table.compute(event.bookId(), (id, current) ->
+                transition(current != null ? current : BookAvailability.of(BookStatus.AVAILABLE), event));
+        }
+    }
+
+    /**
+     * The state after the event. Every transition is idempotent, so replaying an event the
+     * table already reflects leaves it unchanged.
+     */
+    static BookAvailability transition(BookAvailability current, CirculationEvent event) {
+        BookStatus status = event.bookStatus() != null ? event.bookStatus() : current.status();
+        Long userId = event.userId();
+
+        return switch (event.type()) {
+            case BOOK_UPDATED, BOOK_STATUS_CHANGED -> new BookAvailability(status, current.dueBack(), current.borrowerUserId(),
+                current.waitingUserIds(), current.readyForUserId());
+            case LOAN_BORROWED, LOAN_EXTENDED -> new BookAvailability(status, event.dueDate(), userId,
+                current.waitingUserIds(), current.readyForUserId());
+            case LOAN_RETURNED -> new BookAvailability(status, null, null,
+                current.waitingUserIds(), current.readyForUserId());
+            case HOLD_PLACED -> current.waitingUserIds().contains(userId) ? current
+                : new BookAvailability(status, current.dueBack(), current.borrowerUserId(),
+                    append(current.waitingUserIds(), userId), current.readyForUserId());
+            case HOLD_READY, HOLD_IN_TRANSIT -> new BookAvailability(status, current.dueBack(), current.borrowerUserId(),
+                remove(current.waitingUserIds(), userId), userId);
+            case HOLD_CANCELLED, HOLD_EXPIRED, HOLD_FULFILLED -> new BookAvailability(status, current.dueBack(),
+                current.borrowerUserId(), remove(current.waitingUserIds(), userId),
+                userId != null && userId.equals(current.readyForUserId()) ? null : current.readyForUserId());
+            case BOOK_REMOVED -> current;
+        };
+    }
+
+    private static List<Long> append(List<Long> userIds, Long userId) {
+        List<Long> result = new ArrayList<>(userIds);
+        result.add(userId);
+        return List.copyOf(result);
+    }
+
+    private static List<Long> remove(List<Long> userIds, Long userId) {
+        if (!userIds.contains(userId)) {
+            return userIds;
+        }
+        List<Long> result = new ArrayList<>(userIds);
+        result.remove(userId);
+        return List.copyOf(result);
+    }
+
+    private record Reloaded(BookAvailability availability, Long version) {
+    }
+
+    private record Snapshot(long sequence, Map<Long, BookAvailability> table, Map<Long, Long> versions) {
+    }
+}
@@ -0,0 +1,11 @@
+package com.library.system.service;
+
+/**
+ * A backup was requested while another one is still being written.
+ */
+public class BackupInProgressException extends IllegalStateException {
+
+    public BackupInProgressException() {
+        super("A backup is already running");
+    }
+}
@@ -1,79 +1,292 @@
 package com.library.system.service;
 
+import com.library.system.config.BranchContext;
 import com.library.system.domain.Book;
 import com.library.system.domain.BookStatus;
+import com.library.system.domain.CirculationEvent;
+import com.library.system.domain.CirculationEventType;
+import com.library.system.dto.BookAvailability;
+import com.library.system.dto.BookDetailsView;
+import com.library.system.dto.BookListItem;
+import com.library.system.dto.BookListPage;
 import com.library.system.repository.BookRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
+/**
+ * Catalog access. Lookups by id go to the shard of the book's branch; listings and searches
+ * run against every shard at once and are merged (see {@link BranchContext}), which is why
+ * they do not open a transaction of their own.
+ */
 @Service
 @Transactional
 public class BookService {
     
+    private static final Set<CirculationEventType> BOOK_SAVED_WITH = EnumSet.of(
+        CirculationEventType.BOOK_UPDATED, CirculationEventType.BOOK_STATUS_CHANGED, CirculationEventType.BOOK_REMOVED,
+        CirculationEventType.LOAN_BORROWED, CirculationEventType.LOAN_RETURNED);
+
+    private static final Comparator<BookListItem> BY_TITLE =
+        Comparator.comparing(BookListItem::title).thenComparing(BookListItem::id);
+
     @Autowired
     private BookRepository bookRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransientFailureRetry transientFailureRetry;
+
+    @Autowired
+    private AvailabilityProjection availabilityProjection;
     
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<Book> getAllBooks() {
-        return bookRepository.findAll();
+        return BranchContext.fanOut(bookRepository::findAll);
     }
     
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Optional<Book> getBookById(Long id) {
-        return bookRepository.findById(id);
+        return BranchContext.call(BranchContext.branchOf(id), () -> bookRepository.findById(id));
     }
     
+    /**
+     * The book-details page for this patron (null when anonymous). The book usually comes from
+     * the second-level cache and availability from the in-memory projection, so this is at most
+     * one query.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Optional<BookDetailsView> getBookDetails(Long id, Long userId) {
+        return getBookById(id).map(book -> getBookDetails(book, userId));
+    }
+
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public BookDetailsView getBookDetails(Book book, Long userId) {
+        return BookDetailsView.of(book, availabilityProjection.get(book.getId()), userId);
+    }
+
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Optional<Long> getBookVersion(Long id) {
+        return BranchContext.call(BranchContext.branchOf(id), () -> bookRepository.findVersionById(id));
+    }
+
+    /**
+     * The book, locked for the rest of the current transaction.
+     */
+    public Optional<Book> getBookByIdForUpdate(Long id) {
+        return bookRepository.findByIdForUpdate(id);
+    }
+    
+    /**
+     * The first copy with this ISBN, looking at every branch.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Optional<Book> getBookByIsbn(String isbn) {
-        return bookRepository.findByIsbn(isbn);
+        return BranchContext.fanOut(() -> bookRepository.findByIsbn(isbn).stream().toList()).stream().findFirst();
     }
     
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<Book> searchBooks(String searchTerm) {
         if (searchTerm == null || searchTerm.trim().isEmpty()) {
             return getAllBooks();
         }
-        return bookRepository.searchBooks(searchTerm.trim());
+        return BranchContext.fanOut(() -> bookRepository.searchBooks(searchTerm.trim()));
     }
     
+    /**
+     * Search results for list pages. Rows are read as {@link BookListItem}s, so nothing is
+     * hydrated into or tracked by the persistence context.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<BookListItem> searchBookList(String searchTerm) {
+        if (searchTerm == null || searchTerm.trim().isEmpty()) {
+            return BranchContext.fanOut(bookRepository::findAllListItems);
+        }
+        return BranchContext.fanOut(() -> bookRepository.searchListItems(searchTerm.trim()));
+    }
+
+    /**
+     * One page of search results, or of the whole catalog for a blank term, ordered by title.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public BookListPage searchBookPage(String searchTerm, int page, int size) {
+        String term = searchTerm == null || searchTerm.trim().isEmpty() ? null : searchTerm.trim();
+        if (!BranchContext.isSharded()) {
+            Slice<BookListItem> slice = listItemPage(term, PageRequest.of(page, size));
+            return new BookListPage(slice.getContent(), page, slice.hasNext());
+        }
+        // Every shard's first (page + 1) pages, merged, contain the wanted page
+        int upTo = (page + 1) * size;
+        List<BookListItem> merged = BranchContext.fanOut(() -> listItemPage(term, PageRequest.of(0, upTo + 1)).getContent());
+        merged.sort(BY_TITLE);
+        List<BookListItem> books = merged.subList(Math.min(page * size, merged.size()), Math.min(upTo, merged.size()));
+        return new BookListPage(List.copyOf(books), page, merged.size() > upTo);
+    }
+
+    private Slice<BookListItem> listItemPage(String term, Pageable pageable) {
+        return term == null
+            ? bookRepository.findListItemPage(pageable)
+            : bookRepository.searchListItemPage(term, pageable);
+    }
+
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<Book> getAvailableBooks() {
-        return bookRepository.findByStatus(BookStatus.AVAILABLE);
+        return BranchContext.fanOut(() -> bookRepository.findByStatus(BookStatus.AVAILABLE));
     }
     
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<Book> searchAvailableBooks(String searchTerm) {
         if (searchTerm == null || searchTerm.trim().isEmpty()) {
             return getAvailableBooks();
         }
-        return bookRepository.searchBooksByStatus(searchTerm.trim(), BookStatus.AVAILABLE);
+        return BranchContext.fanOut(() -> bookRepository.searchBooksByStatus(searchTerm.trim(), BookStatus.AVAILABLE));
     }
     
+    /**
+     * Save the book in its branch's shard, or in the current transaction when there is one.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Book saveBook(Book book) {
-        return bookRepository.save(book);
+        Book saved = BranchContext.call(book.getBranch(), () -> bookRepository.save(book));
+        eventPublisher.publishEvent(CirculationEvent.bookUpdated(saved));
+        return saved;
     }
     
+    /**
+     * Save a book whose status is all that changed, as on a checkout or return. Published as
+     * a status change, so cached result lists that do not show the book are kept.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Book saveBookStatus(Book book) {
+        Book saved = BranchContext.call(book.getBranch(), () -> bookRepository.save(book));
+        eventPublisher.publishEvent(CirculationEvent.bookStatusChanged(saved));
+        return saved;
+    }
+
+    /**
+     * Bump the version of the book a loan or hold change is about, in the transaction making
+     * it, so the version (the API's ETag) moves with the book's availability. Checkouts and
+     * returns save the book's new status anyway.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onCirculationChange(CirculationEvent event) {
+        if (BOOK_SAVED_WITH.contains(event.type())) {
+            return;
+        }
+        Book book = entityManager.find(Book.class, event.bookId());
+        if (book != null) {
+            entityManager.lock(book, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+        }
+    }
+
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<Book> saveBooks(List<Book> books) {
+        Map<String, List<Book>> byBranch = new LinkedHashMap<>();
+        books.forEach(book -> byBranch.computeIfAbsent(book.getBranch(), branch -> new ArrayList<>()).add(book));
+        List<Book> saved = new ArrayList<>();
+        byBranch.forEach((branch, group) -> saved.addAll(BranchContext.call(branch, () -> bookRepository.saveAll(group))));
+        saved.forEach(book -> eventPublisher.publishEvent(CirculationEvent.bookUpdated(book)));
+        return saved;
+    }
+    
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<String> findExistingIsbns(Collection<String> isbns) {
+        return BranchContext.fanOut(() -> bookRepository.findExistingIsbns(isbns));
+    }
+    
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void deleteBook(Long id) {
-        bookRepository.deleteById(id);
+        BranchContext.run(BranchContext.branchOf(id), () -> bookRepository.deleteById(id));
+        eventPublisher.publishEvent(CirculationEvent.bookRemoved(id));
     }
     
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Book updateBookStatus(Long bookId, BookStatus status) {
-        Book book = bookRepository.findById(bookId)
-            .orElseThrow(() -> new RuntimeException("Book not found with id: " + bookId));
-        book.setStatus(status);
-        return bookRepository.save(book);
+        return BranchContext.call(BranchContext.branchOf(bookId), () -> transientFailureRetry.inTransaction(
+            "Status change of book " + bookId, () -> {
+                Book book = bookRepository.findById(bookId)
+                    .orElseThrow(() -> new RuntimeException("Book not found with id: " + bookId));
+                book.setStatus(status);
+                Book saved = bookRepository.save(book);
+                eventPublisher.publishEvent(CirculationEvent.bookStatusChanged(saved));
+                return saved;
+            }));
     }
     
+    @Transactional(propagation = Propagation.SUPPORTS)
     public boolean isBookAvailable(Long bookId) {
-        Optional<Book> book = bookRepository.findById(bookId);
+        Optional<Book> book = getBookById(bookId);
         return book.isPresent() && book.get().getStatus() == BookStatus.AVAILABLE;
     }
 
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<Book> advancedSearch(String title, String author, String isbn, String publisher,
                                       BookStatus status, Integer fromYear, Integer toYear) {
         // Convert years to LocalDate for date range comparison
         LocalDate fromDate = (fromYear != null) ? LocalDate.of(fromYear, 1, 1) : null;
         LocalDate toDate = (toYear != null) ? LocalDate.of(toYear, 12, 31) : null;
 
-        return bookRepository.advancedSearch(title, author, isbn, publisher, status, fromDate, toDate);
+        return BranchContext.fanOut(() -> bookRepository.advancedSearch(title, author, isbn, publisher, status, fromDate, toDate));
+    }
+
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<BookListItem> advancedSearchList(String title, String author, String isbn, String publisher,
+                                                 BookStatus status, Integer fromYear, Integer toYear) {
+        LocalDate fromDate = (fromYear != null) ? LocalDate.of(fromYear, 1, 1) : null;
+        LocalDate toDate = (toYear != null) ? LocalDate.of(toYear, 12, 31) : null;
+
+        return BranchContext.fanOut(() -> bookRepository.advancedSearchListItems(title, author, isbn, publisher, status, fromDate, toDate));
+    }
+
+    /**
+     * Search results as a stream, for pages written while the rows are still being read.
+     * The caller holds the transaction open until the stream is consumed and closes it.
+     * Each row's status is the live one from the availability projection.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Stream<BookListItem> streamBookList(String searchTerm) {
+        return bookRepository.streamListItems(searchTerm.trim()).map(this::withAvailability);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Stream<BookListItem> streamAdvancedSearchList(String title, String author, String isbn, String publisher,
+                                                         BookStatus status, Integer fromYear, Integer toYear) {
+        LocalDate fromDate = (fromYear != null) ? LocalDate.of(fromYear, 1, 1) : null;
+        LocalDate toDate = (toYear != null) ? LocalDate.of(toYear, 12, 31) : null;
+
+        return bookRepository.streamAdvancedSearchListItems(title, author, isbn, publisher, status, fromDate, toDate)
+            .map(this::withAvailability);
+    }
+
+    private BookListItem withAvailability(BookListItem item) {
+        BookAvailability availability = availabilityProjection.get(item.id());
+        return availability != null ? item.withStatus(availability.status()) : item;
     }
 }
@@ -0,0 +1,197 @@
+package com.library.system.service;
+
+import com.library.system.config.BranchContext;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the branch shards in step with the primary database.
+ * <p>
+ * {@code ddl-auto} only manages the primary, so at startup every table it created there is
+ * created in each shard, and columns added since are added too; schema migrations then run
+ * per shard. Users live in the primary and are copied to every shard (loans and holds
+ * reference them), once in full at startup and then after each commit that changes them.
+ */
+@Service
+public class BranchShardService implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(BranchShardService.class);
+
+    private static final String USERS = "users";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ExecutorService replicationExecutor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("branch-replication-"));
+
+    public BranchShardService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Runs once the entity manager factory has built the primary schema, before any
+     * scheduled task or request can reach a shard.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (BranchContext.isSharded()) {
+            prepareShards();
+        }
+    }
+
+    public void prepareShards() {
+        long start = System.nanoTime();
+        Map<String, String> tables = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT name, sql FROM sqlite_master WHERE type = 'table' AND sql IS NOT NULL AND name NOT LIKE 'sqlite_%'",
+            rs -> {
+                tables.put(rs.getString("name"), rs.getString("sql"));
+            });
+        Map<String, List<ColumnInfo>> columns = new LinkedHashMap<>();
+        tables.keySet().forEach(table -> columns.put(table, columns(table)));
+
+        for (String branch : shardBranches()) {
+            BranchContext.run(branch, () -> {
+                int created = 0;
+                int added = 0;
+                for (Map.Entry<String, String> table : tables.entrySet()) {
+                    List<ColumnInfo> existing = columns(table.getKey());
+                    if (existing.isEmpty()) {
+                        jdbcTemplate.execute(table.getValue());
+                        created++;
+                        continue;
+                    }
+                    for (ColumnInfo column : columns.get(table.getKey())) {
+                        if (existing.stream().noneMatch(c -> c.name().equalsIgnoreCase(column.name()))) {
+                            jdbcTemplate.execute("ALTER TABLE " + table.getKey() + " ADD COLUMN " + column.definition());
+                            added++;
+                        }
+                    }
+                }
+                if (created > 0 || added > 0) {
+                    log.info("Branch shard {}: created {} tables, added {} columns", branch, created, added);
+                }
+            });
+        }
+
+        replicateUsers(null);
+        log.info("Branch shards: prepared {} shards in {}ms", shardBranches().size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Copy the given users from the primary to every shard once the current transaction
+     * commits (right away without one).
+     */
+    public void usersChanged(Collection<Long> userIds) {
+        if (!BranchContext.isSharded() || userIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(userIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    // The finished transaction still holds this thread's connection, so copy from another
+                    CompletableFuture.runAsync(() -> replicateUsers(ids), replicationExecutor).join();
+                }
+            });
+        } else {
+            replicateUsers(ids);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        replicationExecutor.shutdown();
+    }
+
+    /**
+     * Upsert users from the primary into every shard; null copies all of them.
+     */
+    void replicateUsers(List<Long> userIds) {
+        // Read on a reader: after a commit the writer may still be held by the committing thread
+        List<String> names = new ArrayList<>();
+        List<Object[]> rows = BranchContext.call(BranchContext.DEFAULT_BRANCH, () -> readOnlyTransaction.execute(status -> {
+            columns(USERS).forEach(column -> names.add(column.name()));
+            String where = userIds == null ? "" : " WHERE id IN (" + String.join(",", Collections.nCopies(userIds.size(), "?")) + ")";
+            return jdbcTemplate.query("SELECT " + String.join(", ", names) + " FROM " + USERS + where,
+                (rs, rowNum) -> {
+                    Object[] row = new Object[names.size()];
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] = rs.getObject(i + 1);
+                    }
+                    return row;
+                },
+                userIds == null ? new Object[0] : userIds.toArray());
+        }));
+
+        String upsert = "INSERT INTO " + USERS + " (" + String.join(", ", names) + ") VALUES ("
+            + String.join(", ", Collections.nCopies(names.size(), "?")) + ") ON CONFLICT(id) DO UPDATE SET "
+            + names.stream().filter(name -> !name.equals("id")).map(name -> name + " = excluded." + name).collect(Collectors.joining(", "));
+        // Asked for but gone from the primary: deleted there, so delete them here too
+        List<Object[]> deleted = new ArrayList<>();
+        if (userIds != null) {
+            int idColumn = names.indexOf("id");
+            userIds.stream()
+                .filter(id -> rows.stream().noneMatch(row -> id.equals(((Number) row[idColumn]).longValue())))
+                .forEach(id -> deleted.add(new Object[] {id}));
+        }
+        for (String branch : shardBranches()) {
+            BranchContext.run(branch, () -> {
+                jdbcTemplate.batchUpdate(upsert, rows);
+                jdbcTemplate.batchUpdate("DELETE FROM " + USERS + " WHERE id = ?", deleted);
+            });
+        }
+        log.debug("Branch shards: replicated {} users ({} deleted) to {} shards", rows.size(), deleted.size(), shardBranches().size());
+    }
+
+    private List<String> shardBranches() {
+        List<String> branches = BranchContext.branches();
+        return branches.subList(1, branches.size());
+    }
+
+    private List<ColumnInfo> columns(String table) {
+        List<ColumnInfo> columns = new ArrayList<>();
+        jdbcTemplate.query("PRAGMA table_info(" + table + ")", rs -> {
+            columns.add(new ColumnInfo(rs.getString("name"), rs.getString("type"), rs.getString("dflt_value"), rs.getBoolean("notnull")));
+        });
+        return columns;
+    }
+
+    private record ColumnInfo(String name, String type, String defaultValue, boolean notNull) {
+
+        /**
+         * Column definition for ALTER TABLE ADD COLUMN, which only accepts NOT NULL with a default.
+         */
+        String definition() {
+            StringBuilder definition = new StringBuilder(name).append(' ').append(type);
+            if (defaultValue != null) {
+                definition.append(" DEFAULT ").append(defaultValue);
+                if (notNull) {
+                    definition.append(" NOT NULL");
+                }
+            }
+            return definition.toString();
+        }
+    }
+}
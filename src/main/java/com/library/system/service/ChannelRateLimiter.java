@@ -0,0 +1,31 @@
+package com.library.system.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces out permits evenly at a fixed rate; callers block until their slot comes up.
+ */
+class ChannelRateLimiter {
+
+    private final long intervalNanos;
+    private long nextFreeNanos;
+
+    ChannelRateLimiter(double permitsPerSecond) {
+        this.intervalNanos = permitsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond) : 0L;
+        this.nextFreeNanos = System.nanoTime();
+    }
+
+    void acquire() throws InterruptedException {
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    private synchronized long reserve() {
+        long now = System.nanoTime();
+        long waitNanos = Math.max(0L, nextFreeNanos - now);
+        nextFreeNanos = Math.max(nextFreeNanos, now) + intervalNanos;
+        return waitNanos;
+    }
+}
@@ -0,0 +1,386 @@
+package com.library.system.service;
+
+import com.library.system.domain.BookStatus;
+import com.library.system.domain.CirculationEvent;
+import com.library.system.domain.CirculationEventType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of committed {@link CirculationEvent}s, kept in segment files under
+ * library.event-log.directory, and the hub that hands each event to the in-memory projections.
+ * <p>
+ * Every record is {@code [int length][int crc32][payload]} and gets the next sequence number.
+ * Appends go through one {@link FileChannel}; the active segment is fsynced on a short
+ * interval and on roll. Projections record the sequence number their snapshot covers, so at
+ * startup they load the snapshot and replay only the tail instead of querying the tables.
+ * <p>
+ * A torn record at the end of the last segment is truncated on open. If the previous run did
+ * not shut down cleanly, recently committed events may be missing from the log, so
+ * {@link #canReplayFrom(long)} refuses replay for that run and projections rebuild from the tables.
+ */
+@Service
+public class CirculationEventLog {
+
+    private static final Logger log = LoggerFactory.getLogger(CirculationEventLog.class);
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CLEAN_SHUTDOWN_MARKER = "clean-shutdown";
+    private static final int HEADER_BYTES = 8;
+    private static final int PAYLOAD_BYTES = 8 + 8 + 1 + 8 + 8 + 8 + 1 + 8;
+    private static final long NONE = -1L;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final Map<String, Long> checkpoints = new ConcurrentHashMap<>();
+
+    private final List<Segment> sealed = new ArrayList<>();
+    private Segment active;
+    private FileChannel channel;
+    private long lastSequence;
+    private boolean cleanOpen;
+    private boolean appendFailed;
+    private volatile boolean dirty;
+
+    public CirculationEventLog(@Value("${library.event-log.directory:event-log}") String directory,
+                               @Value("${library.event-log.segment-size:4MB}") DataSize segmentSize) {
+        this.directory = Paths.get(directory);
+        this.segmentSize = segmentSize.toBytes();
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        Files.createDirectories(directory);
+        Path marker = directory.resolve(CLEAN_SHUTDOWN_MARKER);
+        boolean marked = Files.deleteIfExists(marker);
+
+        List<Segment> segments = listSegments();
+        cleanOpen = marked || segments.isEmpty();
+        if (segments.isEmpty()) {
+            active = new Segment(1L, directory.resolve(segmentName(1L)));
+            lastSequence = 0L;
+        } else {
+            active = segments.remove(segments.size() - 1);
+            sealed.addAll(segments);
+            lastSequence = recover(active);
+        }
+        channel = FileChannel.open(active.path(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+
+        log.info("Circulation event log: opened {} segment(s) in {} at sequence {}{}",
+            sealed.size() + 1, directory, lastSequence, cleanOpen ? "" : " after an unclean shutdown");
+    }
+
+    /**
+     * Register a projection. It receives every event after it has been appended, in log order.
+     */
+    public void subscribe(String name, Consumer<CirculationEvent> consumer) {
+        subscribers.add(new Subscriber(name, consumer));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void on(CirculationEvent event) {
+        try {
+            append(event);
+        } catch (IOException ex) {
+            // The tables are already committed; a missing record only costs a rebuild on the next start
+            appendFailed = true;
+            log.error("Circulation event log: could not append {} for book {}", event.type(), event.bookId(), ex);
+        }
+        for (Subscriber subscriber : subscribers) {
+            try {
+                subscriber.consumer().accept(event);
+            } catch (RuntimeException ex) {
+                log.error("Circulation event log: subscriber {} failed on {}", subscriber.name(), event.type(), ex);
+            }
+        }
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Whether every event after the given sequence number is still in the log and can be trusted.
+     */
+    public synchronized boolean canReplayFrom(long sequence) {
+        long firstRetained = sealed.isEmpty() ? active.firstSequence() : sealed.get(0).firstSequence();
+        return cleanOpen && sequence <= lastSequence && firstRetained <= sequence + 1;
+    }
+
+    /**
+     * Feed every event after the given sequence number to the consumer, in order. Appends wait
+     * until the replay is done.
+     * @return number of events replayed
+     */
+    public synchronized long replay(long afterSequence, Consumer<CirculationEvent> consumer) {
+        long replayed = 0;
+        List<Segment> segments = new ArrayList<>(sealed);
+        segments.add(active);
+        for (int i = 0; i < segments.size(); i++) {
+            long nextFirst = i + 1 < segments.size() ? segments.get(i + 1).firstSequence() : Long.MAX_VALUE;
+            if (nextFirst <= afterSequence + 1) {
+                continue;
+            }
+            ByteBuffer buffer = readSegment(segments.get(i).path());
+            while (buffer.remaining() >= HEADER_BYTES + PAYLOAD_BYTES) {
+                buffer.position(buffer.position() + HEADER_BYTES);
+                long sequence = buffer.getLong();
+                CirculationEvent event = decode(buffer);
+                if (sequence > afterSequence) {
+                    consumer.accept(event);
+                    replayed++;
+                }
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Run the function with the current sequence number while no event can be appended or
+     * dispatched, so projections can copy their state exactly as of that sequence.
+     */
+    public synchronized <T> T atConsistentPoint(LongFunction<T> function) {
+        return function.apply(lastSequence);
+    }
+
+    /**
+     * Record that a subscriber has durably saved its state up to the given sequence number.
+     * Segments are only compacted once every subscriber has checkpointed past them.
+     */
+    public void checkpointed(String subscriber, long sequence) {
+        checkpoints.merge(subscriber, sequence, Math::max);
+    }
+
+    @Scheduled(fixedDelayString = "${library.event-log.fsync-interval-ms:1000}")
+    public void sync() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        FileChannel current;
+        synchronized (this) {
+            current = channel;
+        }
+        try {
+            current.force(false);
+        } catch (ClosedChannelException ex) {
+            // Rolled or closed meanwhile; both paths force before closing
+        } catch (IOException ex) {
+            dirty = true;
+            log.warn("Circulation event log: fsync failed: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Seal the active segment if it holds any events, then delete sealed segments that every
+     * subscriber has checkpointed past.
+     * @return number of segments deleted
+     */
+    @Scheduled(cron = "${library.event-log.compaction-cron:0 15 * * * ?}")
+    public synchronized int compact() {
+        try {
+            if (channel.size() > 0) {
+                roll();
+            }
+        } catch (IOException ex) {
+            log.warn("Circulation event log: could not roll segment: {}", ex.getMessage());
+        }
+
+        if (subscribers.isEmpty() || !checkpoints.keySet().containsAll(subscribers.stream().map(Subscriber::name).toList())) {
+            return 0;
+        }
+        long covered = checkpoints.values().stream().mapToLong(Long::longValue).min().orElse(0L);
+
+        int deleted = 0;
+        while (!sealed.isEmpty()) {
+            long lastInSegment = (sealed.size() > 1 ? sealed.get(1).firstSequence() : active.firstSequence()) - 1;
+            if (lastInSegment > covered) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(sealed.get(0).path());
+            } catch (IOException ex) {
+                log.warn("Circulation event log: could not delete {}: {}", sealed.get(0).path(), ex.getMessage());
+                break;
+            }
+            sealed.remove(0);
+            deleted++;
+        }
+        if (deleted > 0) {
+            log.info("Circulation event log: compacted {} segment(s) up to sequence {}", deleted, covered);
+        }
+        return deleted;
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        channel.force(true);
+        channel.close();
+        if (!appendFailed) {
+            Files.createFile(directory.resolve(CLEAN_SHUTDOWN_MARKER));
+        }
+    }
+
+    private void append(CirculationEvent event) throws IOException {
+        if (channel.size() + HEADER_BYTES + PAYLOAD_BYTES > segmentSize && channel.size() > 0) {
+            roll();
+        }
+
+        long sequence = lastSequence + 1;
+        ByteBuffer payload = ByteBuffer.allocate(PAYLOAD_BYTES);
+        payload.putLong(sequence);
+        encode(event, payload);
+        payload.flip();
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + PAYLOAD_BYTES);
+        record.putInt(PAYLOAD_BYTES).putInt((int) crc.getValue()).put(payload).flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+
+        lastSequence = sequence;
+        dirty = true;
+    }
+
+    private void roll() throws IOException {
+        channel.force(true);
+        channel.close();
+        sealed.add(active);
+        active = new Segment(lastSequence + 1, directory.resolve(segmentName(lastSequence + 1)));
+        channel = FileChannel.open(active.path(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+    }
+
+    /**
+     * Scan the last segment, truncate anything after the last intact record and return the
+     * sequence number of that record.
+     */
+    private long recover(Segment segment) throws IOException {
+        ByteBuffer buffer = readSegment(segment.path());
+        long sequence = segment.firstSequence() - 1;
+        int validBytes = 0;
+        while (buffer.remaining() >= HEADER_BYTES) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length != PAYLOAD_BYTES || buffer.remaining() < length) {
+                break;
+            }
+            ByteBuffer payload = buffer.slice(buffer.position(), length);
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            sequence = payload.getLong();
+            buffer.position(buffer.position() + length);
+            validBytes = buffer.position();
+        }
+
+        if (validBytes < buffer.limit()) {
+            log.warn("Circulation event log: truncating {} bytes of incomplete records from {}",
+                buffer.limit() - validBytes, segment.path().getFileName());
+            try (FileChannel file = FileChannel.open(segment.path(), StandardOpenOption.WRITE)) {
+                file.truncate(validBytes);
+            }
+        }
+        return sequence;
+    }
+
+    private List<Segment> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                .map(path -> {
+                    String name = path.getFileName().toString();
+                    return new Segment(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())), path);
+                })
+                .sorted(Comparator.comparingLong(Segment::firstSequence))
+                .collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    private static ByteBuffer readSegment(Path path) {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) file.size());
+            while (buffer.hasRemaining() && file.read(buffer) >= 0) {
+                // keep reading until the buffer is full
+            }
+            return buffer.flip();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Unable to read event log segment " + path, ex);
+        }
+    }
+
+    private static String segmentName(long firstSequence) {
+        return String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX);
+    }
+
+    // Types and statuses are stored by ordinal: new constants must be added at the end
+    private static void encode(CirculationEvent event, ByteBuffer buffer) {
+        buffer.putLong(event.occurredAt().toEpochMilli());
+        buffer.put((byte) event.type().ordinal());
+        buffer.putLong(event.bookId());
+        buffer.putLong(event.userId() != null ? event.userId() : NONE);
+        buffer.putLong(event.refId() != null ? event.refId() : NONE);
+        buffer.put(event.bookStatus() != null ? (byte) event.bookStatus().ordinal() : (byte) -1);
+        buffer.putLong(event.dueDate() != null ? event.dueDate().toEpochDay() : Long.MIN_VALUE);
+    }
+
+    private static CirculationEvent decode(ByteBuffer buffer) {
+        Instant occurredAt = Instant.ofEpochMilli(buffer.getLong());
+        CirculationEventType type = CirculationEventType.values()[buffer.get()];
+        long bookId = buffer.getLong();
+        long userId = buffer.getLong();
+        long refId = buffer.getLong();
+        byte status = buffer.get();
+        long dueDate = buffer.getLong();
+        return new CirculationEvent(type, bookId,
+            userId == NONE ? null : userId,
+            refId == NONE ? null : refId,
+            status < 0 ? null : BookStatus.values()[status],
+            dueDate == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(dueDate),
+            occurredAt);
+    }
+
+    private record Segment(long firstSequence, Path path) {
+    }
+
+    private record Subscriber(String name, Consumer<CirculationEvent> consumer) {
+    }
+}
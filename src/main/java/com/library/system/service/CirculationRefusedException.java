@@ -0,0 +1,12 @@
+package com.library.system.service;
+
+/**
+ * A loan or hold request the library's rules turn down, such as a book that is already out or
+ * a patron at their loan limit. The message is meant for the patron.
+ */
+public class CirculationRefusedException extends IllegalStateException {
+
+    public CirculationRefusedException(String message) {
+        super(message);
+    }
+}
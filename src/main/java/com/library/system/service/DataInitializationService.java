@@ -1,22 +1,45 @@
 package com.library.system.service;
 
+import com.library.system.domain.AppMetadata;
 import com.library.system.domain.Book;
 import com.library.system.domain.BookStatus;
+import com.library.system.domain.CirculationEvent;
+import com.library.system.domain.CirculationEventType;
 import com.library.system.domain.Loan;
 import com.library.system.domain.LoanStatus;
 import com.library.system.domain.User;
+import com.library.system.domain.UserRole;
+import com.library.system.repository.AppMetadataRepository;
 import com.library.system.repository.LoanRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
+/**
+ * Seeds demo users, books and a sample loan. Invoked by {@link StartupOrchestrator}.
+ * Once a seed version has been applied it is recorded in app_metadata and later boots
+ * skip the user/book seeding with a single primary-key lookup.
+ */
 @Service
-public class DataInitializationService implements CommandLineRunner {
+public class DataInitializationService {
+
+    private static final Logger log = LoggerFactory.getLogger(DataInitializationService.class);
+
+    static final String SEED_VERSION_KEY = "seed.version";
+    static final String SEED_VERSION = "1";
     
     @Autowired
     private UserService userService;
@@ -26,35 +49,45 @@ public class DataInitializationService implements CommandLineRunner {
 
     @Autowired
     private LoanRepository loanRepository;
+
+    @Autowired
+    private AppMetadataRepository appMetadataRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
     
-    @Override
-    public void run(String... args) throws Exception {
-        initializeUsers();
-        initializeBooks();
+    @Transactional
+    public void initialize() {
+        Optional<AppMetadata> marker = appMetadataRepository.findById(SEED_VERSION_KEY);
+        if (marker.isPresent() && SEED_VERSION.equals(marker.get().getValue())) {
+            log.debug("Seed data version {} already applied", SEED_VERSION);
+        } else {
+            initializeUsers();
+            initializeBooks();
+            appMetadataRepository.save(new AppMetadata(SEED_VERSION_KEY, SEED_VERSION));
+        }
         initializeSampleLoan();
     }
     
     private void initializeUsers() {
-        // Create admin user
-        if (!userService.existsByUsername("admin")) {
-            userService.createAdmin("admin", "admin123", "System Administrator", "admin@library.com");
-        }
-        
-        // Create member users
-        if (!userService.existsByUsername("john.doe")) {
-            userService.createMember("john.doe", "password123", "John Doe", "john.doe@email.com");
-        }
-        
-        if (!userService.existsByUsername("jane.smith")) {
-            userService.createMember("jane.smith", "password123", "Jane Smith", "jane.smith@email.com");
-        }
-        
-        if (!userService.existsByUsername("bob.wilson")) {
-            userService.createMember("bob.wilson", "password123", "Bob Wilson", "bob.wilson@email.com");
-        }
-        
-        if (!userService.existsByUsername("alice.brown")) {
-            userService.createMember("alice.brown", "password123", "Alice Brown", "alice.brown@email.com");
+        List<User> users = Arrays.asList(
+            new User("admin", "admin123", "System Administrator", "admin@library.com", UserRole.ADMIN),
+            new User("john.doe", "password123", "John Doe", "john.doe@email.com", UserRole.MEMBER),
+            new User("jane.smith", "password123", "Jane Smith", "jane.smith@email.com", UserRole.MEMBER),
+            new User("bob.wilson", "password123", "Bob Wilson", "bob.wilson@email.com", UserRole.MEMBER),
+            new User("alice.brown", "password123", "Alice Brown", "alice.brown@email.com", UserRole.MEMBER)
+        );
+
+        // One existence query for the whole seed set, then a single batch of inserts
+        Set<String> existing = new HashSet<>(userService.findExistingUsernames(
+            users.stream().map(User::getUsername).toList()));
+        List<User> missing = users.stream()
+            .filter(user -> !existing.contains(user.getUsername()))
+            .toList();
+
+        if (!missing.isEmpty()) {
+            userService.saveUsers(missing);
+            log.info("Seeded {} users", missing.size());
         }
     }
     
@@ -91,13 +124,27 @@ public class DataInitializationService implements CommandLineRunner {
                     LocalDate.of(2006, 5, 9), "A comprehensive guide to concurrent programming in Java.")
         );
         
-        for (Book book : books) {
-            if (!bookService.getBookByIsbn(book.getIsbn()).isPresent()) {
-                bookService.saveBook(book);
-            }
+        // The first seed entry wins when several share an ISBN
+        Map<String, Book> byIsbn = new LinkedHashMap<>();
+        books.forEach(book -> byIsbn.putIfAbsent(book.getIsbn(), book));
+
+        Set<String> existing = new HashSet<>(bookService.findExistingIsbns(byIsbn.keySet()));
+        List<Book> missing = byIsbn.values().stream()
+            .filter(book -> !existing.contains(book.getIsbn()))
+            .toList();
+
+        if (!missing.isEmpty()) {
+            bookService.saveBooks(missing);
+            log.info("Seeded {} books", missing.size());
         }
     }
 
+    /**
+     * Keeps john.doe's sample loan active, due tomorrow and not yet reminded, so the startup
+     * reminder run has something to send. Only a change is written, and circulation events are
+     * published only when the loan or the book's status actually changes, so a restart adds
+     * nothing to the event log.
+     */
     private void initializeSampleLoan() {
         userService.getUserByUsername("john.doe").ifPresent(user -> {
             bookService.getBookByIsbn("978-0134685991").ifPresent(book -> {
@@ -111,19 +158,20 @@ public class DataInitializationService implements CommandLineRunner {
                     Loan newLoan = new Loan(user, book, LocalDate.now(), targetDueDate);
                     newLoan.setStatus(LoanStatus.ACTIVE);
                     newLoan.setReminderSentAt(null);
-                    loanRepository.save(newLoan);
-
-                    book.setStatus(BookStatus.BORROWED);
-                    bookService.saveBook(book);
-                } else {
+                    loan = loanRepository.save(newLoan);
+                    eventPublisher.publishEvent(CirculationEvent.ofLoan(CirculationEventType.LOAN_BORROWED, loan));
+                } else if (loan.getStatus() != LoanStatus.ACTIVE || !targetDueDate.equals(loan.getDueDate())
+                        || loan.getReminderSentAt() != null) {
                     loan.setDueDate(targetDueDate);
                     loan.setStatus(LoanStatus.ACTIVE);
                     loan.setReminderSentAt(null);
                     loan.setUpdatedAt(LocalDateTime.now());
                     loanRepository.save(loan);
+                }
 
+                if (book.getStatus() != BookStatus.BORROWED) {
                     book.setStatus(BookStatus.BORROWED);
-                    bookService.saveBook(book);
+                    bookService.saveBookStatus(book);
                 }
             });
         });
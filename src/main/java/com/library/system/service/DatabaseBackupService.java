@@ -0,0 +1,366 @@
+package com.library.system.service;
+
+import com.library.system.config.BranchContext;
+import com.library.system.config.BranchRoutingDataSource;
+import com.library.system.dto.BackupResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteErrorCode;
+import org.sqlite.SQLiteException;
+import org.sqlite.core.DB;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Online backups of the SQLite database through SQLite's backup API, taken while the
+ * application keeps serving checkouts.
+ * <p>
+ * The copy runs on its own read-only connection, {@code pages-per-step} pages at a time,
+ * pausing between steps so the writer connection is never kept waiting for long. If another
+ * connection commits mid-copy SQLite restarts the copy, which is counted as a restart.
+ * Every snapshot is switched to a self-contained rollback journal and must pass
+ * {@code PRAGMA integrity_check} and {@code PRAGMA foreign_key_check} before it is kept.
+ * <p>
+ * With a shard per branch every shard file gets its own snapshot in the same run, named
+ * {@code library-<branch>-<timestamp>.db} (the primary keeps {@code library-<timestamp>.db}),
+ * and retention applies per branch.
+ */
+@Service
+public class DatabaseBackupService {
+
+    private static final Logger log = LoggerFactory.getLogger(DatabaseBackupService.class);
+
+    private static final String SQLITE_URL_PREFIX = "jdbc:sqlite:";
+    private static final String SNAPSHOT_PREFIX = "library-";
+    private static final String SNAPSHOT_SUFFIX = ".db";
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("library-(?:([a-z][a-z0-9_]*)-)?(\\d{8}-\\d{6})\\.db");
+    private static final DateTimeFormatter SNAPSHOT_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    // Retries when a step finds the source busy, each after the step pause
+    private static final int BUSY_RETRIES = 100;
+
+    private final Map<String, String> urls;
+    private final Path directory;
+    private final int pagesPerStep;
+    private final long stepPauseMillis;
+    private final int retain;
+    private final ReentrantLock running = new ReentrantLock();
+
+    private final Timer durationTimer;
+    private final Counter successCounter;
+    private final Counter failureCounter;
+    private final AtomicLong progressPermille = new AtomicLong();
+    private final AtomicLong lastSuccessEpochSeconds = new AtomicLong();
+    private final AtomicLong lastSizeBytes = new AtomicLong();
+
+    @Autowired
+    public DatabaseBackupService(DataSourceProperties dataSourceProperties,
+                                 ObjectProvider<BranchRoutingDataSource> branchRouting,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${library.backup.directory:backups}") String directory,
+                                 @Value("${library.backup.pages-per-step:256}") int pagesPerStep,
+                                 @Value("${library.backup.step-pause-ms:10}") long stepPauseMillis,
+                                 @Value("${library.backup.retain:7}") int retain) {
+        this(BranchRoutingDataSource.databaseUrls(branchRouting.getIfAvailable(), dataSourceProperties.determineUrl()),
+            meterRegistry, directory, pagesPerStep, stepPauseMillis, retain);
+    }
+
+    /**
+     * @param urls database URL per branch, the primary first
+     */
+    DatabaseBackupService(Map<String, String> urls, MeterRegistry meterRegistry, String directory,
+                          int pagesPerStep, long stepPauseMillis, int retain) {
+        this.urls = new LinkedHashMap<>(urls);
+        this.directory = Paths.get(directory);
+        this.pagesPerStep = pagesPerStep;
+        this.stepPauseMillis = stepPauseMillis;
+        this.retain = retain;
+
+        this.durationTimer = Timer.builder("library.backup.duration")
+            .description("Time taken by online database backups")
+            .register(meterRegistry);
+        this.successCounter = Counter.builder("library.backup.runs").tag("outcome", "success").register(meterRegistry);
+        this.failureCounter = Counter.builder("library.backup.runs").tag("outcome", "failure").register(meterRegistry);
+        meterRegistry.gauge("library.backup.progress", progressPermille, value -> value.get() / 1000.0);
+        meterRegistry.gauge("library.backup.last.success", lastSuccessEpochSeconds, AtomicLong::doubleValue);
+        meterRegistry.gauge("library.backup.last.size", lastSizeBytes, AtomicLong::doubleValue);
+    }
+
+    public boolean isSupported() {
+        return urls.values().stream().allMatch(url -> url != null && url.startsWith(SQLITE_URL_PREFIX));
+    }
+
+    @Scheduled(cron = "${library.backup.cron:0 30 2 * * ?}")
+    public void scheduledBackup() {
+        if (!isSupported()) {
+            return;
+        }
+        try {
+            backup();
+        } catch (IllegalStateException ex) {
+            log.error("Database backup failed: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Take a snapshot of every database file (the primary, then each branch shard) into the
+     * backup directory, verify each one and prune the oldest snapshots beyond the retention count.
+     * @return one result per database file
+     * @throws BackupInProgressException if another backup is running
+     * @throws IllegalStateException if a snapshot fails
+     */
+    public List<BackupResult> backup() {
+        if (!isSupported()) {
+            throw new IllegalStateException("Online backup is only available for SQLite databases");
+        }
+        if (!running.tryLock()) {
+            throw new BackupInProgressException();
+        }
+
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(directory);
+            LocalDateTime createdAt = LocalDateTime.now();
+            List<BackupResult> results = new ArrayList<>();
+            for (Map.Entry<String, String> database : urls.entrySet()) {
+                results.add(snapshot(database.getKey(), database.getValue(), createdAt));
+            }
+            prune();
+
+            durationTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            successCounter.increment();
+            lastSizeBytes.set(results.stream().mapToLong(BackupResult::bytes).sum());
+            lastSuccessEpochSeconds.set(createdAt.atZone(ZoneId.systemDefault()).toEpochSecond());
+            return results;
+        } catch (IOException | SQLException ex) {
+            failureCounter.increment();
+            throw new IllegalStateException("Database backup failed: " + ex.getMessage(), ex);
+        } catch (IllegalStateException ex) {
+            failureCounter.increment();
+            throw ex;
+        } finally {
+            progressPermille.set(0);
+            running.unlock();
+        }
+    }
+
+    private BackupResult snapshot(String branch, String url, LocalDateTime createdAt) throws IOException, SQLException {
+        long start = System.nanoTime();
+        Path target = directory.resolve(snapshotName(branch, createdAt));
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        try {
+            CopyProgress progress = copy(url, part);
+            setRollbackJournal(part);
+            String integrity = checkIntegrity(part);
+            if (!"ok".equals(integrity)) {
+                throw new IllegalStateException("Backup of branch " + branch + " failed verification: " + integrity);
+            }
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            BackupResult result = new BackupResult(target.getFileName().toString(), createdAt, Files.size(target),
+                progress.pageCount, progress.restarts, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), true, integrity);
+            log.info("Database backup: wrote {} ({} pages, {} bytes, {} restarts) in {}ms",
+                result.file(), result.pages(), result.bytes(), result.restarts(), result.durationMs());
+            return result;
+        } finally {
+            try {
+                Files.deleteIfExists(part);
+            } catch (IOException ex) {
+                log.warn("Database backup: could not remove {}: {}", part, ex.getMessage());
+            }
+        }
+    }
+
+    private static String snapshotName(String branch, LocalDateTime createdAt) {
+        String infix = BranchContext.DEFAULT_BRANCH.equals(branch) ? "" : branch.toLowerCase(Locale.ROOT) + "-";
+        return SNAPSHOT_PREFIX + infix + createdAt.format(SNAPSHOT_TIMESTAMP) + SNAPSHOT_SUFFIX;
+    }
+
+    /**
+     * Re-run the integrity checks on a kept snapshot, e.g. before restoring from it.
+     * @throws NoSuchElementException if there is no snapshot with that name
+     * @throws IllegalStateException if the snapshot cannot be read
+     */
+    public BackupResult verify(String file) {
+        Path snapshot = resolveSnapshot(file);
+        long start = System.nanoTime();
+        try {
+            String integrity = checkIntegrity(snapshot);
+            LocalDateTime modified = LocalDateTime.ofInstant(Files.getLastModifiedTime(snapshot).toInstant(), ZoneId.systemDefault());
+            return new BackupResult(snapshot.getFileName().toString(), modified, Files.size(snapshot), 0, 0,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), "ok".equals(integrity), integrity);
+        } catch (IOException | SQLException ex) {
+            throw new IllegalStateException("Unable to verify backup " + file + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Snapshots in the backup directory, newest first.
+     */
+    public List<String> listBackups() {
+        return listSnapshots().stream().map(path -> path.getFileName().toString()).toList();
+    }
+
+    private CopyProgress copy(String url, Path destination) throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("open_mode", "1");
+        CopyProgress progress = new CopyProgress();
+        try (Connection connection = DriverManager.getConnection(url, properties)) {
+            DB database = connection.unwrap(SQLiteConnection.class).getDatabase();
+            int rc = database.backup("main", destination.toString(), progress, (int) stepPauseMillis, BUSY_RETRIES, pagesPerStep);
+            if (rc != 0) {
+                throw new SQLException("SQLite backup returned code " + rc);
+            }
+        }
+        return progress;
+    }
+
+    private void setRollbackJournal(Path snapshot) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(SQLITE_URL_PREFIX + snapshot);
+             Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA journal_mode=DELETE");
+        }
+    }
+
+    private String checkIntegrity(Path snapshot) throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("open_mode", "1");
+        try (Connection connection = DriverManager.getConnection(SQLITE_URL_PREFIX + snapshot, properties);
+             Statement statement = connection.createStatement()) {
+            List<String> problems = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery("PRAGMA integrity_check")) {
+                while (rs.next()) {
+                    String line = rs.getString(1);
+                    if (!"ok".equals(line)) {
+                        problems.add(line);
+                    }
+                }
+            }
+            try (ResultSet rs = statement.executeQuery("PRAGMA foreign_key_check")) {
+                while (rs.next()) {
+                    problems.add("foreign key violation in " + rs.getString("table") + " row " + rs.getLong("rowid"));
+                }
+            }
+            return problems.isEmpty() ? "ok" : String.join("; ", problems);
+        } catch (SQLiteException ex) {
+            if (ex.getResultCode() == SQLiteErrorCode.SQLITE_CORRUPT || ex.getResultCode() == SQLiteErrorCode.SQLITE_NOTADB) {
+                return ex.getMessage();
+            }
+            throw ex;
+        }
+    }
+
+    private void prune() {
+        Map<String, List<Path>> byBranch = listSnapshots().stream()
+            .collect(Collectors.groupingBy(path -> snapshotBranch(path.getFileName().toString()), LinkedHashMap::new, Collectors.toList()));
+        for (List<Path> snapshots : byBranch.values()) {
+            for (Path old : snapshots.subList(Math.min(retain, snapshots.size()), snapshots.size())) {
+                try {
+                    Files.deleteIfExists(old);
+                    log.info("Database backup: removed old snapshot {}", old.getFileName());
+                } catch (IOException ex) {
+                    log.warn("Database backup: could not remove {}: {}", old, ex.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Snapshots of every branch, newest first.
+     */
+    private List<Path> listSnapshots() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .filter(path -> SNAPSHOT_NAME.matcher(path.getFileName().toString()).matches())
+                .sorted(Comparator.comparing((Path path) -> snapshotTimestamp(path.getFileName().toString()))
+                    .thenComparing(path -> path.getFileName().toString(), Comparator.reverseOrder())
+                    .reversed())
+                .toList();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to list backups in " + directory, ex);
+        }
+    }
+
+    private static String snapshotBranch(String file) {
+        Matcher matcher = SNAPSHOT_NAME.matcher(file);
+        return matcher.matches() && matcher.group(1) != null ? matcher.group(1) : "";
+    }
+
+    private static String snapshotTimestamp(String file) {
+        Matcher matcher = SNAPSHOT_NAME.matcher(file);
+        return matcher.matches() ? matcher.group(2) : "";
+    }
+
+    private Path resolveSnapshot(String file) {
+        return listSnapshots().stream()
+            .filter(path -> path.getFileName().toString().equals(file))
+            .findFirst()
+            .orElseThrow(() -> new NoSuchElementException("Backup not found: " + file));
+    }
+
+    /**
+     * Reports progress after every step and pauses so the writer gets its turn.
+     */
+    private class CopyProgress implements DB.ProgressObserver {
+
+        private int pageCount;
+        private int restarts;
+        private int lastRemaining = Integer.MAX_VALUE;
+
+        @Override
+        public void progress(int remaining, int pageCount) {
+            if (remaining > lastRemaining) {
+                restarts++;
+            }
+            lastRemaining = remaining;
+            this.pageCount = pageCount;
+            progressPermille.set(pageCount == 0 ? 1000 : (pageCount - remaining) * 1000L / pageCount);
+            if (remaining > 0 && stepPauseMillis > 0) {
+                try {
+                    Thread.sleep(stepPauseMillis);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
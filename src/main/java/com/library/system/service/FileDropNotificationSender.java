@@ -0,0 +1,64 @@
+package com.library.system.service;
+
+import com.library.system.domain.NotificationChannel;
+import com.library.system.domain.OutboxMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Local stand-in for an SMTP relay: every email is written as an .eml file into a
+ * drop directory (and logged), so notifications can be inspected without a mail server.
+ */
+@Component
+@ConditionalOnProperty(name = "library.notifications.sender", havingValue = "file", matchIfMissing = true)
+public class FileDropNotificationSender implements NotificationSender {
+
+    private static final Logger log = LoggerFactory.getLogger(FileDropNotificationSender.class);
+
+    private final Path directory;
+
+    public FileDropNotificationSender(@Value("${library.notifications.file-drop.directory:mail-drop}") String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    @Override
+    public NotificationChannel channel() {
+        return NotificationChannel.EMAIL;
+    }
+
+    @Override
+    public void send(OutboxMessage message) {
+        String eml = "To: " + message.getRecipient() + "\r\n"
+            + "Subject: " + message.getSubject() + "\r\n"
+            + "Date: " + ZonedDateTime.now().format(DateTimeFormatter.RFC_1123_DATE_TIME) + "\r\n"
+            + "Message-ID: <outbox-" + message.getId() + "@library.local>\r\n"
+            + "Content-Type: text/plain; charset=UTF-8\r\n"
+            + "\r\n"
+            + message.getBody() + "\r\n";
+
+        try {
+            Files.createDirectories(directory);
+            Path target = directory.resolve("outbox-" + message.getId() + ".eml");
+            Path temp = Files.createTempFile(directory, "outbox-" + message.getId(), ".tmp");
+            Files.writeString(temp, eml, StandardCharsets.UTF_8);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to write notification " + message.getId(), ex);
+        }
+
+        log.info("DEV EMAIL -> To: {} | Subject: {}", message.getRecipient(), message.getSubject());
+    }
+}
@@ -0,0 +1,125 @@
+package com.library.system.service;
+
+import com.library.system.domain.IdempotentResponse;
+import com.library.system.repository.IdempotentResponseRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the outcome of circulation requests sent with an Idempotency-Key so that client
+ * retries get the original answer instead of running the checkout again.
+ * <p>
+ * Recent outcomes are kept in a bounded LRU map and every outcome is also written to
+ * {@code idempotency_keys}, so retries after an eviction or a restart are still answered.
+ * Outcomes older than library.idempotency.ttl are ignored and purged.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private final IdempotentResponseRepository repository;
+    private final Duration ttl;
+    private final Map<String, IdempotentResponse> recent;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    public IdempotencyService(IdempotentResponseRepository repository,
+                              @Value("${library.idempotency.cache-size:10000}") int cacheSize,
+                              @Value("${library.idempotency.ttl:PT24H}") Duration ttl) {
+        this.repository = repository;
+        this.ttl = ttl;
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IdempotentResponse> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public static String scope(String username, String key) {
+        return username + ":" + key;
+    }
+
+    /**
+     * The stored outcome for this key, from memory when possible.
+     */
+    public Optional<IdempotentResponse> find(String scopedKey) {
+        IdempotentResponse response;
+        synchronized (recent) {
+            response = recent.get(scopedKey);
+        }
+        if (response == null) {
+            response = repository.findById(scopedKey).orElse(null);
+            if (response != null) {
+                remember(response);
+            }
+        }
+        return Optional.ofNullable(response).filter(this::isLive);
+    }
+
+    /**
+     * Claim the key for a first execution.
+     * @return false if another request with the same key is still running
+     */
+    public boolean begin(String scopedKey) {
+        return inFlight.add(scopedKey);
+    }
+
+    /**
+     * Store the outcome and release the key. A failed write is only logged: the request itself
+     * has succeeded, and the in-memory copy still answers retries.
+     */
+    public void complete(IdempotentResponse response) {
+        remember(response);
+        inFlight.remove(response.getScopedKey());
+        try {
+            repository.save(response);
+        } catch (DataAccessException ex) {
+            log.warn("Could not persist idempotent response for {}: {}", response.getScopedKey(), ex.getMessage());
+        }
+    }
+
+    /**
+     * Release the key without an outcome, so a retry runs the request again.
+     */
+    public void abandon(String scopedKey) {
+        inFlight.remove(scopedKey);
+    }
+
+    @Scheduled(fixedDelayString = "${library.idempotency.purge-interval:PT1H}")
+    @Transactional
+    public int purgeExpired() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(ttl);
+        synchronized (recent) {
+            recent.values().removeIf(response -> response.getCreatedAt().isBefore(cutoff));
+        }
+        int purged = repository.deleteCreatedBefore(cutoff);
+        if (purged > 0) {
+            log.debug("Idempotency store: purged {} expired keys", purged);
+        }
+        return purged;
+    }
+
+    private void remember(IdempotentResponse response) {
+        synchronized (recent) {
+            recent.put(response.getScopedKey(), response);
+        }
+    }
+
+    private boolean isLive(IdempotentResponse response) {
+        return response.getCreatedAt().isAfter(LocalDateTime.now().minus(ttl));
+    }
+}
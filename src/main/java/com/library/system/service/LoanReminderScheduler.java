@@ -1,15 +1,17 @@
 package com.library.system.service;
 
+import com.library.system.config.BranchContext;
 import com.library.system.domain.Loan;
 import com.library.system.domain.LoanStatus;
 import com.library.system.repository.LoanRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.boot.context.event.ApplicationReadyEvent;
-import org.springframework.context.event.EventListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -26,30 +28,50 @@ public class LoanReminderScheduler {
     );
 
     private final LoanRepository loanRepository;
+    private final NotificationOutboxService notificationOutboxService;
+    private final NotificationDigestService notificationDigestService;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean chunked;
+    private final int chunkSize;
 
-    public LoanReminderScheduler(LoanRepository loanRepository) {
+    public LoanReminderScheduler(LoanRepository loanRepository,
+                                 NotificationOutboxService notificationOutboxService,
+                                 NotificationDigestService notificationDigestService,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${library.reminders.chunked:false}") boolean chunked,
+                                 @Value("${library.reminders.chunk-size:500}") int chunkSize) {
         this.loanRepository = loanRepository;
-    }
-
-    /**
-     * Trigger the reminder check once when the application starts to aid local testing.
-     */
-    @EventListener(ApplicationReadyEvent.class)
-    public void runOnStartup() {
-        sendDueSoonReminders();
+        this.notificationOutboxService = notificationOutboxService;
+        this.notificationDigestService = notificationDigestService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunked = chunked;
+        this.chunkSize = chunkSize;
     }
 
     /**
      * Daily job that scans for loans due soon (between 1 and 2 days away),
-     * logs a reminder email in dev, and marks each loan as notified.
+     * queues a reminder email in the outbox, and marks each loan as notified.
+     * With library.reminders.chunked enabled the scan is split into bounded pages; with
+     * digests enabled, each patron gets one message covering all of their due-soon loans.
+     * With branch shards each shard is scanned in turn.
      */
     @Scheduled(cron = "0 0 8 * * ?")
-    @Transactional
     public void sendDueSoonReminders() {
         LocalDate today = LocalDate.now();
         LocalDate windowStart = today.plusDays(1);
         LocalDate windowEnd = today.plusDays(2);
 
+        if (notificationDigestService.isEnabled()) {
+            notificationDigestService.sendDueSoonDigests(windowStart, windowEnd, REMINDER_ELIGIBLE_STATUSES);
+        } else if (chunked) {
+            BranchContext.forEachBranch(() -> sendDueSoonRemindersInChunks(windowStart, windowEnd));
+        } else {
+            BranchContext.forEachBranch(() -> transactionTemplate.executeWithoutResult(
+                status -> sendDueSoonRemindersInOneTransaction(windowStart, windowEnd)));
+        }
+    }
+
+    private void sendDueSoonRemindersInOneTransaction(LocalDate windowStart, LocalDate windowEnd) {
         List<Loan> dueSoonLoans = loanRepository.findDueSoonLoansWithoutReminder(
             windowStart,
             windowEnd,
@@ -63,17 +85,66 @@ public class LoanReminderScheduler {
 
         LocalDateTime sentAt = LocalDateTime.now();
         for (Loan loan : dueSoonLoans) {
-            log.info(
-                "DEV EMAIL -> To: {} <{}> | Book: '{}' | Due Date: {} | Message: Your loan is due soon.",
-                loan.getUser().getFullName(),
-                loan.getUser().getEmail(),
-                loan.getBook().getTitle(),
-                loan.getDueDate()
-            );
+            notificationOutboxService.enqueueDueSoonReminder(loan);
             loan.setReminderSentAt(sentAt);
             loan.setUpdatedAt(sentAt);
         }
 
         loanRepository.saveAll(dueSoonLoans);
     }
+
+    /**
+     * Walks the due-soon loans in id order, one bounded page per transaction, and
+     * marks each page with a bulk update before moving on. Only one page is held in
+     * memory and the write lock is released between pages, so checkouts can interleave.
+     * A run interrupted by a restart resumes naturally: committed pages already carry
+     * reminderSentAt and are excluded from the next scan.
+     */
+    private void sendDueSoonRemindersInChunks(LocalDate windowStart, LocalDate windowEnd) {
+        long afterId = 0L;
+        int total = 0;
+
+        while (true) {
+            final long cursor = afterId;
+            List<Long> sentIds = transactionTemplate.execute(status -> sendChunk(cursor, windowStart, windowEnd));
+            if (sentIds == null || sentIds.isEmpty()) {
+                break;
+            }
+            total += sentIds.size();
+            if (sentIds.size() < chunkSize) {
+                break;
+            }
+            afterId = sentIds.get(sentIds.size() - 1);
+        }
+
+        if (total == 0) {
+            log.debug("Loan reminder scheduler: no loans due between {} and {}", windowStart, windowEnd);
+        } else {
+            log.info("Loan reminder scheduler: queued {} reminders for loans due between {} and {}", total, windowStart, windowEnd);
+        }
+    }
+
+    /**
+     * Sends reminders for one page of loans after the given id and marks them in bulk.
+     * @return ids of the loans reminded, in ascending order
+     */
+    private List<Long> sendChunk(long afterId, LocalDate windowStart, LocalDate windowEnd) {
+        List<Loan> chunk = loanRepository.findDueSoonLoansWithoutReminderAfter(
+            afterId,
+            windowStart,
+            windowEnd,
+            REMINDER_ELIGIBLE_STATUSES,
+            Limit.of(chunkSize)
+        );
+
+        if (chunk.isEmpty()) {
+            return List.of();
+        }
+
+        chunk.forEach(notificationOutboxService::enqueueDueSoonReminder);
+
+        List<Long> ids = chunk.stream().map(Loan::getId).toList();
+        loanRepository.markRemindersSent(ids, LocalDateTime.now());
+        return ids;
+    }
 }
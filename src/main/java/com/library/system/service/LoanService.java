@@ -1,13 +1,27 @@
 package com.library.system.service;
 
+import com.library.system.config.BranchContext;
 import com.library.system.domain.*;
+import com.library.system.dto.LoanHistoryPage;
+import com.library.system.dto.PatronLoanRow;
 import com.library.system.repository.LoanRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
+import java.util.Comparator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 
 @Service
@@ -25,88 +39,184 @@ public class LoanService {
 
     @Autowired
     private ReservationService reservationService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransientFailureRetry transientFailureRetry;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
     
     private static final int LOAN_PERIOD_DAYS = 14; // 2 weeks
     private static final int MAX_LOANS_PER_USER = 5;
+
+    // Same order as LoanRepository.findPatronLoanRows, for merging shards
+    private static final Comparator<PatronLoanRow> ACTIVE_THEN_NEWEST = Comparator
+        .comparing((PatronLoanRow loan) -> loan.status() != LoanStatus.ACTIVE)
+        .thenComparing(PatronLoanRow::borrowDate, Comparator.reverseOrder())
+        .thenComparing(PatronLoanRow::id, Comparator.reverseOrder());
+
+    @Value("${library.loans.history-page-size:20}")
+    private int historyPageSize;
     
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<Loan> getAllLoans() {
-        return loanRepository.findAll();
+        return BranchContext.fanOut(loanRepository::findAll);
     }
     
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Optional<Loan> getLoanById(Long id) {
-        return loanRepository.findById(id);
+        return BranchContext.call(BranchContext.branchOf(id), () -> loanRepository.findById(id));
     }
     
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<Loan> getLoansByUser(User user) {
-        return loanRepository.findByUserFetchBook(user);
+        return BranchContext.fanOut(() -> loanRepository.findByUserFetchBook(user));
     }
     
+    /**
+     * One page of the patron's loans for the my-loans page, read as plain rows. Active loans
+     * come first, so page 0 also holds all of them.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public LoanHistoryPage getLoanHistory(Long userId, int page) {
+        // Never smaller than the loan limit, or active loans could spill onto page 1
+        int size = Math.max(historyPageSize, MAX_LOANS_PER_USER);
+        if (!BranchContext.isSharded()) {
+            Slice<PatronLoanRow> slice = loanRepository.findPatronLoanRows(userId, PageRequest.of(page, size));
+            return new LoanHistoryPage(slice.getContent(), page, slice.hasNext());
+        }
+        // Every shard's first (page + 1) pages, merged, contain the wanted page
+        int upTo = (page + 1) * size;
+        List<PatronLoanRow> merged = BranchContext.fanOut(
+            () -> loanRepository.findPatronLoanRows(userId, PageRequest.of(0, upTo + 1)).getContent());
+        merged.sort(ACTIVE_THEN_NEWEST);
+        List<PatronLoanRow> rows = merged.subList(Math.min(page * size, merged.size()), Math.min(upTo, merged.size()));
+        return new LoanHistoryPage(List.copyOf(rows), page, merged.size() > upTo);
+    }
+
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<Loan> getActiveLoansByUser(User user) {
-        return loanRepository.findByUserAndStatusFetchBook(user, LoanStatus.ACTIVE);
+        return BranchContext.fanOut(() -> loanRepository.findByUserAndStatusFetchBook(user, LoanStatus.ACTIVE));
     }
     
+    /**
+     * Runs in the shard of the book's branch. Each attempt runs in its own transaction, so a
+     * lock conflict is retried from a fresh read.
+     * <p>
+     * With sharding the loan limit spans shards no single transaction can see, so borrows
+     * are serialized per patron: the patron's row in the primary is written first and that
+     * transaction stays open until the checkout in the book's shard has committed. A
+     * concurrent borrow by the same patron, at any branch or instance, waits for it and then
+     * counts its loan. SQLite locks the whole primary for writing, so sharded checkouts queue
+     * there for the length of one checkout.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Loan borrowBook(Long userId, Long bookId) {
-        User user = userService.getUserById(userId)
-            .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
-
-        Book book = bookService.getBookById(bookId)
-            .orElseThrow(() -> new RuntimeException("Book not found with id: " + bookId));
-
-        // optimistic retry for SQLITE_BUSY (WAL snapshot conflicts)
-        int attempts = 0;
-        RuntimeException lastException = null;
-        while (attempts < 3) {
-            try {
-                // Check if user already has this book borrowed
-                Optional<Loan> existingLoan = loanRepository.findByUserAndBookAndStatus(user, book, LoanStatus.ACTIVE);
-                if (existingLoan.isPresent()) {
-                    throw new RuntimeException("User already has this book borrowed");
-                }
+        String branch = BranchContext.branchOf(bookId);
+        String operation = "Borrow of book " + bookId;
+        if (!BranchContext.isSharded()) {
+            return transientFailureRetry.inTransaction(operation, () -> borrow(userId, bookId, 0L));
+        }
 
-                // Check if book is available
-                if (book.getStatus() != BookStatus.AVAILABLE) {
-                    throw new RuntimeException("Book is not available for borrowing");
-                }
+        return BranchContext.call(BranchContext.DEFAULT_BRANCH, () -> transientFailureRetry.inTransaction(operation, () -> {
+            lockPatron(userId);
+            long loansElsewhere = activeLoansElsewhere(userId, branch);
+            if (branch.equals(BranchContext.DEFAULT_BRANCH)) {
+                return borrow(userId, bookId, loansElsewhere);
+            }
+            // Suspend the primary's transaction, keeping its lock, to open one in the book's shard
+            TransactionTemplate suspended = new TransactionTemplate(transactionManager);
+            suspended.setPropagationBehavior(TransactionDefinition.PROPAGATION_NOT_SUPPORTED);
+            return suspended.execute(status -> BranchContext.call(branch,
+                () -> transientFailureRetry.inTransaction(operation, () -> borrow(userId, bookId, loansElsewhere))));
+        }));
+    }
 
-                // Check user's loan limit
-                long activeLoanCount = loanRepository.countActiveLoansByUser(user);
-                if (activeLoanCount >= MAX_LOANS_PER_USER) {
-                    throw new RuntimeException("User has reached maximum loan limit");
-                }
+    private void lockPatron(Long userId) {
+        // A plain JDBC write, so Hibernate does not evict the cached users for it
+        if (jdbcTemplate.update("UPDATE users SET active = active WHERE id = ?", userId) == 0) {
+            throw new NoSuchElementException("User not found with id: " + userId);
+        }
+    }
 
-                // Create loan
-                LocalDate borrowDate = LocalDate.now();
-                LocalDate dueDate = borrowDate.plusDays(LOAN_PERIOD_DAYS);
-
-                Loan loan = new Loan(user, book, borrowDate, dueDate);
-                loan = loanRepository.save(loan);
-
-                // Update book status
-                book.setStatus(BookStatus.BORROWED);
-                bookService.saveBook(book);
-
-                return loan;
-            } catch (RuntimeException ex) {
-                lastException = ex;
-                // If this is a transient SQLITE_BUSY/SNAPSHOT, backoff and retry
-                String msg = ex.getMessage() != null ? ex.getMessage() : "";
-                if (msg.contains("SQLITE_BUSY") || msg.contains("SNAPSHOT") || msg.contains("database is locked")) {
-                    try { Thread.sleep(200L * (attempts + 1)); } catch (InterruptedException ignored) {}
-                    attempts++;
-                } else {
-                    throw ex;
+    /**
+     * Active loans the patron has at other branches, read from the primary's transaction,
+     * which can only see its own shard: the other shards are read on other threads.
+     */
+    private long activeLoansElsewhere(Long userId, String branch) {
+        User user = userService.getUserReference(userId);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        return BranchContext.fanOut(() -> {
+                if (BranchContext.current().equals(branch)) {
+                    return List.<Long>of();
                 }
-            }
+                Long count = readOnly.execute(status -> loanRepository.countActiveLoansByUser(user));
+                return List.of(count);
+            })
+            .stream()
+            .mapToLong(Long::longValue)
+            .sum();
+    }
+
+    private Loan borrow(Long userId, Long bookId, long loansElsewhere) {
+        User user = userService.getUserById(userId)
+            .orElseThrow(() -> new NoSuchElementException("User not found with id: " + userId));
+
+        // Locked until commit, so two patrons cannot both see the copy as available
+        Book book = bookService.getBookByIdForUpdate(bookId)
+            .orElseThrow(() -> new NoSuchElementException("Book not found with id: " + bookId));
+
+        // Check if user already has this book borrowed
+        Optional<Loan> existingLoan = loanRepository.findByUserAndBookAndStatus(user, book, LoanStatus.ACTIVE);
+        if (existingLoan.isPresent()) {
+            throw new CirculationRefusedException("User already has this book borrowed");
+        }
+
+        // Check if book is available
+        if (book.getStatus() != BookStatus.AVAILABLE) {
+            throw new CirculationRefusedException("Book is not available for borrowing");
+        }
+
+        // Check user's loan limit
+        long activeLoanCount = loanRepository.countActiveLoansByUser(user) + loansElsewhere;
+        if (activeLoanCount >= MAX_LOANS_PER_USER) {
+            throw new CirculationRefusedException("User has reached maximum loan limit");
         }
-        throw lastException != null ? lastException : new RuntimeException("Borrow failed due to database contention");
+
+        // Create loan
+        LocalDate borrowDate = LocalDate.now();
+        LocalDate dueDate = borrowDate.plusDays(LOAN_PERIOD_DAYS);
+
+        Loan loan = new Loan(user, book, borrowDate, dueDate);
+        loan = loanRepository.save(loan);
+
+        // Update book status
+        book.setStatus(BookStatus.BORROWED);
+        bookService.saveBookStatus(book);
+
+        eventPublisher.publishEvent(CirculationEvent.ofLoan(CirculationEventType.LOAN_BORROWED, loan));
+        return loan;
     }
     
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Loan returnBook(Long loanId) {
+        return BranchContext.call(BranchContext.branchOf(loanId), () -> transientFailureRetry.inTransaction(
+            "Return of loan " + loanId, () -> returnLoan(loanId)));
+    }
+
+    private Loan returnLoan(Long loanId) {
         Loan loan = loanRepository.findById(loanId)
-            .orElseThrow(() -> new RuntimeException("Loan not found with id: " + loanId));
+            .orElseThrow(() -> new NoSuchElementException("Loan not found with id: " + loanId));
 
         if (loan.getStatus() != LoanStatus.ACTIVE && loan.getStatus() != LoanStatus.EXTENDED) {
-            throw new RuntimeException("Loan is not active");
+            throw new CirculationRefusedException("Loan is not active");
         }
 
         // Update loan
@@ -130,28 +240,35 @@ public class LoanService {
             book.setStatus(BookStatus.AVAILABLE);
         }
 
-        bookService.saveBook(book);
+        bookService.saveBookStatus(book);
 
+        eventPublisher.publishEvent(CirculationEvent.ofLoan(CirculationEventType.LOAN_RETURNED, loan));
         return loan;
     }
     
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Loan extendLoan(Long loanId) {
+        return BranchContext.call(BranchContext.branchOf(loanId), () -> transientFailureRetry.inTransaction(
+            "Extension of loan " + loanId, () -> extend(loanId)));
+    }
+
+    private Loan extend(Long loanId) {
         Loan loan = loanRepository.findById(loanId)
-            .orElseThrow(() -> new RuntimeException("Loan not found with id: " + loanId));
+            .orElseThrow(() -> new NoSuchElementException("Loan not found with id: " + loanId));
 
         if (loan.getStatus() != LoanStatus.ACTIVE && loan.getStatus() != LoanStatus.EXTENDED) {
-            throw new RuntimeException("Loan is not active");
+            throw new CirculationRefusedException("Loan is not active");
         }
 
         // Check if loan is overdue
         if (loan.getDueDate().isBefore(LocalDate.now())) {
-            throw new RuntimeException("Cannot extend overdue loan");
+            throw new CirculationRefusedException("Cannot extend overdue loan");
         }
 
         // Check if book has reservations - if yes, cannot extend
         Book book = loan.getBook();
         if (reservationService.hasActiveReservations(book)) {
-            throw new RuntimeException("Cannot extend loan - book has active reservations");
+            throw new CirculationRefusedException("Cannot extend loan - book has active reservations");
         }
 
         // Extend loan by another period
@@ -161,16 +278,20 @@ public class LoanService {
         loan.setUpdatedAt(java.time.LocalDateTime.now());
         loan.setReminderSentAt(null);
 
-        return loanRepository.save(loan);
+        Loan saved = loanRepository.save(loan);
+        eventPublisher.publishEvent(CirculationEvent.ofLoan(CirculationEventType.LOAN_EXTENDED, saved));
+        return saved;
     }
     
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<Loan> getOverdueLoans() {
-        return loanRepository.findOverdueLoans(LocalDate.now());
+        return BranchContext.fanOut(() -> loanRepository.findOverdueLoans(LocalDate.now()));
     }
     
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<Loan> getLoansDueSoon(int days) {
         LocalDate startDate = LocalDate.now();
         LocalDate endDate = startDate.plusDays(days);
-        return loanRepository.findLoansDueBetween(startDate, endDate);
+        return BranchContext.fanOut(() -> loanRepository.findLoansDueBetween(startDate, endDate));
     }
 }
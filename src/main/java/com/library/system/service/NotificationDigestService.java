@@ -0,0 +1,238 @@
+package com.library.system.service;
+
+import com.library.system.config.BranchContext;
+import com.library.system.domain.LoanStatus;
+import com.library.system.dto.DigestHoldRow;
+import com.library.system.dto.DigestLoanRow;
+import com.library.system.dto.PatronDigest;
+import com.library.system.repository.LoanRepository;
+import com.library.system.repository.ReservationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.LongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Collapses due-soon loan reminders and ready-for-pickup notices into one message per
+ * patron. Patrons are processed in pages of user ids; for each page the loan and hold
+ * rows are streamed as lightweight projections ordered by user, grouped, queued in the
+ * outbox and marked as sent in bulk, all in one transaction per page. With sharding the
+ * page is gathered from every shard first, so a patron with loans at several branches
+ * still gets one message.
+ */
+@Service
+public class NotificationDigestService {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationDigestService.class);
+
+    private final LoanRepository loanRepository;
+    private final ReservationRepository reservationRepository;
+    private final NotificationOutboxService notificationOutboxService;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final int usersPerChunk;
+
+    public NotificationDigestService(LoanRepository loanRepository,
+                                     ReservationRepository reservationRepository,
+                                     NotificationOutboxService notificationOutboxService,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${library.notifications.digest.enabled:false}") boolean enabled,
+                                     @Value("${library.notifications.digest.users-per-chunk:200}") int usersPerChunk) {
+        this.loanRepository = loanRepository;
+        this.reservationRepository = reservationRepository;
+        this.notificationOutboxService = notificationOutboxService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.usersPerChunk = usersPerChunk;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Send one digest per patron with loans due in the window, folding in any of their
+     * ready holds, then flush digests for patrons who only have ready holds.
+     * @return number of digest messages queued
+     */
+    public int sendDueSoonDigests(LocalDate windowStart, LocalDate windowEnd, List<LoanStatus> statuses) {
+        int messages = inChunks(
+            cursor -> loanRepository.findDueSoonReminderUserIds(cursor, windowStart, windowEnd, statuses, Limit.of(usersPerChunk)),
+            (digests, userIds) -> {
+                try (Stream<DigestLoanRow> rows = loanRepository.streamDueSoonDigestRows(userIds, windowStart, windowEnd, statuses)) {
+                    rows.forEach(row -> digests.computeIfAbsent(row.userId(),
+                        id -> new PatronDigest(id, row.fullName(), row.email())).loans().add(row));
+                }
+                addHolds(digests, userIds);
+            });
+        messages += flushPickupDigests();
+        log.info("Notification digests: queued {} messages for loans due between {} and {}", messages, windowStart, windowEnd);
+        return messages;
+    }
+
+    /**
+     * Announce ready-for-pickup holds that are still unannounced, one message per patron.
+     * Runs on the digest window so holds promoted close together share a message.
+     * @return number of digest messages queued
+     */
+    @Scheduled(fixedDelayString = "${library.notifications.digest.window:PT15M}")
+    public int flushPickupDigests() {
+        if (!enabled) {
+            return 0;
+        }
+
+        int messages = inChunks(
+            cursor -> reservationRepository.findPickupNoticeUserIds(cursor, LocalDateTime.now(), Limit.of(usersPerChunk)),
+            this::addHolds);
+        if (messages > 0) {
+            log.debug("Notification digests: queued {} pickup digests", messages);
+        }
+        return messages;
+    }
+
+    /**
+     * Page through the patrons returned by {@code userIdsAfter}, collecting each page's rows
+     * with {@code collect} and sending one message per patron.
+     */
+    private int inChunks(LongFunction<List<Long>> userIdsAfter, BiConsumer<Map<Long, PatronDigest>, List<Long>> collect) {
+        int messages = 0;
+        long afterUserId = 0L;
+
+        while (true) {
+            final long cursor = afterUserId;
+            ChunkResult result = BranchContext.isSharded()
+                ? sendAcrossBranches(cursor, userIdsAfter, collect)
+                : transactionTemplate.execute(status -> {
+                    List<Long> userIds = userIdsAfter.apply(cursor);
+                    if (userIds.isEmpty()) {
+                        return ChunkResult.EMPTY;
+                    }
+                    Map<Long, PatronDigest> digests = new LinkedHashMap<>();
+                    collect.accept(digests, userIds);
+                    return new ChunkResult(userIds, send(digests));
+                });
+
+            messages += result.messages();
+            if (result.userIds().size() < usersPerChunk) {
+                break;
+            }
+            afterUserId = result.lastUserId();
+        }
+        return messages;
+    }
+
+    /**
+     * Loans and holds are kept in the shard of their branch, so one patron's rows can sit in
+     * several shards. The page takes the lowest user ids across all shards and gathers their
+     * rows from each before queueing, so a patron still gets a single message. The messages
+     * are queued in the primary and the rows marked sent shard by shard afterwards, as no
+     * transaction spans shards: a failure in between repeats those rows on the next run
+     * rather than losing them.
+     */
+    private ChunkResult sendAcrossBranches(long cursor, LongFunction<List<Long>> userIdsAfter,
+                                           BiConsumer<Map<Long, PatronDigest>, List<Long>> collect) {
+        // Each shard returns its lowest ids, so the lowest of the union are complete
+        List<Long> userIds = BranchContext.fanOut(() -> userIdsAfter.apply(cursor)).stream()
+            .distinct()
+            .sorted()
+            .limit(usersPerChunk)
+            .toList();
+        if (userIds.isEmpty()) {
+            return ChunkResult.EMPTY;
+        }
+
+        Map<Long, PatronDigest> digests = new TreeMap<>();
+        for (String branch : BranchContext.branches()) {
+            BranchContext.run(branch, () -> readOnlyTransaction.executeWithoutResult(status -> collect.accept(digests, userIds)));
+        }
+        digests.values().forEach(digest -> {
+            digest.loans().sort(Comparator.comparing(DigestLoanRow::dueDate).thenComparing(DigestLoanRow::loanId));
+            digest.holds().sort(Comparator.comparing(DigestHoldRow::expiresAt).thenComparing(DigestHoldRow::reservationId));
+        });
+
+        int messages = BranchContext.call(BranchContext.DEFAULT_BRANCH,
+            () -> transactionTemplate.execute(status -> enqueue(digests)));
+
+        Map<String, List<Long>> loanIds = new HashMap<>();
+        Map<String, List<Long>> reservationIds = new HashMap<>();
+        for (PatronDigest digest : digests.values()) {
+            digest.loans().forEach(row -> loanIds.computeIfAbsent(BranchContext.branchOf(row.loanId()), branch -> new ArrayList<>()).add(row.loanId()));
+            digest.holds().forEach(row -> reservationIds.computeIfAbsent(BranchContext.branchOf(row.reservationId()), branch -> new ArrayList<>()).add(row.reservationId()));
+        }
+        LocalDateTime sentAt = LocalDateTime.now();
+        for (String branch : BranchContext.branches()) {
+            BranchContext.run(branch, () -> transactionTemplate.executeWithoutResult(status -> markSent(
+                loanIds.getOrDefault(branch, List.of()), reservationIds.getOrDefault(branch, List.of()), sentAt)));
+        }
+        return new ChunkResult(userIds, messages);
+    }
+
+    private void addHolds(Map<Long, PatronDigest> digests, List<Long> userIds) {
+        try (Stream<DigestHoldRow> rows = reservationRepository.streamPickupDigestRows(userIds, LocalDateTime.now())) {
+            rows.forEach(row -> digests.computeIfAbsent(row.userId(),
+                id -> new PatronDigest(id, row.fullName(), row.email())).holds().add(row));
+        }
+    }
+
+    private int send(Map<Long, PatronDigest> digests) {
+        List<Long> loanIds = new ArrayList<>();
+        List<Long> reservationIds = new ArrayList<>();
+        for (PatronDigest digest : digests.values()) {
+            digest.loans().forEach(row -> loanIds.add(row.loanId()));
+            digest.holds().forEach(row -> reservationIds.add(row.reservationId()));
+        }
+        int messages = enqueue(digests);
+        markSent(loanIds, reservationIds, LocalDateTime.now());
+        return messages;
+    }
+
+    private int enqueue(Map<Long, PatronDigest> digests) {
+        int messages = 0;
+        for (PatronDigest digest : digests.values()) {
+            if (digest.isEmpty()) {
+                continue;
+            }
+            notificationOutboxService.enqueueDigest(digest);
+            messages++;
+        }
+        return messages;
+    }
+
+    private void markSent(List<Long> loanIds, List<Long> reservationIds, LocalDateTime sentAt) {
+        if (!loanIds.isEmpty()) {
+            loanRepository.markRemindersSent(loanIds, sentAt);
+        }
+        if (!reservationIds.isEmpty()) {
+            reservationRepository.markPickupNoticesSent(reservationIds, sentAt);
+        }
+    }
+
+    private record ChunkResult(List<Long> userIds, int messages) {
+
+        static final ChunkResult EMPTY = new ChunkResult(List.of(), 0);
+
+        long lastUserId() {
+            return userIds.get(userIds.size() - 1);
+        }
+    }
+}
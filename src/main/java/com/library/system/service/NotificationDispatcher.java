@@ -0,0 +1,167 @@
+package com.library.system.service;
+
+import com.library.system.domain.NotificationChannel;
+import com.library.system.domain.OutboxMessage;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains the notification outbox. Each poll claims pending messages that are due and
+ * hands them to a fixed worker pool, so delivery throughput scales with
+ * library.notifications.dispatcher.concurrency instead of the scheduler thread.
+ * Failed deliveries are retried with exponential backoff until max-attempts is reached.
+ * <p>
+ * Messages are claimed in the database before they are submitted (their next attempt is
+ * leased out by claim-timeout), the whole poll in one update per shard, so with several
+ * instances polling the same outbox each message goes to one of them. Each channel is held to its own
+ * library.notifications.dispatcher.channels.&lt;channel&gt;.rate-per-second, falling back
+ * to library.notifications.dispatcher.rate-per-second.
+ */
+@Service
+public class NotificationDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationDispatcher.class);
+
+    private final NotificationOutboxService outboxService;
+    private final Map<NotificationChannel, NotificationSender> senders = new EnumMap<>(NotificationChannel.class);
+    private final Map<NotificationChannel, ChannelRateLimiter> rateLimiters = new EnumMap<>(NotificationChannel.class);
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final ExecutorService workers;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration claimTimeout;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+
+    public NotificationDispatcher(NotificationOutboxService outboxService,
+                                  List<NotificationSender> senders,
+                                  Environment environment,
+                                  @Value("${library.notifications.dispatcher.concurrency:4}") int concurrency,
+                                  @Value("${library.notifications.dispatcher.batch-size:100}") int batchSize,
+                                  @Value("${library.notifications.dispatcher.rate-per-second:20}") double ratePerSecond,
+                                  @Value("${library.notifications.dispatcher.max-attempts:5}") int maxAttempts,
+                                  @Value("${library.notifications.dispatcher.claim-timeout:PT5M}") Duration claimTimeout,
+                                  @Value("${library.notifications.dispatcher.initial-backoff:PT30S}") Duration initialBackoff,
+                                  @Value("${library.notifications.dispatcher.max-backoff:PT1H}") Duration maxBackoff) {
+        this.outboxService = outboxService;
+        for (NotificationSender sender : senders) {
+            this.senders.put(sender.channel(), sender);
+            String channelRate = "library.notifications.dispatcher.channels."
+                + sender.channel().name().toLowerCase(Locale.ROOT) + ".rate-per-second";
+            this.rateLimiters.put(sender.channel(),
+                new ChannelRateLimiter(environment.getProperty(channelRate, Double.class, ratePerSecond)));
+        }
+        this.workers = Executors.newFixedThreadPool(concurrency, new CustomizableThreadFactory("notify-"));
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.claimTimeout = claimTimeout;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * Poll the outbox, claim due messages and submit them to the worker pool. Messages still
+     * being delivered from an earlier poll, or claimed by another instance since they were
+     * read, are skipped so each one has a single delivery attempt in flight.
+     * @return number of messages submitted
+     */
+    @Scheduled(fixedDelayString = "${library.notifications.dispatcher.poll-interval-ms:5000}")
+    public int dispatchPending() {
+        int capacity = batchSize - inFlight.size();
+        if (capacity <= 0) {
+            return 0;
+        }
+
+        List<Long> candidates = outboxService.findDispatchable(capacity + inFlight.size()).stream()
+            .map(OutboxMessage::getId)
+            .filter(id -> !inFlight.contains(id))
+            .limit(capacity)
+            .toList();
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        // Claims are told apart by their lease, so two instances polling in the same
+        // millisecond must not pick the same one
+        LocalDateTime leaseUntil = now.plus(claimTimeout).truncatedTo(ChronoUnit.MILLIS)
+            .plus(ThreadLocalRandom.current().nextInt(1000), ChronoUnit.MILLIS);
+        int submitted = 0;
+        for (OutboxMessage message : outboxService.claim(candidates, now, leaseUntil)) {
+            inFlight.add(message.getId());
+            workers.execute(() -> {
+                try {
+                    deliver(message);
+                } finally {
+                    inFlight.remove(message.getId());
+                }
+            });
+            submitted++;
+        }
+
+        if (submitted > 0) {
+            log.debug("Notification dispatcher: submitted {} messages", submitted);
+        }
+        return submitted;
+    }
+
+    void deliver(OutboxMessage message) {
+        NotificationSender sender = senders.get(message.getChannel());
+        if (sender == null) {
+            outboxService.markFailed(message.getId(), "No sender configured for channel " + message.getChannel());
+            return;
+        }
+
+        try {
+            rateLimiters.get(message.getChannel()).acquire();
+            sender.send(message);
+            outboxService.markDelivered(message.getId());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException ex) {
+            int attempts = message.getAttempts() + 1;
+            String error = ex.getMessage() != null ? ex.getMessage() : ex.getClass().getSimpleName();
+            if (attempts >= maxAttempts) {
+                log.warn("Notification {} failed after {} attempts: {}", message.getId(), attempts, error);
+                outboxService.markFailed(message.getId(), error);
+            } else {
+                LocalDateTime nextAttemptAt = LocalDateTime.now().plus(backoff(attempts));
+                log.debug("Notification {} failed (attempt {}), retrying at {}: {}", message.getId(), attempts, nextAttemptAt, error);
+                outboxService.markRetry(message.getId(), nextAttemptAt, error);
+            }
+        }
+    }
+
+    Duration backoff(int attempts) {
+        Duration delay = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        workers.shutdown();
+        if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+            workers.shutdownNow();
+        }
+    }
+}
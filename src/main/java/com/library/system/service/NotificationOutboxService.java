@@ -0,0 +1,207 @@
+package com.library.system.service;
+
+import com.library.system.config.BranchContext;
+import com.library.system.domain.Loan;
+import com.library.system.domain.NotificationChannel;
+import com.library.system.domain.OutboxMessage;
+import com.library.system.domain.Reservation;
+import com.library.system.domain.User;
+import com.library.system.dto.DigestHoldRow;
+import com.library.system.dto.DigestLoanRow;
+import com.library.system.dto.PatronDigest;
+import com.library.system.repository.OutboxMessageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Writes notifications into the outbox table. Enqueue methods require an existing
+ * transaction so the message commits (or rolls back) together with the state change
+ * that caused it; delivery happens later in {@link NotificationDispatcher}.
+ */
+@Service
+public class NotificationOutboxService {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationOutboxService.class);
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MMM dd, yyyy");
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("MMM dd, yyyy HH:mm");
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    @Autowired
+    private OutboxMessageRepository outboxMessageRepository;
+
+    @Autowired
+    private TransientFailureRetry transientFailureRetry;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Optional<OutboxMessage> enqueue(NotificationChannel channel, String recipient, String subject, String body) {
+        if (recipient == null || recipient.isBlank()) {
+            log.debug("Skipping notification '{}' - no recipient address", subject);
+            return Optional.empty();
+        }
+        return Optional.of(outboxMessageRepository.save(new OutboxMessage(channel, recipient, subject, body)));
+    }
+
+    /**
+     * Queue the "your loan is due soon" email for a loan.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Optional<OutboxMessage> enqueueDueSoonReminder(Loan loan) {
+        User user = loan.getUser();
+        String title = loan.getBook().getTitle();
+        String dueDate = loan.getDueDate().format(DATE_FORMAT);
+
+        return enqueue(
+            NotificationChannel.EMAIL,
+            user.getEmail(),
+            "Reminder: '" + title + "' is due on " + dueDate,
+            "Hello " + user.getFullName() + ",\n\n"
+                + "Your loan of '" + title + "' is due on " + dueDate + ". "
+                + "Please return or extend it before then.\n\n"
+                + "Library Management System"
+        );
+    }
+
+    /**
+     * Queue the "your reserved book is ready for pickup" email for a promoted reservation.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Optional<OutboxMessage> enqueuePickupNotice(Reservation reservation) {
+        User user = reservation.getUser();
+        String title = reservation.getBook().getTitle();
+        String expiresAt = reservation.getExpiresAt().format(DATE_TIME_FORMAT);
+
+        return enqueue(
+            NotificationChannel.EMAIL,
+            user.getEmail(),
+            "Your reserved book '" + title + "' is ready for pickup",
+            "Hello " + user.getFullName() + ",\n\n"
+                + "'" + title + "' is now ready for pickup. "
+                + "It will be held for you until " + expiresAt + ".\n\n"
+                + "Library Management System"
+        );
+    }
+
+    /**
+     * Queue one combined email covering all of a patron's due-soon loans and ready holds.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Optional<OutboxMessage> enqueueDigest(PatronDigest digest) {
+        StringBuilder body = new StringBuilder("Hello ").append(digest.fullName()).append(",\n\n");
+
+        if (!digest.loans().isEmpty()) {
+            body.append("The following loans are due soon. Please return or extend them before the due date:\n");
+            for (DigestLoanRow loan : digest.loans()) {
+                body.append("  - '").append(loan.bookTitle()).append("' due on ")
+                    .append(loan.dueDate().format(DATE_FORMAT)).append('\n');
+            }
+            body.append('\n');
+        }
+
+        if (!digest.holds().isEmpty()) {
+            body.append("The following reserved books are ready for pickup:\n");
+            for (DigestHoldRow hold : digest.holds()) {
+                body.append("  - '").append(hold.bookTitle()).append("' held until ")
+                    .append(hold.expiresAt().format(DATE_TIME_FORMAT)).append('\n');
+            }
+            body.append('\n');
+        }
+
+        body.append("Library Management System");
+
+        return enqueue(NotificationChannel.EMAIL, digest.email(), digestSubject(digest), body.toString());
+    }
+
+    private String digestSubject(PatronDigest digest) {
+        int loans = digest.loans().size();
+        int holds = digest.holds().size();
+        if (holds == 0) {
+            return loans == 1 ? "Reminder: 1 loan is due soon" : "Reminder: " + loans + " loans are due soon";
+        }
+        if (loans == 0) {
+            return holds == 1 ? "1 reserved book is ready for pickup" : holds + " reserved books are ready for pickup";
+        }
+        return "Your library update: " + loans + " due soon, " + holds + " ready for pickup";
+    }
+
+    /**
+     * Messages due for delivery, from every branch's shard (messages are queued in the
+     * shard of the transaction that caused them), longest-waiting first.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<OutboxMessage> findDispatchable(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxMessage> due = BranchContext.fanOut(() -> outboxMessageRepository.findDispatchable(now, Limit.of(limit)));
+        if (!BranchContext.isSharded()) {
+            return due;
+        }
+        due.sort(Comparator.comparing(OutboxMessage::getNextAttemptAt).thenComparing(OutboxMessage::getId));
+        return due.size() > limit ? due.subList(0, limit) : due;
+    }
+
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public long countPending() {
+        return BranchContext.fanOut(() -> List.of(outboxMessageRepository.countPending())).stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Claim due messages for one delivery attempt each, leased until {@code leaseUntil}; if an
+     * attempt never reports back its message becomes due again then. Each shard's share is
+     * claimed with one conditional update and read back by its lease in the same transaction,
+     * so messages claimed elsewhere or no longer due are left out. The lease must differ from
+     * any other poller's.
+     * @return the claimed messages as they now stand
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<OutboxMessage> claim(Collection<Long> ids, LocalDateTime now, LocalDateTime leaseUntil) {
+        List<OutboxMessage> claimed = new ArrayList<>();
+        ids.stream().collect(Collectors.groupingBy(BranchContext::branchOf)).forEach((branch, shardIds) ->
+            claimed.addAll(BranchContext.call(branch, () -> transientFailureRetry.inTransaction(
+                "Claim of " + shardIds.size() + " notifications", () -> {
+                    outboxMessageRepository.claim(shardIds, now, leaseUntil);
+                    return outboxMessageRepository.findClaimed(shardIds, leaseUntil);
+                }))));
+        return claimed;
+    }
+
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void markDelivered(Long id) {
+        inShardOf(id, "Delivery of notification " + id, () -> outboxMessageRepository.markDelivered(id, LocalDateTime.now()));
+    }
+
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void markRetry(Long id, LocalDateTime nextAttemptAt, String error) {
+        inShardOf(id, "Retry of notification " + id, () -> outboxMessageRepository.markRetry(id, nextAttemptAt, truncate(error)));
+    }
+
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void markFailed(Long id, String error) {
+        inShardOf(id, "Failure of notification " + id, () -> outboxMessageRepository.markFailed(id, truncate(error)));
+    }
+
+    private int inShardOf(Long id, String operation, Supplier<Integer> update) {
+        return BranchContext.call(BranchContext.branchOf(id), () -> transientFailureRetry.inTransaction(operation, update));
+    }
+
+    private String truncate(String error) {
+        if (error == null || error.length() <= MAX_ERROR_LENGTH) {
+            return error;
+        }
+        return error.substring(0, MAX_ERROR_LENGTH);
+    }
+}
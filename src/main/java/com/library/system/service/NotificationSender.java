@@ -0,0 +1,15 @@
+package com.library.system.service;
+
+import com.library.system.domain.NotificationChannel;
+import com.library.system.domain.OutboxMessage;
+
+/**
+ * Delivers outbox messages for one channel. Implementations throw a RuntimeException
+ * when delivery fails so the dispatcher can schedule a retry.
+ */
+public interface NotificationSender {
+
+    NotificationChannel channel();
+
+    void send(OutboxMessage message);
+}
@@ -0,0 +1,149 @@
+package com.library.system.service;
+
+import com.library.system.domain.CirculationEvent;
+import com.library.system.domain.CirculationEventType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Rendered catalog pages served to anonymous visitors, keyed by URL and stored gzipped.
+ * <p>
+ * Each page remembers the books it shows. When a book's metadata, status or hold queue
+ * changes (the {@link CirculationEvent}s published by BookService, LoanService and
+ * ReservationService, once committed) only the pages showing that book are dropped. Adding,
+ * editing or removing a book also drops every result list, whose membership may have
+ * changed; a status change, as on each checkout and return, only drops lists filtered by
+ * status.
+ * A page rendered while such a change was committing is not stored, so nothing stale is kept.
+ */
+@Service
+public class PageCache {
+
+    private final long ttlNanos;
+    private final Map<String, CachedPage> pages;
+    private final Counter hits;
+    private final Counter misses;
+    private long generation;
+
+    public PageCache(MeterRegistry meterRegistry,
+                     @Value("${library.page-cache.size:1000}") int size,
+                     @Value("${library.page-cache.ttl:PT10M}") Duration ttl) {
+        this.ttlNanos = ttl.toNanos();
+        this.pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedPage> eldest) {
+                return size() > size;
+            }
+        };
+        this.hits = Counter.builder("library.page-cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("library.page-cache.requests").tag("result", "miss").register(meterRegistry);
+        meterRegistry.gauge("library.page-cache.bytes", this, PageCache::storedBytes);
+    }
+
+    /**
+     * The point to pass to {@link #put} for a page about to be rendered.
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    public Optional<CachedPage> get(String key) {
+        CachedPage page;
+        synchronized (this) {
+            page = pages.get(key);
+            if (page != null && System.nanoTime() - page.storedAt() >= ttlNanos) {
+                pages.remove(key);
+                page = null;
+            }
+        }
+        (page != null ? hits : misses).increment();
+        return Optional.ofNullable(page);
+    }
+
+    /**
+     * Store a page rendered since {@code generation}, unless a change was applied meanwhile.
+     */
+    public CachedPage put(String key, long generation, byte[] body, String contentType, Set<Long> bookIds,
+                          boolean listing, boolean byStatus) {
+        CachedPage page = new CachedPage(gzip(body), body.length, '"' + DigestUtils.md5DigestAsHex(body) + '"',
+            contentType, Set.copyOf(bookIds), listing, byStatus, System.nanoTime());
+        synchronized (this) {
+            if (this.generation == generation) {
+                pages.put(key, page);
+            }
+        }
+        return page;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void on(CirculationEvent event) {
+        boolean catalogChanged = event.type() == CirculationEventType.BOOK_UPDATED
+            || event.type() == CirculationEventType.BOOK_REMOVED;
+        boolean statusChanged = event.type() == CirculationEventType.BOOK_STATUS_CHANGED;
+        drop(event.bookId(), catalogChanged, statusChanged);
+    }
+
+    /**
+     * A change to the book committed by another instance, found by {@link AvailabilityProjection}.
+     * What changed is not known, so lists filtered by status go too, and every list when the
+     * book was added or removed.
+     */
+    public void onChangedElsewhere(long bookId, boolean addedOrRemoved) {
+        drop(bookId, addedOrRemoved, true);
+    }
+
+    private synchronized void drop(long bookId, boolean listings, boolean statusListings) {
+        generation++;
+        pages.values().removeIf(page -> page.bookIds().contains(bookId)
+            || (listings && page.listing())
+            || (statusListings && page.byStatus()));
+    }
+
+    private synchronized double storedBytes() {
+        return pages.values().stream().mapToLong(page -> page.gzipped().length).sum();
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @param length size of the page before compression
+     * @param listing whether the page lists search results rather than one book
+     * @param byStatus whether those results are filtered by book status
+     */
+    public record CachedPage(byte[] gzipped, int length, String etag, String contentType,
+                             Set<Long> bookIds, boolean listing, boolean byStatus, long storedAt) {
+
+        public byte[] body() {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+                return in.readAllBytes();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+}
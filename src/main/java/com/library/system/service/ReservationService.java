@@ -1,18 +1,33 @@
 package com.library.system.service;
 
+import com.library.system.config.BranchContext;
 import com.library.system.domain.Book;
+import com.library.system.domain.CirculationEvent;
+import com.library.system.domain.CirculationEventType;
 import com.library.system.domain.Reservation;
 import com.library.system.domain.ReservationStatus;
 import com.library.system.domain.User;
+import com.library.system.dto.PatronHoldRow;
 import com.library.system.repository.ReservationRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 
+/**
+ * Holds queues. A hold is stored in the shard of the book's branch, together with the
+ * copy it waits for. A patron may collect at another branch: when the copy comes back the
+ * hold goes IN_TRANSIT instead of READY_FOR_PICKUP, and becomes ready once the pickup
+ * branch receives it ({@link #receiveTransfer}). Both steps update the one hold row in the
+ * book's shard, so neither needs a transaction across two databases.
+ */
 @Service
 public class ReservationService {
 
@@ -21,21 +36,51 @@ public class ReservationService {
     @Autowired
     private ReservationRepository reservationRepository;
 
+    @Autowired
+    private NotificationOutboxService notificationOutboxService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransientFailureRetry transientFailureRetry;
+
+    // When digests are on, pickup notices are batched by NotificationDigestService instead
+    @Value("${library.notifications.digest.enabled:false}")
+    private boolean digestNotifications;
+
     /**
      * Reserve a book for a user. Adds them to the end of the queue.
      * @param user The user making the reservation
      * @param book The book to reserve
      * @return The created reservation
-     * @throws IllegalStateException if user already has an active reservation for this book
+     * @throws CirculationRefusedException if user already has an active reservation for this book
      */
-    @Transactional
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Reservation reserveBook(User user, Book book) {
+        return reserveBook(user, book, null);
+    }
+
+    /**
+     * Reserve a book for pickup at the given branch, or at the book's own branch when null.
+     * @throws CirculationRefusedException if the branch is unknown or the user already has an active reservation
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Reservation reserveBook(User user, Book book, String pickupBranch) {
+        if (pickupBranch != null && !BranchContext.isBranch(pickupBranch)) {
+            throw new CirculationRefusedException("Unknown pickup branch: " + pickupBranch);
+        }
+        return BranchContext.call(book.getBranch(), () -> transientFailureRetry.inTransaction(
+            "Hold on book " + book.getId(), () -> placeHold(user, book, pickupBranch)));
+    }
+
+    private Reservation placeHold(User user, Book book, String pickupBranch) {
         // Check if user already has an active reservation for this book
         Optional<Reservation> existingReservation = reservationRepository
             .findActiveReservationByBookAndUser(book, user);
 
         if (existingReservation.isPresent()) {
-            throw new IllegalStateException("You already have an active reservation for this book");
+            throw new CirculationRefusedException("You already have an active reservation for this book");
         }
 
         // Get the next queue position (count of pending reservations + 1)
@@ -45,8 +90,13 @@ public class ReservationService {
         // Create the reservation
         Reservation reservation = new Reservation(user, book, queuePosition);
         reservation.setStatus(ReservationStatus.PENDING);
+        if (pickupBranch != null && !pickupBranch.equals(book.getBranch())) {
+            reservation.setPickupBranch(pickupBranch);
+        }
 
-        return reservationRepository.save(reservation);
+        Reservation saved = reservationRepository.save(reservation);
+        eventPublisher.publishEvent(CirculationEvent.ofHold(CirculationEventType.HOLD_PLACED, saved));
+        return saved;
     }
 
     /**
@@ -54,6 +104,7 @@ public class ReservationService {
      * @param book The book to check
      * @return true if there are active reservations
      */
+    @Transactional(readOnly = true)
     public boolean hasActiveReservations(Book book) {
         long count = reservationRepository.countPendingReservationsByBook(book);
         return count > 0;
@@ -61,6 +112,8 @@ public class ReservationService {
 
     /**
      * Promote the first person in queue to READY_FOR_PICKUP status with 24-hour window
+     * and queue their pickup notice in the same transaction (or leave it for the next digest).
+     * A hold for pickup at another branch is sent there first and goes IN_TRANSIT instead.
      * @param book The book that was just returned
      */
     @Transactional
@@ -72,13 +125,62 @@ public class ReservationService {
             // Get the first in queue (lowest queue position)
             Reservation firstInQueue = pendingReservations.get(0);
 
-            // Set status to READY_FOR_PICKUP and set expiration time
-            firstInQueue.setStatus(ReservationStatus.READY_FOR_PICKUP);
-            firstInQueue.setNotifiedAt(LocalDateTime.now());
-            firstInQueue.setExpiresAt(LocalDateTime.now().plusHours(PICKUP_WINDOW_HOURS));
+            if (firstInQueue.needsTransfer()) {
+                // First step of the transfer; the pickup window starts when the copy arrives
+                firstInQueue.setStatus(ReservationStatus.IN_TRANSIT);
+                firstInQueue.setNotifiedAt(LocalDateTime.now());
+                reservationRepository.save(firstInQueue);
+                eventPublisher.publishEvent(CirculationEvent.ofHold(CirculationEventType.HOLD_IN_TRANSIT, firstInQueue));
+                return;
+            }
+            markReadyForPickup(firstInQueue);
+        }
+    }
+
+    /**
+     * Second step of a transfer: the pickup branch has the copy, so the hold is now ready there.
+     * @param reservationId The ID of the reservation in transit
+     * @param branch The branch that received the copy (must be the pickup branch)
+     * @throws CirculationRefusedException if the reservation is not in transit to that branch
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Reservation receiveTransfer(Long reservationId, String branch) {
+        return BranchContext.call(BranchContext.branchOf(reservationId), () -> transientFailureRetry.inTransaction(
+            "Receipt of reservation " + reservationId, () -> {
+                Reservation reservation = reservationRepository.findWithBookAndUserById(reservationId)
+                    .orElseThrow(() -> new IllegalStateException("Reservation not found"));
+                if (reservation.getStatus() != ReservationStatus.IN_TRANSIT) {
+                    throw new CirculationRefusedException("Reservation is not in transit");
+                }
+                if (!reservation.getPickupBranch().equals(branch)) {
+                    throw new CirculationRefusedException("Reservation is in transit to " + reservation.getPickupBranch() + ", not " + branch);
+                }
+                markReadyForPickup(reservation);
+                return reservation;
+            }));
+    }
+
+    /**
+     * Holds on their way to the given branch, from every branch's shard.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<Reservation> getIncomingTransfers(String branch) {
+        return BranchContext.fanOut(() -> reservationRepository.findInTransitByPickupBranch(branch));
+    }
+
+    private void markReadyForPickup(Reservation reservation) {
+        // Set status to READY_FOR_PICKUP and set expiration time
+        reservation.setStatus(ReservationStatus.READY_FOR_PICKUP);
+        reservation.setNotifiedAt(LocalDateTime.now());
+        reservation.setExpiresAt(LocalDateTime.now().plusHours(PICKUP_WINDOW_HOURS));
 
-            reservationRepository.save(firstInQueue);
+        if (!digestNotifications) {
+            notificationOutboxService.enqueuePickupNotice(reservation);
+            reservation.setPickupNoticeSentAt(LocalDateTime.now());
         }
+
+        reservationRepository.save(reservation);
+        eventPublisher.publishEvent(CirculationEvent.ofHold(CirculationEventType.HOLD_READY, reservation));
     }
 
     /**
@@ -87,8 +189,16 @@ public class ReservationService {
      * @param user The user requesting cancellation (must be the owner)
      * @throws IllegalStateException if reservation doesn't exist or user is not the owner
      */
-    @Transactional
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void cancelReservation(Long reservationId, User user) {
+        BranchContext.call(BranchContext.branchOf(reservationId), () -> transientFailureRetry.inTransaction(
+            "Cancellation of reservation " + reservationId, () -> {
+                cancel(reservationId, user);
+                return null;
+            }));
+    }
+
+    private void cancel(Long reservationId, User user) {
         Optional<Reservation> reservationOpt = reservationRepository.findById(reservationId);
 
         if (reservationOpt.isEmpty()) {
@@ -107,6 +217,7 @@ public class ReservationService {
         // Set status to CANCELLED
         reservation.setStatus(ReservationStatus.CANCELLED);
         reservationRepository.save(reservation);
+        eventPublisher.publishEvent(CirculationEvent.ofHold(CirculationEventType.HOLD_CANCELLED, reservation));
 
         // Reorder queue - decrease position for all reservations after the cancelled one
         if (canceledPosition != null) {
@@ -127,8 +238,23 @@ public class ReservationService {
      * @param user The user
      * @return List of active reservations
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<Reservation> getUserReservations(User user) {
-        return reservationRepository.findActiveReservationsByUser(user);
+        return newestFirst(BranchContext.fanOut(() -> reservationRepository.findActiveReservationsByUser(user)));
+    }
+
+    /**
+     * The user's active reservations as plain rows, for the my-loans page
+     * @param userId The user's id
+     * @return Rows for the active reservations, newest first
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<PatronHoldRow> getUserHoldRows(Long userId) {
+        List<PatronHoldRow> holds = BranchContext.fanOut(() -> reservationRepository.findPatronHoldRows(userId));
+        if (BranchContext.isSharded()) {
+            holds.sort(Comparator.comparing(PatronHoldRow::createdAt, Comparator.nullsLast(Comparator.reverseOrder())));
+        }
+        return holds;
     }
 
     /**
@@ -136,16 +262,32 @@ public class ReservationService {
      * @param user The user
      * @return List of all reservations
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<Reservation> getAllUserReservations(User user) {
-        return reservationRepository.findByUserOrderByCreatedAtDesc(user);
+        return newestFirst(BranchContext.fanOut(() -> reservationRepository.findByUserOrderByCreatedAtDesc(user)));
+    }
+
+    // Each shard returns its holds newest first; merged they need sorting again
+    private static List<Reservation> newestFirst(List<Reservation> reservations) {
+        if (BranchContext.isSharded()) {
+            reservations.sort(Comparator.comparing(Reservation::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder())));
+        }
+        return reservations;
     }
 
     /**
      * Process expired READY_FOR_PICKUP reservations
      * This should be called periodically (e.g., scheduled task)
      */
-    @Transactional
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void processExpiredReservations() {
+        BranchContext.forEachBranch(() -> transientFailureRetry.inTransaction("Hold expiry", () -> {
+            expireReservations();
+            return null;
+        }));
+    }
+
+    private void expireReservations() {
         List<Reservation> expiredReservations = reservationRepository
             .findExpiredReadyReservations(LocalDateTime.now());
 
@@ -153,6 +295,7 @@ public class ReservationService {
             // Mark as expired
             reservation.setStatus(ReservationStatus.EXPIRED);
             reservationRepository.save(reservation);
+            eventPublisher.publishEvent(CirculationEvent.ofHold(CirculationEventType.HOLD_EXPIRED, reservation));
 
             // Promote the next person in queue
             promoteQueue(reservation.getBook());
@@ -164,8 +307,9 @@ public class ReservationService {
      * @param id The reservation ID
      * @return Optional containing the reservation if found
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Optional<Reservation> getReservationById(Long id) {
-        return reservationRepository.findById(id);
+        return BranchContext.call(BranchContext.branchOf(id), () -> reservationRepository.findById(id));
     }
 
     /**
@@ -176,5 +320,6 @@ public class ReservationService {
     public void completeReservation(Reservation reservation) {
         reservation.setStatus(ReservationStatus.FULFILLED);
         reservationRepository.save(reservation);
+        eventPublisher.publishEvent(CirculationEvent.ofHold(CirculationEventType.HOLD_FULFILLED, reservation));
     }
 }
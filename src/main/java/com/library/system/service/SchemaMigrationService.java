@@ -0,0 +1,198 @@
+package com.library.system.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Applies versioned SQL migrations on top of the tables created by {@code ddl-auto}.
+ * <p>
+ * Scripts live in {@code db/migration} and are named {@code V<version>__<description>.sql};
+ * scripts that only make sense on one database go in a subfolder named after it
+ * ({@code db/migration/sqlite}) and share the version sequence with the common ones.
+ * Each pending script runs in its own transaction together with its row in
+ * {@code schema_migrations}, so a failed script leaves no trace and is retried on the next start.
+ * After migrating, the registered hot queries are run through {@code EXPLAIN QUERY PLAN}
+ * and any full table scan is logged as a warning.
+ */
+@Service
+public class SchemaMigrationService {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaMigrationService.class);
+
+    private static final Pattern MIGRATION_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+    /**
+     * Native equivalents of the repository queries that run on every borrow, return,
+     * login or scheduler tick. Keep in step with the JPQL in the repositories.
+     */
+    static final Map<String, String> HOT_QUERIES = new LinkedHashMap<>();
+
+    static {
+        HOT_QUERIES.put("LoanRepository.findByUserAndBookAndStatus",
+            "SELECT * FROM loans WHERE user_id = ? AND book_id = ? AND status = ?");
+        HOT_QUERIES.put("LoanRepository.countActiveLoansByUser",
+            "SELECT COUNT(id) FROM loans WHERE user_id = ? AND status = 'ACTIVE'");
+        HOT_QUERIES.put("LoanRepository.findDueSoonLoansWithoutReminder",
+            "SELECT * FROM loans l JOIN users u ON u.id = l.user_id JOIN books b ON b.id = l.book_id "
+                + "WHERE l.status IN (?, ?) AND l.reminder_sent_at IS NULL AND l.due_date BETWEEN ? AND ?");
+        HOT_QUERIES.put("LoanRepository.findOverdueLoans",
+            "SELECT * FROM loans WHERE due_date < ? AND status = 'ACTIVE'");
+        HOT_QUERIES.put("ReservationRepository.findPendingReservationsByBook",
+            "SELECT * FROM reservations WHERE book_id = ? AND status = 'PENDING' ORDER BY queue_position");
+        HOT_QUERIES.put("ReservationRepository.findActiveReservationsByUser",
+            "SELECT * FROM reservations WHERE user_id = ? AND status IN ('PENDING', 'READY_FOR_PICKUP', 'IN_TRANSIT') ORDER BY created_at DESC");
+        HOT_QUERIES.put("ReservationRepository.findExpiredReadyReservations",
+            "SELECT * FROM reservations WHERE expires_at < ? AND status = 'READY_FOR_PICKUP'");
+        HOT_QUERIES.put("UserRepository.findByUsername",
+            "SELECT * FROM users WHERE username = ?");
+        HOT_QUERIES.put("UserRepository.findByEmail",
+            "SELECT * FROM users WHERE email = ?");
+        HOT_QUERIES.put("BookRepository.findByIsbn",
+            "SELECT * FROM books WHERE isbn = ?");
+        HOT_QUERIES.put("OutboxMessageRepository.findDispatchable",
+            "SELECT * FROM notification_outbox WHERE status = 'PENDING' AND next_attempt_at <= ? ORDER BY id LIMIT ?");
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ResourcePatternResolver resourceResolver = new PathMatchingResourcePatternResolver();
+    private final String location;
+    private final boolean queryPlanCheck;
+
+    public SchemaMigrationService(JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${library.schema.migrations.location:classpath:db/migration}") String location,
+                                  @Value("${library.schema.query-plan-check:true}") boolean queryPlanCheck) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.location = location;
+        this.queryPlanCheck = queryPlanCheck;
+    }
+
+    /**
+     * Apply pending migrations in version order, then check the hot query plans.
+     * @return number of migrations applied
+     */
+    public int migrate() {
+        jdbcTemplate.execute("""
+            CREATE TABLE IF NOT EXISTS schema_migrations (
+                version INTEGER PRIMARY KEY,
+                description VARCHAR(200) NOT NULL,
+                applied_at TIMESTAMP NOT NULL
+            )
+        """);
+
+        Set<Integer> applied = new HashSet<>(jdbcTemplate.queryForList("SELECT version FROM schema_migrations", Integer.class));
+        int count = 0;
+        for (Migration migration : findMigrations(vendor())) {
+            if (applied.contains(migration.version())) {
+                continue;
+            }
+            log.info("Applying schema migration V{} ({})", migration.version(), migration.description());
+            transactionTemplate.executeWithoutResult(status -> apply(migration));
+            count++;
+        }
+
+        if (count > 0) {
+            log.info("Schema migrations: applied {} migration(s)", count);
+        }
+        if (queryPlanCheck) {
+            checkQueryPlans();
+        }
+        return count;
+    }
+
+    /**
+     * Run each registered query through {@code EXPLAIN QUERY PLAN} and warn about full scans.
+     * Only SQLite is checked; other databases report plans in their own format.
+     * @return names of the queries whose plan contains a scan
+     */
+    public List<String> checkQueryPlans() {
+        String vendor = vendor();
+        if (!"sqlite".equals(vendor)) {
+            log.debug("Query plan check skipped for {}", vendor);
+            return List.of();
+        }
+
+        List<String> scanning = new ArrayList<>();
+        HOT_QUERIES.forEach((name, sql) -> {
+            List<String> plan = jdbcTemplate.query("EXPLAIN QUERY PLAN " + sql, (rs, rowNum) -> rs.getString("detail"));
+            List<String> scans = plan.stream().filter(step -> step.startsWith("SCAN ")).toList();
+            if (!scans.isEmpty()) {
+                log.warn("Query plan for {} scans instead of using an index: {}", name, scans);
+                scanning.add(name);
+            }
+        });
+        return scanning;
+    }
+
+    private void apply(Migration migration) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+            ScriptUtils.executeSqlScript(con, migration.script());
+            return null;
+        });
+        jdbcTemplate.update("INSERT INTO schema_migrations (version, description, applied_at) VALUES (?, ?, ?)",
+            migration.version(), migration.description(), LocalDateTime.now());
+    }
+
+    private String vendor() {
+        return jdbcTemplate.execute((ConnectionCallback<String>) con -> con.getMetaData().getDatabaseProductName())
+            .toLowerCase(Locale.ROOT);
+    }
+
+    private List<Migration> findMigrations(String vendor) {
+        List<Resource> resources = new ArrayList<>();
+        for (String folder : List.of(location, location + "/" + vendor)) {
+            if (!folder.equals(location) && !resourceResolver.getResource(folder + "/").exists()) {
+                continue;
+            }
+            try {
+                resources.addAll(List.of(resourceResolver.getResources(folder + "/V*__*.sql")));
+            } catch (IOException ex) {
+                throw new IllegalStateException("Unable to list schema migrations in " + folder, ex);
+            }
+        }
+
+        List<Migration> migrations = new ArrayList<>();
+        Set<Integer> versions = new HashSet<>();
+        for (Resource resource : resources) {
+            Matcher matcher = MIGRATION_NAME.matcher(resource.getFilename());
+            if (!matcher.matches()) {
+                throw new IllegalStateException("Invalid schema migration name: " + resource.getFilename());
+            }
+            int version = Integer.parseInt(matcher.group(1));
+            if (!versions.add(version)) {
+                throw new IllegalStateException("Duplicate schema migration version: " + version);
+            }
+            migrations.add(new Migration(version, matcher.group(2).replace('_', ' '), resource));
+        }
+        migrations.sort(Comparator.comparingInt(Migration::version));
+        return migrations;
+    }
+
+    private record Migration(int version, String description, Resource script) {
+    }
+}
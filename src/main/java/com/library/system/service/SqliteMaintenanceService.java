@@ -0,0 +1,254 @@
+package com.library.system.service;
+
+import com.library.system.config.BranchRoutingDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the SQLite write-ahead log short and the file compact.
+ * <p>
+ * Automatic checkpoints only run when a commit crosses wal_autocheckpoint and give up
+ * silently while readers hold old snapshots, so under steady catalog traffic the WAL keeps
+ * growing and every read has to search it. A passive checkpoint on a schedule copies what it
+ * can without waiting for anyone; off-peak maintenance then truncates the WAL, returns free
+ * pages with incremental vacuum and runs {@code PRAGMA optimize}. Both use their own
+ * connection, never the writer pool's.
+ * <p>
+ * Incremental vacuum needs auto_vacuum=INCREMENTAL, which SQLite only applies to a file that
+ * already has tables by rebuilding it with VACUUM (the driver has no connection property for
+ * it, so new files are converted the same way). The first maintenance run does that once per
+ * file: the rebuild rewrites the whole file and blocks writers meanwhile, so it belongs in
+ * the off-peak window rather than at startup.
+ * <p>
+ * With a shard per branch each shard file is checkpointed and maintained in turn; the WAL
+ * and page gauges carry a branch tag.
+ */
+@Service
+public class SqliteMaintenanceService {
+
+    private static final Logger log = LoggerFactory.getLogger(SqliteMaintenanceService.class);
+
+    private static final String SQLITE_URL_PREFIX = "jdbc:sqlite:";
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    private final List<Database> databases = new ArrayList<>();
+    private final int incrementalVacuumPages;
+    private final boolean incrementalVacuum;
+
+    private final Timer passiveCheckpointTimer;
+    private final Timer truncateCheckpointTimer;
+    private final Counter busyCheckpoints;
+
+    @Autowired
+    public SqliteMaintenanceService(DataSourceProperties dataSourceProperties,
+                                    ObjectProvider<BranchRoutingDataSource> branchRouting,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${library.sqlite.maintenance.incremental-vacuum:true}") boolean incrementalVacuum,
+                                    @Value("${library.sqlite.maintenance.incremental-vacuum-pages:2000}") int incrementalVacuumPages) {
+        this(BranchRoutingDataSource.databaseUrls(branchRouting.getIfAvailable(), dataSourceProperties.determineUrl()),
+            meterRegistry, incrementalVacuum, incrementalVacuumPages);
+    }
+
+    /**
+     * @param urls database URL per branch; anything but a SQLite file is skipped
+     */
+    SqliteMaintenanceService(Map<String, String> urls, MeterRegistry meterRegistry, boolean incrementalVacuum, int incrementalVacuumPages) {
+        this.incrementalVacuum = incrementalVacuum;
+        this.incrementalVacuumPages = incrementalVacuumPages;
+
+        this.passiveCheckpointTimer = Timer.builder("library.sqlite.checkpoint.duration").tag("mode", "passive").register(meterRegistry);
+        this.truncateCheckpointTimer = Timer.builder("library.sqlite.checkpoint.duration").tag("mode", "truncate").register(meterRegistry);
+        this.busyCheckpoints = Counter.builder("library.sqlite.checkpoint.busy")
+            .description("Checkpoints that could not finish because readers or the writer were busy")
+            .register(meterRegistry);
+
+        urls.forEach((branch, url) -> {
+            String file = databaseFile(url);
+            if (file == null) {
+                return;
+            }
+            Database database = new Database(branch, url, Paths.get(file + "-wal"));
+            databases.add(database);
+            Gauge.builder("library.sqlite.wal.size", database, Database::walSizeBytes)
+                .tag("branch", branch)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+            Gauge.builder("library.sqlite.wal.frames", database.walFrames, AtomicLong::doubleValue).tag("branch", branch).register(meterRegistry);
+            Gauge.builder("library.sqlite.wal.uncheckpointed.frames", database.uncheckpointedFrames, AtomicLong::doubleValue).tag("branch", branch).register(meterRegistry);
+            Gauge.builder("library.sqlite.page.count", database.pageCount, AtomicLong::doubleValue).tag("branch", branch).register(meterRegistry);
+            Gauge.builder("library.sqlite.freelist.count", database.freelistCount, AtomicLong::doubleValue).tag("branch", branch).register(meterRegistry);
+        });
+    }
+
+    public boolean isSupported() {
+        return !databases.isEmpty();
+    }
+
+    @Scheduled(fixedDelayString = "${library.sqlite.maintenance.checkpoint-interval:PT1M}")
+    public void checkpoint() {
+        for (Database database : databases) {
+            try (Connection connection = DriverManager.getConnection(database.url)) {
+                runCheckpoint(database, connection, "PASSIVE", passiveCheckpointTimer);
+            } catch (SQLException ex) {
+                log.warn("SQLite passive checkpoint of branch {} failed: {}", database.branch, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Off-peak housekeeping: switch files to incremental vacuum if they are not yet, truncate
+     * the WAL, vacuum free pages and refresh planner statistics.
+     */
+    @Scheduled(cron = "${library.sqlite.maintenance.cron:0 0 4 * * ?}")
+    public void maintain() {
+        databases.forEach(this::maintain);
+    }
+
+    private void maintain(Database database) {
+        long start = System.nanoTime();
+        try (Connection connection = DriverManager.getConnection(database.url);
+             Statement statement = connection.createStatement()) {
+            long before = queryLong(statement, "PRAGMA freelist_count");
+            boolean incremental = queryLong(statement, "PRAGMA auto_vacuum") == AUTO_VACUUM_INCREMENTAL;
+            if (!incremental && incrementalVacuum) {
+                // Before the checkpoint, which then moves the rebuilt file out of the WAL
+                enableIncrementalVacuum(database, statement);
+            }
+            runCheckpoint(database, connection, "TRUNCATE", truncateCheckpointTimer);
+
+            if (incremental) {
+                statement.execute("PRAGMA incremental_vacuum(" + incrementalVacuumPages + ")");
+            }
+            long freedPages = before - queryLong(statement, "PRAGMA freelist_count");
+            statement.execute("PRAGMA optimize");
+
+            database.pageCount.set(queryLong(statement, "PRAGMA page_count"));
+            database.freelistCount.set(queryLong(statement, "PRAGMA freelist_count"));
+            log.info("SQLite maintenance of branch {}: freed {} pages, {} pages in use, {} free, in {}ms",
+                database.branch, freedPages, database.pageCount.get(), database.freelistCount.get(), (System.nanoTime() - start) / 1_000_000);
+        } catch (SQLException ex) {
+            log.warn("SQLite maintenance of branch {} failed: {}", database.branch, ex.getMessage());
+        }
+    }
+
+    /**
+     * Rebuild the file in auto_vacuum=INCREMENTAL mode, returning every free page on the way.
+     * VACUUM cannot run inside a transaction, so this needs the autocommit maintenance
+     * connection. A rebuild that cannot get the file (a long write in progress) is tried
+     * again on the next run.
+     */
+    private void enableIncrementalVacuum(Database database, Statement statement) {
+        long start = System.nanoTime();
+        try {
+            statement.execute("PRAGMA auto_vacuum=INCREMENTAL");
+            statement.execute("VACUUM");
+            log.info("SQLite maintenance: switched branch {} to incremental vacuum in {}ms",
+                database.branch, (System.nanoTime() - start) / 1_000_000);
+        } catch (SQLException ex) {
+            log.warn("SQLite maintenance: could not switch branch {} to incremental vacuum: {}", database.branch, ex.getMessage());
+        }
+    }
+
+    /**
+     * Size of the write-ahead logs of every database file together.
+     */
+    long walSizeBytes() {
+        return databases.stream().mapToLong(Database::walSizeBytes).sum();
+    }
+
+    private void runCheckpoint(Database database, Connection connection, String mode, Timer timer) throws SQLException {
+        long start = System.nanoTime();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("PRAGMA wal_checkpoint(" + mode + ")")) {
+            rs.next();
+            boolean busy = rs.getInt(1) != 0;
+            long frames = rs.getLong(2);
+            long checkpointed = rs.getLong(3);
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+            database.walFrames.set(Math.max(frames, 0));
+            database.uncheckpointedFrames.set(Math.max(frames - checkpointed, 0));
+            if (busy) {
+                busyCheckpoints.increment();
+                log.debug("SQLite {} checkpoint of branch {} was busy: {} of {} frames copied", mode, database.branch, checkpointed, frames);
+            }
+        }
+    }
+
+    private static long queryLong(Statement statement, String sql) throws SQLException {
+        try (ResultSet rs = statement.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0L;
+        }
+    }
+
+    /**
+     * The database file behind a SQLite JDBC URL, or null for anything else (including in-memory databases).
+     */
+    static String databaseFile(String url) {
+        if (url == null || !url.startsWith(SQLITE_URL_PREFIX)) {
+            return null;
+        }
+        String file = url.substring(SQLITE_URL_PREFIX.length());
+        int query = file.indexOf('?');
+        if (query >= 0) {
+            file = file.substring(0, query);
+        }
+        if (file.startsWith("file:")) {
+            file = file.substring("file:".length());
+        }
+        return file.isEmpty() || file.startsWith(":memory:") ? null : file;
+    }
+
+    /**
+     * One database file with the readings taken at its last checkpoint and maintenance run.
+     */
+    private static final class Database {
+
+        private final String branch;
+        private final String url;
+        private final Path walFile;
+        private final AtomicLong walFrames = new AtomicLong();
+        private final AtomicLong uncheckpointedFrames = new AtomicLong();
+        private final AtomicLong pageCount = new AtomicLong();
+        private final AtomicLong freelistCount = new AtomicLong();
+
+        Database(String branch, String url, Path walFile) {
+            this.branch = branch;
+            this.url = url;
+            this.walFile = walFile;
+        }
+
+        long walSizeBytes() {
+            try {
+                return Files.exists(walFile) ? Files.size(walFile) : 0L;
+            } catch (IOException ex) {
+                return 0L;
+            }
+        }
+    }
+}
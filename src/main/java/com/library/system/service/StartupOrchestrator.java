@@ -0,0 +1,124 @@
+package com.library.system.service;
+
+import com.library.system.config.BranchContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs the startup tasks (schema migrations, seed data, the availability projection, then
+ * the initial reminder run) and reports how long each phase took.
+ * <p>
+ * Schema migrations always run before the application is marked ready and fail startup
+ * when they fail.
+ * <p>
+ * In {@code sync} mode seeding runs before the application is marked ready and the
+ * reminder run blocks the ready event, as before. In {@code async} mode both run on a
+ * background thread once the application is ready, so readiness no longer depends on
+ * database size.
+ */
+@Service
+public class StartupOrchestrator implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupOrchestrator.class);
+
+    private final SchemaMigrationService schemaMigrationService;
+    private final DataInitializationService dataInitializationService;
+    private final AvailabilityProjection availabilityProjection;
+    private final LoanReminderScheduler loanReminderScheduler;
+    private final boolean async;
+    private final boolean reminderRun;
+    private final Map<String, Duration> phaseTimings = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    public StartupOrchestrator(SchemaMigrationService schemaMigrationService,
+                               DataInitializationService dataInitializationService,
+                               AvailabilityProjection availabilityProjection,
+                               LoanReminderScheduler loanReminderScheduler,
+                               @Value("${library.startup.mode:sync}") String mode,
+                               @Value("${library.startup.reminder-run:true}") boolean reminderRun) {
+        this.schemaMigrationService = schemaMigrationService;
+        this.dataInitializationService = dataInitializationService;
+        this.availabilityProjection = availabilityProjection;
+        this.loanReminderScheduler = loanReminderScheduler;
+        this.async = "async".equalsIgnoreCase(mode);
+        this.reminderRun = reminderRun;
+    }
+
+    @Override
+    public void run(String... args) {
+        // Every branch shard has its own schema_migrations table and indexes
+        timed("schema-migrations", () -> BranchContext.forEachBranch(schemaMigrationService::migrate), true);
+        if (!async) {
+            timed("seed-data", dataInitializationService::initialize);
+            timed("availability", availabilityProjection::initialize);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady(ApplicationReadyEvent event) {
+        phaseTimings.put("context", event.getTimeTaken());
+
+        if (async) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("startup-");
+            executor.execute(this::runPostReadyTasks);
+        } else {
+            runPostReadyTasks();
+        }
+    }
+
+    private void runPostReadyTasks() {
+        if (async) {
+            timed("seed-data", dataInitializationService::initialize);
+            timed("availability", availabilityProjection::initialize);
+        }
+        if (reminderRun) {
+            // Trigger the reminder check once at startup to aid local testing
+            timed("reminder-run", loanReminderScheduler::sendDueSoonReminders);
+        }
+        report();
+    }
+
+    private void timed(String phase, Runnable task) {
+        timed(phase, task, !async);
+    }
+
+    private void timed(String phase, Runnable task, boolean failFast) {
+        long start = System.nanoTime();
+        try {
+            task.run();
+        } catch (RuntimeException ex) {
+            if (failFast) {
+                throw ex;
+            }
+            log.error("Startup phase '{}' failed", phase, ex);
+        } finally {
+            phaseTimings.put(phase, Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    private void report() {
+        StringBuilder summary = new StringBuilder();
+        getPhaseTimings().forEach((phase, duration) ->
+            summary.append(summary.isEmpty() ? "" : ", ").append(phase).append('=').append(duration.toMillis()).append("ms"));
+        log.info("Startup phase timings ({} mode): {}", async ? "async" : "sync", summary);
+    }
+
+    /**
+     * Durations of the startup phases completed so far, in execution order.
+     */
+    public Map<String, Duration> getPhaseTimings() {
+        synchronized (phaseTimings) {
+            return new LinkedHashMap<>(phaseTimings);
+        }
+    }
+}
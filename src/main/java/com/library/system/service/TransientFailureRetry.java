@@ -0,0 +1,72 @@
+package com.library.system.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Runs a unit of work in its own transaction and starts it over when the database reports a
+ * transient failure: a lock it could not get, a deadlock victim or a serialization conflict.
+ * <p>
+ * Failures are classified by Spring's {@link TransientDataAccessException} hierarchy, which
+ * Hibernate's dialects map for every backend (SQLITE_BUSY, H2 lock timeouts and deadlocks
+ * alike), so callers never look at vendor error codes or messages.
+ */
+@Service
+public class TransientFailureRetry {
+
+    private static final Logger log = LoggerFactory.getLogger(TransientFailureRetry.class);
+
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final long backoffMillis;
+
+    public TransientFailureRetry(PlatformTransactionManager transactionManager,
+                                 @Value("${library.retry.max-attempts:3}") int maxAttempts,
+                                 @Value("${library.retry.backoff-ms:50}") long backoffMillis) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+    }
+
+    /**
+     * Run the work in a new transaction, retrying it on transient failures. Inside a caller's
+     * transaction it runs once: a failed statement has already doomed that transaction.
+     */
+    public <T> T inTransaction(String operation, Supplier<T> work) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return work.get();
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (TransientDataAccessException ex) {
+                if (attempt >= maxAttempts) {
+                    throw ex;
+                }
+                log.debug("{} hit a transient failure on attempt {}: {}", operation, attempt, ex.getMessage());
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void backoff(int attempt) {
+        // Jittered so that two conflicting requests do not collide again on the next attempt
+        long delay = backoffMillis * attempt + ThreadLocalRandom.current().nextLong(backoffMillis + 1);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying", ex);
+        }
+    }
+}
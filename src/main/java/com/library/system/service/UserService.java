@@ -1,5 +1,6 @@
 package com.library.system.service;
 
+import com.library.system.config.CustomUserDetailsService;
 import com.library.system.domain.User;
 import com.library.system.domain.UserRole;
 import com.library.system.repository.UserRepository;
@@ -8,6 +9,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,50 +22,95 @@ public class UserService {
     
     @Autowired
     private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private BranchShardService branchShardService;
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
     
+    @Transactional(readOnly = true)
     public List<User> getAllUsers() {
         return userRepository.findAll();
     }
     
+    @Transactional(readOnly = true)
     public Optional<User> getUserById(Long id) {
         return userRepository.findById(id);
     }
     
+    /**
+     * A stand-in for the user with this id that runs no query, for passing to services and
+     * queries that only need the user's id. Reading any other property of it fails.
+     */
+    @Transactional(readOnly = true)
+    public User getUserReference(Long id) {
+        return userRepository.getReferenceById(id);
+    }
+
+    @Transactional(readOnly = true)
     public Optional<User> getUserByUsername(String username) {
         return userRepository.findByUsername(username);
     }
     
+    @Transactional(readOnly = true)
     public Optional<User> getUserByEmail(String email) {
         return userRepository.findByEmail(email);
     }
     
+    @Transactional(readOnly = true)
     public List<User> getUsersByRole(UserRole role) {
         return userRepository.findByRole(role);
     }
     
+    @Transactional(readOnly = true)
     public List<User> getActiveUsers() {
         return userRepository.findByActiveTrue();
     }
     
     public User saveUser(User user) {
+        encodePassword(user);
+        User saved = userRepository.save(user);
+        userDetailsService.invalidate(saved.getId(), saved.getUsername());
+        branchShardService.usersChanged(List.of(saved.getId()));
+        return saved;
+    }
+    
+    public List<User> saveUsers(List<User> users) {
+        users.forEach(this::encodePassword);
+        List<User> saved = userRepository.saveAll(users);
+        saved.forEach(user -> userDetailsService.invalidate(user.getId(), user.getUsername()));
+        branchShardService.usersChanged(saved.stream().map(User::getId).toList());
+        return saved;
+    }
+    
+    private void encodePassword(User user) {
         if (user.getPassword() != null && !user.getPassword().startsWith("$2a$")) {
             user.setPassword(passwordEncoder.encode(user.getPassword()));
         }
-        return userRepository.save(user);
     }
     
     public void deleteUser(Long id) {
         userRepository.deleteById(id);
+        userDetailsService.invalidate(id, null);
+        branchShardService.usersChanged(List.of(id));
     }
     
+    @Transactional(readOnly = true)
     public boolean existsByUsername(String username) {
         return userRepository.existsByUsername(username);
     }
     
+    @Transactional(readOnly = true)
     public boolean existsByEmail(String email) {
         return userRepository.existsByEmail(email);
     }
     
+    @Transactional(readOnly = true)
+    public List<String> findExistingUsernames(Collection<String> usernames) {
+        return userRepository.findExistingUsernames(usernames);
+    }
+    
     public User createMember(String username, String password, String fullName, String email) {
         User user = new User(username, password, fullName, email, UserRole.MEMBER);
         return saveUser(user);
@@ -0,0 +1,104 @@
+package com.library.system.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Caps how many circulation writes may be in progress at once, so a checkout storm queues
+ * here for a moment instead of on the single SQLite writer, where every waiting request
+ * holds a Tomcat thread for up to Hikari's connection timeout.
+ * <p>
+ * The cap adapts AIMD style to the latency of the writes it lets through: each write that
+ * finishes within library.admission.target-latency while the cap is in use raises it by one,
+ * each slower write cuts it by the backoff ratio. Requests over the cap are turned away.
+ */
+@Service
+public class WriteAdmissionLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteAdmissionLimiter.class);
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyNanos;
+    private final double backoffRatio;
+    private final Counter admittedCounter;
+    private final Counter rejectedCounter;
+
+    private double limit;
+    private int inFlight;
+
+    public WriteAdmissionLimiter(MeterRegistry meterRegistry,
+                                 @Value("${library.admission.enabled:true}") boolean enabled,
+                                 @Value("${library.admission.initial-limit:8}") int initialLimit,
+                                 @Value("${library.admission.min-limit:1}") int minLimit,
+                                 @Value("${library.admission.max-limit:64}") int maxLimit,
+                                 @Value("${library.admission.target-latency:PT0.5S}") Duration targetLatency,
+                                 @Value("${library.admission.backoff-ratio:0.9}") double backoffRatio) {
+        this.enabled = enabled;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatencyNanos = targetLatency.toNanos();
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.admittedCounter = Counter.builder("library.admission.requests").tag("outcome", "admitted").register(meterRegistry);
+        this.rejectedCounter = Counter.builder("library.admission.requests").tag("outcome", "rejected").register(meterRegistry);
+        meterRegistry.gauge("library.admission.limit", this, WriteAdmissionLimiter::getLimit);
+        meterRegistry.gauge("library.admission.in-flight", this, WriteAdmissionLimiter::getInFlight);
+    }
+
+    /**
+     * Take a slot for one write.
+     * @return false if the cap is reached; the caller must not call {@link #release}
+     */
+    public boolean tryAcquire() {
+        if (!enabled) {
+            return true;
+        }
+        synchronized (this) {
+            if (inFlight >= (int) limit) {
+                rejectedCounter.increment();
+                return false;
+            }
+            inFlight++;
+        }
+        admittedCounter.increment();
+        return true;
+    }
+
+    /**
+     * Give the slot back and adapt the cap to how long the write took.
+     */
+    public void release(long latencyNanos) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            int before = (int) limit;
+            if (latencyNanos > targetLatencyNanos) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if (inFlight * 2 >= limit) {
+                // Only grow while the cap is actually being used
+                limit = Math.min(maxLimit, limit + 1);
+            }
+            inFlight--;
+            if ((int) limit != before) {
+                log.debug("Write admission limit {} -> {} after a {}ms write", before, (int) limit, latencyNanos / 1_000_000);
+            }
+        }
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
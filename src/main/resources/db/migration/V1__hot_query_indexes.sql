@@ -0,0 +1,27 @@
+-- Secondary indexes for the repository queries on the borrow, return and reminder paths.
+-- ddl-auto creates the tables but no indexes, so every one of these lookups was a full scan.
+
+-- countActiveLoansByUser, findByUserAndStatus and findByUserAndBookAndStatus
+CREATE INDEX IF NOT EXISTS idx_loans_user_status_book ON loans (user_id, status, book_id);
+
+-- findDueSoonLoansWithoutReminder, findOverdueLoans and findLoansDueBetween
+CREATE INDEX IF NOT EXISTS idx_loans_status_due_date ON loans (status, due_date);
+
+-- findPendingReservationsByBook and countPendingReservationsByBook
+CREATE INDEX IF NOT EXISTS idx_reservations_book_status_queue ON reservations (book_id, status, queue_position);
+
+-- findActiveReservationsByUser, findActiveReservationByBookAndUser and findByUserAndStatus
+CREATE INDEX IF NOT EXISTS idx_reservations_user_status ON reservations (user_id, status);
+
+-- findExpiredReadyReservations and the pickup notice scan
+CREATE INDEX IF NOT EXISTS idx_reservations_status_expires ON reservations (status, expires_at);
+
+-- findByUsername and findByEmail on every login and registration
+CREATE UNIQUE INDEX IF NOT EXISTS ux_users_username ON users (username);
+CREATE INDEX IF NOT EXISTS idx_users_email ON users (email);
+
+-- findByIsbn
+CREATE INDEX IF NOT EXISTS idx_books_isbn ON books (isbn);
+
+-- findDispatchable on every dispatcher poll
+CREATE INDEX IF NOT EXISTS idx_outbox_status_next_attempt ON notification_outbox (status, next_attempt_at);
@@ -0,0 +1,5 @@
+-- Last id handed out per table on this shard, see BranchIdGenerator
+CREATE TABLE IF NOT EXISTS branch_id_sequences (
+    name VARCHAR(100) PRIMARY KEY,
+    last_id BIGINT NOT NULL
+);
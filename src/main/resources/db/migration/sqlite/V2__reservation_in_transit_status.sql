@@ -0,0 +1,32 @@
+-- ddl-auto created reservations.status with a CHECK listing the statuses of the time, and
+-- SQLite cannot alter a constraint in place, so IN_TRANSIT holds were rejected on existing
+-- databases. Rebuild the table with the full list and restore its indexes. Migrations run
+-- after ddl-auto, so the branch columns already exist here.
+
+CREATE TABLE reservations_rebuilt (
+    id integer,
+    branch varchar(20) default 'MAIN' not null,
+    created_at timestamp,
+    expires_at timestamp,
+    notified_at timestamp,
+    pickup_branch varchar(20),
+    pickup_notice_sent_at timestamp,
+    queue_position integer,
+    status varchar(255) check (status in ('PENDING','READY_FOR_PICKUP','EXPIRED','CANCELLED','FULFILLED','IN_TRANSIT')),
+    book_id bigint not null,
+    user_id bigint not null,
+    primary key (id)
+);
+
+INSERT INTO reservations_rebuilt (id, branch, created_at, expires_at, notified_at, pickup_branch, pickup_notice_sent_at, queue_position, status, book_id, user_id)
+SELECT id, branch, created_at, expires_at, notified_at, pickup_branch, pickup_notice_sent_at, queue_position, status, book_id, user_id FROM reservations;
+
+DROP TABLE reservations;
+
+ALTER TABLE reservations_rebuilt RENAME TO reservations;
+
+CREATE INDEX IF NOT EXISTS idx_reservations_book_status_queue ON reservations (book_id, status, queue_position);
+
+CREATE INDEX IF NOT EXISTS idx_reservations_user_status ON reservations (user_id, status);
+
+CREATE INDEX IF NOT EXISTS idx_reservations_status_expires ON reservations (status, expires_at);
@@ -0,0 +1,98 @@
+package com.library.system.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.system.domain.UserRole;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuthTokenServiceTest {
+
+    private AuthTokenService tokens;
+    private CurrentUser user;
+
+    @BeforeEach
+    void setUp() {
+        tokens = new AuthTokenService(new ObjectMapper(), "test-secret", Duration.ofMinutes(15), Duration.ofDays(14));
+        user = new CurrentUser(7L, "testuser", "", true, List.of(new SimpleGrantedAuthority("ROLE_MEMBER")),
+            "Test User", UserRole.MEMBER);
+    }
+
+    @Test
+    void readAccessToken_IssuedToken_RestoresUserWithoutLookup() {
+        // Given
+        String access = issue(AuthTokenService.ACCESS_COOKIE);
+
+        // When
+        CurrentUser restored = tokens.readAccessToken(access);
+
+        // Then
+        assertEquals(7L, restored.getId());
+        assertEquals("testuser", restored.getUsername());
+        assertEquals("Test User", restored.getFullName());
+        assertEquals(UserRole.MEMBER, restored.getRole());
+        assertTrue(restored.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_MEMBER")));
+    }
+
+    @Test
+    void readAccessToken_TamperedToken_IsRejected() {
+        // Given
+        String access = issue(AuthTokenService.ACCESS_COOKIE);
+        String forged = access.substring(0, access.indexOf('.') - 2) + "xx" + access.substring(access.indexOf('.'));
+
+        // When / Then
+        assertNull(tokens.readAccessToken(forged));
+        assertNull(tokens.readAccessToken("garbage"));
+        assertNull(tokens.readAccessToken(null));
+    }
+
+    @Test
+    void readAccessToken_OtherSecret_IsRejected() {
+        // Given
+        String access = issue(AuthTokenService.ACCESS_COOKIE);
+        AuthTokenService otherInstance = new AuthTokenService(new ObjectMapper(), "other-secret",
+            Duration.ofMinutes(15), Duration.ofDays(14));
+
+        // When / Then
+        assertNull(otherInstance.readAccessToken(access));
+    }
+
+    @Test
+    void readAccessToken_Expired_IsRejected() {
+        // Given
+        tokens = new AuthTokenService(new ObjectMapper(), "test-secret", Duration.ofMinutes(-1), Duration.ofDays(14));
+        String access = issue(AuthTokenService.ACCESS_COOKIE);
+
+        // When / Then
+        assertNull(tokens.readAccessToken(access));
+    }
+
+    @Test
+    void refreshToken_OnlyAcceptedForRefresh() {
+        // Given
+        String refresh = issue(AuthTokenService.REFRESH_COOKIE);
+
+        // When / Then
+        assertEquals("testuser", tokens.readRefreshToken(refresh));
+        assertNull(tokens.readAccessToken(refresh));
+        assertNull(tokens.readRefreshToken(issue(AuthTokenService.ACCESS_COOKIE)));
+    }
+
+    private String issue(String cookieName) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        tokens.writeCookies(user, new MockHttpServletRequest(), response);
+        return response.getHeaders(HttpHeaders.SET_COOKIE).stream()
+            .filter(header -> header.startsWith(cookieName + "="))
+            .map(header -> header.substring(cookieName.length() + 1, header.indexOf(';')))
+            .findFirst()
+            .orElseThrow();
+    }
+}
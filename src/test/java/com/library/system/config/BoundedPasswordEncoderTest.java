@@ -0,0 +1,69 @@
+package com.library.system.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedPasswordEncoderTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private BoundedPasswordEncoder encoder;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        encoder = new BoundedPasswordEncoder(5, 2, 4, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        encoder.destroy();
+    }
+
+    @Test
+    void matches_EncodedPassword_VerifiesOnPoolAndRecordsTimings() {
+        // Given
+        String hash = encoder.encode("secret");
+
+        // When / Then
+        assertTrue(encoder.matches("secret", hash));
+        assertFalse(encoder.matches("wrong", hash));
+        assertEquals(3, meterRegistry.get("library.password.hashing.duration").timer().count());
+        assertEquals(3, meterRegistry.get("library.password.hashing.queue-wait").timer().count());
+    }
+
+    @Test
+    void upgradeEncoding_LowerCostHash_IsUpgraded() {
+        // Given
+        String weaker = new BCryptPasswordEncoder(4).encode("secret");
+        String current = encoder.encode("secret");
+
+        // When / Then
+        assertTrue(encoder.upgradeEncoding(weaker));
+        assertFalse(encoder.upgradeEncoding(current));
+    }
+
+    @Test
+    void calibrateStrength_TinyTarget_FallsBackToMinimum() {
+        // When
+        int strength = BoundedPasswordEncoder.calibrateStrength(Duration.ofNanos(1), 11);
+
+        // Then
+        assertEquals(11, strength);
+    }
+
+    @Test
+    void calibrateStrength_HugeTarget_CappedAtMaximum() {
+        // When
+        int strength = BoundedPasswordEncoder.calibrateStrength(Duration.ofDays(1), 10);
+
+        // Then
+        assertEquals(16, strength);
+    }
+}
@@ -0,0 +1,133 @@
+package com.library.system.config;
+
+import com.library.system.domain.User;
+import com.library.system.domain.UserRole;
+import com.library.system.repository.UserRepository;
+import com.library.system.service.BranchShardService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CustomUserDetailsServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private BranchShardService branchShardService;
+
+    private CustomUserDetailsService userDetailsService;
+
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        userDetailsService = new CustomUserDetailsService(userRepository, branchShardService, 10, Duration.ofMinutes(5), 10, Duration.ofMinutes(1));
+
+        testUser = new User("testuser", "$2a$10$hash", "Test User", "test@example.com", UserRole.MEMBER);
+        testUser.setId(1L);
+    }
+
+    @Test
+    void loadUserByUsername_Twice_QueriesOnceAndReturnsFreshCopies() {
+        // Given
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+
+        // When
+        UserDetails first = userDetailsService.loadUserByUsername("testuser");
+        ((org.springframework.security.core.userdetails.User) first).eraseCredentials();
+        UserDetails second = userDetailsService.loadUserByUsername("testuser");
+
+        // Then
+        verify(userRepository, times(1)).findByUsername("testuser");
+        assertEquals("$2a$10$hash", second.getPassword());
+        assertTrue(second.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_MEMBER")));
+    }
+
+    @Test
+    void loadUserByUsername_UnknownTwice_QueriesOnce() {
+        // Given
+        when(userRepository.findByUsername("nobody")).thenReturn(Optional.empty());
+
+        // When
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("nobody"));
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("nobody"));
+
+        // Then
+        verify(userRepository, times(1)).findByUsername("nobody");
+    }
+
+    @Test
+    void invalidate_AfterRoleChange_ReloadsUser() {
+        // Given
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+        userDetailsService.loadUserByUsername("testuser");
+        testUser.setRole(UserRole.ADMIN);
+
+        // When
+        userDetailsService.invalidate(1L, "testuser");
+        UserDetails reloaded = userDetailsService.loadUserByUsername("testuser");
+
+        // Then
+        verify(userRepository, times(2)).findByUsername("testuser");
+        assertTrue(reloaded.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN")));
+    }
+
+    @Test
+    void invalidate_NewUser_ClearsNegativeEntry() {
+        // Given
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.empty(), Optional.of(testUser));
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("testuser"));
+
+        // When
+        userDetailsService.invalidate(1L, "testuser");
+        UserDetails created = userDetailsService.loadUserByUsername("testuser");
+
+        // Then
+        assertEquals("testuser", created.getUsername());
+    }
+
+    @Test
+    void invalidate_ById_EvictsEntryUnderOldUsername() {
+        // Given
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+        userDetailsService.loadUserByUsername("testuser");
+
+        // When
+        userDetailsService.invalidate(1L, null);
+        userDetailsService.loadUserByUsername("testuser");
+
+        // Then
+        verify(userRepository, times(2)).findByUsername("testuser");
+    }
+
+    @Test
+    void updatePassword_StoresNewHashAndReloadsUser() {
+        // Given
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+        UserDetails loaded = userDetailsService.loadUserByUsername("testuser");
+
+        // When
+        UserDetails updated = userDetailsService.updatePassword(loaded, "$2a$12$newhash");
+        userDetailsService.loadUserByUsername("testuser");
+
+        // Then
+        assertEquals("$2a$12$newhash", updated.getPassword());
+        assertEquals("$2a$12$newhash", testUser.getPassword());
+        verify(userRepository).save(testUser);
+        verify(branchShardService).usersChanged(List.of(1L));
+        verify(userRepository, times(3)).findByUsername("testuser");
+    }
+}
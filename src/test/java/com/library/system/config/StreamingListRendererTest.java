@@ -0,0 +1,46 @@
+package com.library.system.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingListRendererTest {
+
+    @Test
+    void rows_FlushBeforeFirstRowAndEveryBatch() {
+        // Given
+        AtomicInteger flushes = new AtomicInteger();
+        StreamingListRenderer.Rows<Integer> rows =
+            new StreamingListRenderer.Rows<>(List.of(1, 2, 3, 4, 5).iterator(), 2, flushes::incrementAndGet);
+
+        // When
+        List<Integer> seen = new ArrayList<>();
+        rows.forEach(seen::add);
+
+        // Then
+        assertEquals(List.of(1, 2, 3, 4, 5), seen);
+        assertEquals(3, flushes.get());
+        assertEquals(5, rows.getCount());
+    }
+
+    @Test
+    void rows_EmptyLooksAheadWithoutConsuming() {
+        // Given
+        StreamingListRenderer.Rows<Integer> rows =
+            new StreamingListRenderer.Rows<>(List.of(1).iterator(), 50, () -> { });
+
+        // When
+        boolean emptyBefore = rows.isEmpty();
+        Integer first = rows.next();
+
+        // Then
+        assertFalse(emptyBefore);
+        assertEquals(1, first);
+        assertFalse(rows.isEmpty());
+        assertTrue(new StreamingListRenderer.Rows<>(List.<Integer>of().iterator(), 50, () -> { }).isEmpty());
+    }
+}
@@ -0,0 +1,230 @@
+package com.library.system.service;
+
+import com.library.system.domain.BookStatus;
+import com.library.system.domain.CirculationEvent;
+import com.library.system.domain.CirculationEventType;
+import com.library.system.domain.ReservationStatus;
+import com.library.system.dto.BookAvailability;
+import com.library.system.dto.BookStatusRow;
+import com.library.system.dto.OpenHoldRow;
+import com.library.system.dto.OpenLoanRow;
+import com.library.system.repository.BookRepository;
+import com.library.system.repository.LoanRepository;
+import com.library.system.repository.ReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AvailabilityProjectionTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private LoanRepository loanRepository;
+
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private PageCache pageCache;
+
+    @TempDir
+    Path tempDir;
+
+    private Path snapshotFile;
+    private CirculationEventLog eventLog;
+    private final LocalDate dueDate = LocalDate.now().plusDays(7);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        snapshotFile = tempDir.resolve("availability.snapshot");
+        eventLog = openEventLog();
+    }
+
+    private CirculationEventLog openEventLog() throws IOException {
+        CirculationEventLog log = new CirculationEventLog(tempDir.resolve("event-log").toString(), DataSize.ofMegabytes(1));
+        log.open();
+        return log;
+    }
+
+    private AvailabilityProjection projection() {
+        return new AvailabilityProjection(bookRepository, loanRepository, reservationRepository, eventLog, pageCache, transactionManager, true, snapshotFile.toString());
+    }
+
+    private CirculationEvent event(CirculationEventType type, long bookId, Long userId, BookStatus status, LocalDate due) {
+        return new CirculationEvent(type, bookId, userId, null, status, due, Instant.now());
+    }
+
+    @Test
+    void initialize_BuildsFromTables() {
+        // Given
+        when(bookRepository.findAllStatusRows()).thenReturn(List.of(
+            new BookStatusRow(1L, BookStatus.BORROWED, 0L), new BookStatusRow(2L, BookStatus.AVAILABLE, 0L)));
+        when(loanRepository.findOpenLoanRows()).thenReturn(List.of(new OpenLoanRow(1L, 10L, dueDate)));
+        when(reservationRepository.findOpenHoldRows()).thenReturn(List.of(
+            new OpenHoldRow(1L, 11L, ReservationStatus.PENDING), new OpenHoldRow(1L, 12L, ReservationStatus.PENDING)));
+        AvailabilityProjection projection = projection();
+
+        // When
+        projection.initialize();
+
+        // Then
+        BookAvailability borrowed = projection.get(1L);
+        assertEquals(BookStatus.BORROWED, borrowed.status());
+        assertEquals(dueDate, borrowed.dueBack());
+        assertTrue(borrowed.isBorrowedBy(10L));
+        assertEquals(2, borrowed.holdCount());
+        assertTrue(borrowed.isNextInQueue(11L));
+        assertTrue(projection.get(2L).isAvailable());
+        verify(bookRepository, never()).findStatusRows(any());
+    }
+
+    @Test
+    void on_AppliesCirculationEventsInOrder() {
+        // Given
+        when(bookRepository.findAllStatusRows()).thenReturn(List.of(new BookStatusRow(1L, BookStatus.AVAILABLE, 0L)));
+        AvailabilityProjection projection = projection();
+        projection.initialize();
+
+        // When
+        projection.on(event(CirculationEventType.LOAN_BORROWED, 1L, 10L, BookStatus.BORROWED, dueDate));
+        projection.on(event(CirculationEventType.HOLD_PLACED, 1L, 11L, null, null));
+        projection.on(event(CirculationEventType.HOLD_PLACED, 1L, 11L, null, null));
+        projection.on(event(CirculationEventType.LOAN_RETURNED, 1L, 10L, BookStatus.AVAILABLE, dueDate));
+        projection.on(event(CirculationEventType.HOLD_READY, 1L, 11L, null, null));
+
+        // Then
+        BookAvailability availability = projection.get(1L);
+        assertTrue(availability.isAvailable());
+        assertNull(availability.dueBack());
+        assertNull(availability.borrowerUserId());
+        assertEquals(0, availability.holdCount());
+        assertTrue(availability.isHeldForPickup());
+        assertTrue(availability.hasHoldFor(11L));
+    }
+
+    @Test
+    void get_AtANewerVersion_RereadsTheBookOnce() {
+        // Given
+        when(bookRepository.findAllStatusRows()).thenReturn(List.of(new BookStatusRow(1L, BookStatus.AVAILABLE, 3L)));
+        AvailabilityProjection projection = projection();
+        projection.initialize();
+
+        // Then
+        assertTrue(projection.get(1L, 3L).isAvailable());
+        verify(bookRepository, never()).findStatusRows(any());
+
+        // Given: checked out through another instance
+        when(bookRepository.findStatusRows(1L)).thenReturn(List.of(new BookStatusRow(1L, BookStatus.BORROWED, 4L)));
+        when(loanRepository.findOpenLoanRows(1L)).thenReturn(List.of(new OpenLoanRow(1L, 10L, dueDate)));
+
+        // When
+        BookAvailability reread = projection.get(1L, 4L);
+
+        // Then
+        assertTrue(reread.isBorrowedBy(10L));
+        assertTrue(projection.get(1L, 4L).isBorrowedBy(10L));
+        assertTrue(projection.get(1L).isBorrowedBy(10L));
+        verify(bookRepository, times(1)).findStatusRows(1L);
+    }
+
+    @Test
+    void sync_ReadsBooksChangedByAnotherInstanceAgain() {
+        // Given
+        when(bookRepository.findAllStatusRows()).thenReturn(List.of(
+            new BookStatusRow(1L, BookStatus.AVAILABLE, 3L), new BookStatusRow(2L, BookStatus.AVAILABLE, 5L)));
+        AvailabilityProjection projection = projection();
+        projection.initialize();
+        when(bookRepository.findAllStatusRows()).thenReturn(List.of(
+            new BookStatusRow(1L, BookStatus.BORROWED, 4L), new BookStatusRow(2L, BookStatus.AVAILABLE, 5L)));
+        when(bookRepository.findStatusRows(1L)).thenReturn(List.of(new BookStatusRow(1L, BookStatus.BORROWED, 4L)));
+        when(loanRepository.findOpenLoanRows(1L)).thenReturn(List.of(new OpenLoanRow(1L, 10L, dueDate)));
+
+        // When
+        projection.sync();
+
+        // Then
+        assertTrue(projection.get(1L).isBorrowedBy(10L));
+        verify(bookRepository, never()).findStatusRows(2L);
+        verify(pageCache).onChangedElsewhere(1L, false);
+        verifyNoMoreInteractions(pageCache);
+    }
+
+    @Test
+    void initialize_ReplaysEventsPublishedDuringStartup() {
+        // Given
+        AvailabilityProjection projection = projection();
+        projection.on(event(CirculationEventType.BOOK_UPDATED, 5L, null, BookStatus.AVAILABLE, null));
+        projection.on(event(CirculationEventType.LOAN_BORROWED, 5L, 10L, BookStatus.BORROWED, dueDate));
+
+        // When
+        projection.initialize();
+
+        // Then
+        assertEquals(BookStatus.BORROWED, projection.get(5L).status());
+        assertTrue(projection.get(5L).isBorrowedBy(10L));
+    }
+
+    @Test
+    void initialize_LoadsSnapshotAndReplaysLogTail() throws IOException {
+        // Given: a snapshot taken at startup, then a return recorded only in the log
+        when(bookRepository.findAllStatusRows()).thenReturn(List.of(new BookStatusRow(1L, BookStatus.BORROWED, 0L)));
+        when(loanRepository.findOpenLoanRows()).thenReturn(List.of(new OpenLoanRow(1L, 10L, dueDate)));
+        when(reservationRepository.findOpenHoldRows()).thenReturn(List.of(new OpenHoldRow(1L, 11L, ReservationStatus.PENDING)));
+        AvailabilityProjection previous = projection();
+        previous.initialize();
+        eventLog.on(event(CirculationEventType.LOAN_RETURNED, 1L, 10L, BookStatus.AVAILABLE, dueDate));
+        eventLog.close();
+
+        // When
+        eventLog = openEventLog();
+        AvailabilityProjection restarted = projection();
+        restarted.initialize();
+
+        // Then
+        assertTrue(restarted.get(1L).isAvailable());
+        assertEquals(previous.get(1L), restarted.get(1L));
+        assertTrue(Files.exists(snapshotFile));
+        verify(bookRepository, times(1)).findAllStatusRows();
+    }
+
+    @Test
+    void initialize_AfterUncleanShutdown_RebuildsFromTables() throws IOException {
+        // Given: the log was never closed
+        when(bookRepository.findAllStatusRows()).thenReturn(List.of(new BookStatusRow(1L, BookStatus.AVAILABLE, 0L)));
+        projection().initialize();
+        eventLog.on(event(CirculationEventType.LOAN_BORROWED, 1L, 10L, BookStatus.BORROWED, dueDate));
+
+        // When
+        eventLog = openEventLog();
+        AvailabilityProjection restarted = projection();
+        restarted.initialize();
+
+        // Then
+        verify(bookRepository, times(2)).findAllStatusRows();
+        assertTrue(restarted.get(1L).isAvailable());
+    }
+}
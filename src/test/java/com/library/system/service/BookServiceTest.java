@@ -2,6 +2,10 @@ package com.library.system.service;
 
 import com.library.system.domain.Book;
 import com.library.system.domain.BookStatus;
+import com.library.system.dto.BookAvailability;
+import com.library.system.dto.BookDetailsView;
+import com.library.system.dto.BookListItem;
+import com.library.system.dto.BookListPage;
 import com.library.system.repository.BookRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -9,13 +13,19 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 
 import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -24,6 +34,15 @@ class BookServiceTest {
     @Mock
     private BookRepository bookRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private TransientFailureRetry transientFailureRetry;
+
+    @Mock
+    private AvailabilityProjection availabilityProjection;
+
     @InjectMocks
     private BookService bookService;
 
@@ -40,6 +59,9 @@ class BookServiceTest {
         testBook.setPublicationDate(LocalDate.of(2023, 1, 1));
         testBook.setDescription("Test Description");
         testBook.setStatus(BookStatus.AVAILABLE);
+
+        lenient().when(transientFailureRetry.inTransaction(any(), any()))
+            .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
     }
 
     @Test
@@ -71,6 +93,65 @@ class BookServiceTest {
         verify(bookRepository).findById(1L);
     }
 
+    @Test
+    void getBookDetails_BorrowedByOther_PatronCanReserve() {
+        // Given
+        when(bookRepository.findById(1L)).thenReturn(Optional.of(testBook));
+        when(availabilityProjection.get(1L)).thenReturn(
+            new BookAvailability(BookStatus.BORROWED, LocalDate.of(2024, 1, 15), 9L, List.of(8L), null));
+
+        // When
+        BookDetailsView details = bookService.getBookDetails(1L, 7L).orElseThrow();
+
+        // Then
+        assertEquals(testBook, details.book());
+        assertTrue(details.canReserve());
+        assertFalse(details.hasReservation());
+        assertEquals(1, details.reservationCount());
+        assertFalse(details.isAvailable());
+    }
+
+    @Test
+    void getBookDetails_PatronAlreadyWaiting_CannotReserveAgain() {
+        // Given
+        when(availabilityProjection.get(1L)).thenReturn(
+            new BookAvailability(BookStatus.BORROWED, LocalDate.of(2024, 1, 15), 9L, List.of(7L), null));
+
+        // When
+        BookDetailsView details = bookService.getBookDetails(testBook, 7L);
+
+        // Then
+        assertFalse(details.canReserve());
+        assertTrue(details.hasReservation());
+    }
+
+    @Test
+    void getBookDetails_Anonymous_CannotReserve() {
+        // Given
+        when(availabilityProjection.get(1L)).thenReturn(
+            new BookAvailability(BookStatus.BORROWED, LocalDate.of(2024, 1, 15), 9L, List.of(), null));
+
+        // When
+        BookDetailsView details = bookService.getBookDetails(testBook, null);
+
+        // Then
+        assertFalse(details.canReserve());
+        assertFalse(details.hasReservation());
+    }
+
+    @Test
+    void getBookVersion_ReadsVersionOnly() {
+        // Given
+        when(bookRepository.findVersionById(1L)).thenReturn(Optional.of(3L));
+
+        // When
+        Optional<Long> result = bookService.getBookVersion(1L);
+
+        // Then
+        assertEquals(Optional.of(3L), result);
+        verify(bookRepository, never()).findById(any());
+    }
+
     @Test
     void getBookById_NotFound() {
         // Given
@@ -143,6 +224,102 @@ class BookServiceTest {
         verify(bookRepository).findAll();
     }
 
+    @Test
+    void searchBookList_WithSearchTerm_ReadsListItemsOnly() {
+        // Given
+        BookListItem item = new BookListItem(1L, "978-1234567890", "Test Book", "Test Author",
+            "Test Publisher", LocalDate.of(2023, 1, 1), BookStatus.AVAILABLE);
+        when(bookRepository.searchListItems("test")).thenReturn(List.of(item));
+
+        // When
+        List<BookListItem> result = bookService.searchBookList(" test ");
+
+        // Then
+        assertEquals(List.of(item), result);
+        verify(bookRepository, never()).searchBooks(any());
+    }
+
+    @Test
+    void searchBookList_EmptySearchTerm_ListsAll() {
+        // Given
+        when(bookRepository.findAllListItems()).thenReturn(List.of());
+
+        // When
+        List<BookListItem> result = bookService.searchBookList("");
+
+        // Then
+        assertTrue(result.isEmpty());
+        verify(bookRepository, never()).findAll();
+    }
+
+    @Test
+    void searchBookPage_ReadsOnlyTheRequestedPage() {
+        // Given
+        BookListItem item = new BookListItem(1L, "978-1234567890", "Test Book", "Test Author",
+            "Test Publisher", LocalDate.of(2023, 1, 1), BookStatus.AVAILABLE);
+        when(bookRepository.searchListItemPage("test", PageRequest.of(2, 10)))
+            .thenReturn(new SliceImpl<>(List.of(item), PageRequest.of(2, 10), true));
+
+        // When
+        BookListPage result = bookService.searchBookPage(" test ", 2, 10);
+
+        // Then
+        assertEquals(List.of(item), result.books());
+        assertEquals(2, result.page());
+        assertTrue(result.hasNext());
+        verify(bookRepository, never()).searchListItems(any());
+    }
+
+    @Test
+    void searchBookPage_EmptySearchTerm_PagesTheCatalog() {
+        // Given
+        when(bookRepository.findListItemPage(PageRequest.of(0, 20)))
+            .thenReturn(new SliceImpl<>(List.of(), PageRequest.of(0, 20), false));
+
+        // When
+        BookListPage result = bookService.searchBookPage(null, 0, 20);
+
+        // Then
+        assertTrue(result.books().isEmpty());
+        assertFalse(result.hasNext());
+        verify(bookRepository, never()).findAllListItems();
+    }
+
+    @Test
+    void advancedSearchList_ConvertsYearsToDateRange() {
+        // Given
+        when(bookRepository.advancedSearchListItems("java", null, null, null, BookStatus.AVAILABLE,
+            LocalDate.of(2000, 1, 1), LocalDate.of(2010, 12, 31))).thenReturn(List.of());
+
+        // When
+        List<BookListItem> result = bookService.advancedSearchList("java", null, null, null,
+            BookStatus.AVAILABLE, 2000, 2010);
+
+        // Then
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    void streamBookList_UsesLiveStatusFromProjection() {
+        // Given
+        BookListItem item = new BookListItem(1L, "978-1234567890", "Test Book", "Test Author",
+            "Test Publisher", LocalDate.of(2023, 1, 1), BookStatus.AVAILABLE);
+        when(bookRepository.streamListItems("test")).thenReturn(Stream.of(item));
+        when(availabilityProjection.get(1L)).thenReturn(
+            new BookAvailability(BookStatus.BORROWED, LocalDate.of(2024, 1, 15), 9L, List.of(), null));
+
+        // When
+        List<BookListItem> result;
+        try (Stream<BookListItem> rows = bookService.streamBookList(" test ")) {
+            result = rows.toList();
+        }
+
+        // Then
+        assertEquals(1, result.size());
+        assertEquals(BookStatus.BORROWED, result.get(0).status());
+        assertEquals("Test Book", result.get(0).title());
+    }
+
     @Test
     void getAvailableBooks() {
         // Given
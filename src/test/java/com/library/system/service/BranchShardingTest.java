@@ -0,0 +1,294 @@
+package com.library.system.service;
+
+import com.library.system.config.BranchContext;
+import com.library.system.domain.Book;
+import com.library.system.domain.BookStatus;
+import com.library.system.domain.Loan;
+import com.library.system.domain.LoanStatus;
+import com.library.system.domain.Reservation;
+import com.library.system.domain.ReservationStatus;
+import com.library.system.domain.User;
+import com.library.system.dto.BookListItem;
+import com.library.system.dto.BookListPage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Three branches, each in its own SQLite file. The context is closed afterwards so the
+ * branch configuration does not leak into other tests.
+ */
+@SpringBootTest
+@DirtiesContext
+class BranchShardingTest {
+
+    private static final Logger log = LoggerFactory.getLogger(BranchShardingTest.class);
+
+    private static final List<String> BRANCHES = List.of("MAIN", "NORTH", "SOUTH");
+
+    @TempDir
+    static Path tempDir;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + tempDir.resolve("library.db") + "?journal_mode=WAL&busy_timeout=10000");
+        registry.add("library.sharding.enabled", () -> "true");
+        registry.add("library.sharding.branches", () -> String.join(",", BRANCHES));
+        registry.add("library.sharding.directory", () -> tempDir.resolve("shards").toString());
+        registry.add("library.event-log.directory", () -> tempDir.resolve("event-log").toString());
+        registry.add("library.availability.snapshot.file", () -> tempDir.resolve("availability.snapshot").toString());
+        registry.add("library.notifications.file-drop.directory", () -> tempDir.resolve("mail-drop").toString());
+        registry.add("library.backup.directory", () -> tempDir.resolve("backups").toString());
+        registry.add("library.startup.reminder-run", () -> "false");
+    }
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private NotificationDigestService notificationDigestService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private static final AtomicLong isbnSequence = new AtomicLong();
+
+    private User patron;
+
+    @BeforeEach
+    void setUp() {
+        patron = newPatron();
+    }
+
+    private User newPatron() {
+        String name = "patron-" + UUID.randomUUID();
+        return userService.createMember(name, "secret", "Patron", name + "@example.com");
+    }
+
+    private Book newBook(String branch, String title) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setAuthor("Test Author");
+        book.setIsbn("BR-" + isbnSequence.incrementAndGet());
+        book.setStatus(BookStatus.AVAILABLE);
+        book.setBranch(branch);
+        return bookService.saveBook(book);
+    }
+
+    private int countIn(String branch, String sql, Object... args) {
+        return BranchContext.call(branch, () -> jdbcTemplate.queryForObject(sql, Integer.class, args));
+    }
+
+    @Test
+    void borrowBook_LandsInTheShardOfTheBooksBranch() {
+        // Given
+        Book book = newBook("NORTH", "North Only " + UUID.randomUUID());
+
+        // When
+        Loan loan = loanService.borrowBook(patron.getId(), book.getId());
+
+        // Then
+        assertTrue(Files.exists(tempDir.resolve("shards").resolve("library-north.db")));
+        assertEquals("NORTH", BranchContext.branchOf(book.getId()));
+        assertEquals("NORTH", BranchContext.branchOf(loan.getId()));
+        assertEquals(1, countIn("NORTH", "SELECT COUNT(*) FROM loans WHERE id = ?", loan.getId()));
+        assertEquals(0, countIn("MAIN", "SELECT COUNT(*) FROM loans WHERE id = ?", loan.getId()));
+        assertEquals(BookStatus.BORROWED, bookService.getBookById(book.getId()).orElseThrow().getStatus());
+        assertEquals(1, loanService.getActiveLoansByUser(patron).size());
+    }
+
+    @Test
+    void saveBook_TakesItsIdFromTheShardsSequence() {
+        // When
+        Book first = newBook("SOUTH", "Sequenced " + UUID.randomUUID());
+        Book second = newBook("SOUTH", "Sequenced " + UUID.randomUUID());
+
+        // Then
+        assertEquals("SOUTH", BranchContext.branchOf(first.getId()));
+        assertEquals(first.getId() + 1, second.getId());
+        assertEquals(second.getId(), BranchContext.call("SOUTH", () -> jdbcTemplate.queryForObject(
+            "SELECT last_id FROM branch_id_sequences WHERE name = 'books'", Long.class)));
+    }
+
+    @Test
+    void searchBooks_MergesEveryBranch() {
+        // Given
+        String term = "Merged " + UUID.randomUUID();
+        BRANCHES.forEach(branch -> newBook(branch, term + " at " + branch));
+
+        // When
+        List<Book> found = bookService.searchBooks(term);
+
+        // Then
+        assertEquals(BRANCHES, found.stream().map(Book::getBranch).sorted().toList());
+    }
+
+    @Test
+    void searchBookPage_PagesTheMergedResultsInTitleOrder() {
+        // Given
+        String term = "Paged " + UUID.randomUUID();
+        BRANCHES.forEach(branch -> newBook(branch, term + " at " + branch));
+
+        // When
+        BookListPage first = bookService.searchBookPage(term, 0, 2);
+        BookListPage second = bookService.searchBookPage(term, 1, 2);
+
+        // Then
+        assertEquals(List.of(term + " at MAIN", term + " at NORTH"), first.books().stream().map(BookListItem::title).toList());
+        assertTrue(first.hasNext());
+        assertEquals(List.of(term + " at SOUTH"), second.books().stream().map(BookListItem::title).toList());
+        assertFalse(second.hasNext());
+    }
+
+    @Test
+    void reserveBook_ForAnotherBranch_GoesInTransitUntilReceived() {
+        // Given
+        Book book = newBook("NORTH", "Transfer " + UUID.randomUUID());
+        Loan loan = loanService.borrowBook(patron.getId(), book.getId());
+        User waiting = newPatron();
+        Reservation hold = reservationService.reserveBook(waiting, book, "SOUTH");
+
+        // When
+        loanService.returnBook(loan.getId());
+
+        // Then
+        assertEquals(ReservationStatus.IN_TRANSIT, reservationService.getReservationById(hold.getId()).orElseThrow().getStatus());
+        assertTrue(reservationService.getIncomingTransfers("SOUTH").stream().anyMatch(r -> r.getId().equals(hold.getId())));
+
+        // When
+        Reservation received = reservationService.receiveTransfer(hold.getId(), "SOUTH");
+
+        // Then
+        assertEquals(ReservationStatus.READY_FOR_PICKUP, received.getStatus());
+        assertNotNull(received.getExpiresAt());
+        assertTrue(reservationService.getIncomingTransfers("SOUTH").stream().noneMatch(r -> r.getId().equals(hold.getId())));
+        assertThrows(IllegalStateException.class, () -> reservationService.receiveTransfer(hold.getId(), "SOUTH"));
+    }
+
+    @Test
+    void borrowBook_OnePatronAtEveryBranchAtOnce_StaysWithinTheLoanLimit() throws Exception {
+        // Given
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (String branch : BRANCHES) {
+            for (int i = 0; i < 3; i++) {
+                Book book = newBook(branch, "Limit " + UUID.randomUUID());
+                tasks.add(() -> {
+                    try {
+                        loanService.borrowBook(patron.getId(), book.getId());
+                        return true;
+                    } catch (CirculationRefusedException ex) {
+                        return false;
+                    }
+                });
+            }
+        }
+
+        // When
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        int borrowed = 0;
+        try {
+            for (Future<Boolean> result : executor.invokeAll(tasks)) {
+                borrowed += result.get() ? 1 : 0;
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Then
+        assertEquals(5, borrowed);
+        assertEquals(5, loanService.getActiveLoansByUser(patron).size());
+    }
+
+    @Test
+    void sendDueSoonDigests_LoansAtSeveralBranches_OneMessagePerPatron() {
+        // Given
+        for (String branch : BRANCHES) {
+            loanService.borrowBook(patron.getId(), newBook(branch, "Digest " + UUID.randomUUID()).getId());
+        }
+        LocalDate due = LocalDate.now().plusDays(14);
+
+        // When
+        notificationDigestService.sendDueSoonDigests(due, due, List.of(LoanStatus.ACTIVE));
+
+        // Then
+        int messages = BRANCHES.stream()
+            .mapToInt(branch -> countIn(branch, "SELECT COUNT(*) FROM notification_outbox WHERE recipient = ?", patron.getEmail()))
+            .sum();
+        assertEquals(1, messages);
+        for (String branch : BRANCHES) {
+            assertEquals(0, countIn(branch, "SELECT COUNT(*) FROM loans WHERE user_id = ? AND reminder_sent_at IS NULL", patron.getId()));
+        }
+    }
+
+    @Test
+    void borrowBook_ManyThreadsAcrossBranches_AllSucceed() throws Exception {
+        // Given
+        int perThread = 5;
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        List<User> patrons = new ArrayList<>();
+        for (int i = 0; i < BRANCHES.size() * 2; i++) {
+            User threadPatron = newPatron();
+            String branch = BRANCHES.get(i % BRANCHES.size());
+            List<Book> books = new ArrayList<>();
+            for (int j = 0; j < perThread; j++) {
+                books.add(newBook(branch, "Throughput " + UUID.randomUUID()));
+            }
+            patrons.add(threadPatron);
+            tasks.add(() -> {
+                books.forEach(book -> loanService.borrowBook(threadPatron.getId(), book.getId()));
+                return true;
+            });
+        }
+
+        // When
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        long start = System.nanoTime();
+        try {
+            for (Future<Boolean> result : executor.invokeAll(tasks)) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+
+        // Then
+        int checkouts = tasks.size() * perThread;
+        log.info("Sharded checkouts: {} in {}ms ({} per second) across {} branches",
+            checkouts, elapsedMillis, checkouts * 1000L / elapsedMillis, BRANCHES.size());
+        for (User threadPatron : patrons) {
+            assertEquals(perThread, loanService.getActiveLoansByUser(threadPatron).size());
+        }
+    }
+}
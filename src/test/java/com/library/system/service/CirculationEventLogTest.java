@@ -0,0 +1,125 @@
+package com.library.system.service;
+
+import com.library.system.domain.BookStatus;
+import com.library.system.domain.CirculationEvent;
+import com.library.system.domain.CirculationEventType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CirculationEventLogTest {
+
+    @TempDir
+    Path tempDir;
+
+    private CirculationEventLog open(DataSize segmentSize) throws IOException {
+        CirculationEventLog eventLog = new CirculationEventLog(tempDir.toString(), segmentSize);
+        eventLog.open();
+        return eventLog;
+    }
+
+    private CirculationEvent borrowed(long bookId) {
+        return new CirculationEvent(CirculationEventType.LOAN_BORROWED, bookId, 10L, 100L + bookId,
+            BookStatus.BORROWED, LocalDate.now().plusDays(14), Instant.now().truncatedTo(ChronoUnit.MILLIS));
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".log")).count();
+        }
+    }
+
+    @Test
+    void replay_ReturnsEventsAfterSequenceAcrossRestart() throws IOException {
+        // Given
+        CirculationEventLog eventLog = open(DataSize.ofMegabytes(4));
+        List<CirculationEvent> dispatched = new ArrayList<>();
+        eventLog.subscribe("test", dispatched::add);
+        List<CirculationEvent> events = List.of(borrowed(1L), borrowed(2L),
+            new CirculationEvent(CirculationEventType.HOLD_PLACED, 3L, 11L, null, null, null, Instant.now().truncatedTo(ChronoUnit.MILLIS)));
+        events.forEach(eventLog::on);
+        eventLog.close();
+
+        // When
+        CirculationEventLog reopened = open(DataSize.ofMegabytes(4));
+        List<CirculationEvent> replayed = new ArrayList<>();
+        long count = reopened.replay(1L, replayed::add);
+
+        // Then
+        assertEquals(events, dispatched);
+        assertEquals(3L, reopened.getLastSequence());
+        assertEquals(2L, count);
+        assertEquals(events.subList(1, 3), replayed);
+        assertTrue(reopened.canReplayFrom(1L));
+    }
+
+    @Test
+    void compact_DeletesSegmentsCoveredByEveryCheckpoint() throws IOException {
+        // Given: segments small enough to hold two records each
+        CirculationEventLog eventLog = open(DataSize.ofBytes(120));
+        eventLog.subscribe("first", event -> { });
+        eventLog.subscribe("second", event -> { });
+        for (long bookId = 1; bookId <= 5; bookId++) {
+            eventLog.on(borrowed(bookId));
+        }
+        eventLog.checkpointed("first", 4L);
+
+        // When
+        int withOneCheckpoint = eventLog.compact();
+        eventLog.checkpointed("second", 2L);
+        int withBoth = eventLog.compact();
+
+        // Then
+        assertEquals(0, withOneCheckpoint);
+        assertEquals(1, withBoth);
+        assertFalse(eventLog.canReplayFrom(1L));
+        assertTrue(eventLog.canReplayFrom(2L));
+        List<CirculationEvent> replayed = new ArrayList<>();
+        eventLog.replay(2L, replayed::add);
+        assertEquals(3, replayed.size());
+        assertEquals(3, segmentCount());
+    }
+
+    @Test
+    void open_TruncatesTornRecordAndDistrustsUncleanLog() throws IOException {
+        // Given: the process died halfway through writing the third record
+        CirculationEventLog eventLog = open(DataSize.ofMegabytes(4));
+        eventLog.on(borrowed(1L));
+        eventLog.on(borrowed(2L));
+        Path segment;
+        try (Stream<Path> files = Files.list(tempDir)) {
+            segment = files.filter(path -> path.getFileName().toString().endsWith(".log")).findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 58, 1, 2, 3}));
+        }
+        long sizeBeforeTear = Files.size(segment) - 7;
+
+        // When
+        CirculationEventLog reopened = open(DataSize.ofMegabytes(4));
+        reopened.on(borrowed(3L));
+
+        // Then
+        assertEquals(3L, reopened.getLastSequence());
+        assertEquals(sizeBeforeTear * 3 / 2, Files.size(segment));
+        assertFalse(reopened.canReplayFrom(2L));
+        List<CirculationEvent> replayed = new ArrayList<>();
+        reopened.replay(0L, replayed::add);
+        assertEquals(List.of(1L, 2L, 3L), replayed.stream().map(CirculationEvent::bookId).toList());
+    }
+}
@@ -0,0 +1,164 @@
+package com.library.system.service;
+
+import com.library.system.domain.Book;
+import com.library.system.domain.BookStatus;
+import com.library.system.domain.LoanStatus;
+import com.library.system.domain.User;
+import com.library.system.domain.UserRole;
+import com.library.system.repository.BookRepository;
+import com.library.system.repository.LoanRepository;
+import com.library.system.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checkouts from many threads at once against the embedded H2 backend. The same test runs
+ * against any backend profile, and logs the throughput it reached for comparison.
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+class ConcurrentCheckoutTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ConcurrentCheckoutTest.class);
+
+    private static final int THREADS = 8;
+
+    @TempDir
+    static Path tempDir;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> "jdbc:h2:mem:checkout;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1");
+        registry.add("library.event-log.directory", () -> tempDir.resolve("event-log").toString());
+        registry.add("library.availability.snapshot.file", () -> tempDir.resolve("availability.snapshot").toString());
+        registry.add("library.notifications.file-drop.directory", () -> tempDir.resolve("mail-drop").toString());
+        registry.add("library.backup.directory", () -> tempDir.resolve("backups").toString());
+        registry.add("library.startup.reminder-run", () -> "false");
+    }
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    private static final AtomicLong isbnSequence = new AtomicLong();
+
+    private final List<User> patrons = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        patrons.clear();
+        for (int i = 0; i < THREADS; i++) {
+            String name = "patron-" + UUID.randomUUID();
+            patrons.add(userRepository.save(new User(name, "secret", "Patron " + i, name + "@example.com", UserRole.MEMBER)));
+        }
+    }
+
+    private Book newBook() {
+        Book book = new Book();
+        book.setTitle("Concurrency " + UUID.randomUUID());
+        book.setAuthor("Test Author");
+        book.setIsbn("CC-" + isbnSequence.incrementAndGet());
+        book.setStatus(BookStatus.AVAILABLE);
+        return bookRepository.save(book);
+    }
+
+    private List<Future<Boolean>> runConcurrently(List<Callable<Boolean>> tasks) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            return executor.invokeAll(tasks);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void borrowBook_DistinctBooksFromManyThreads_AllSucceed() throws Exception {
+        // Given
+        int perThread = 5;
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (User patron : patrons) {
+            List<Book> books = new ArrayList<>();
+            for (int i = 0; i < perThread; i++) {
+                books.add(newBook());
+            }
+            tasks.add(() -> {
+                books.forEach(book -> loanService.borrowBook(patron.getId(), book.getId()));
+                return true;
+            });
+        }
+
+        // When
+        long start = System.nanoTime();
+        List<Future<Boolean>> results = runConcurrently(tasks);
+        for (Future<Boolean> result : results) {
+            result.get();
+        }
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+
+        // Then
+        int checkouts = THREADS * perThread;
+        log.info("Concurrent checkouts: {} in {}ms ({} per second) on {} threads",
+            checkouts, elapsedMillis, checkouts * 1000L / elapsedMillis, THREADS);
+        for (User patron : patrons) {
+            assertEquals(perThread, loanRepository.countActiveLoansByUser(patron));
+        }
+    }
+
+    @Test
+    void borrowBook_SameBookFromManyThreads_OnlyOneSucceeds() throws Exception {
+        // Given
+        Book book = newBook();
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (User patron : patrons) {
+            tasks.add(() -> {
+                try {
+                    loanService.borrowBook(patron.getId(), book.getId());
+                    return true;
+                } catch (RuntimeException ex) {
+                    return false;
+                }
+            });
+        }
+
+        // When
+        int succeeded = 0;
+        for (Future<Boolean> result : runConcurrently(tasks)) {
+            succeeded += result.get() ? 1 : 0;
+        }
+
+        // Then
+        assertEquals(1, succeeded);
+        assertEquals(BookStatus.BORROWED, bookRepository.findById(book.getId()).orElseThrow().getStatus());
+        assertEquals(1, loanRepository.findAll().stream()
+            .filter(loan -> loan.getBook().getId().equals(book.getId()) && loan.getStatus() == LoanStatus.ACTIVE)
+            .count());
+    }
+}
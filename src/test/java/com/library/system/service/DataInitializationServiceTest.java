@@ -0,0 +1,144 @@
+package com.library.system.service;
+
+import com.library.system.domain.AppMetadata;
+import com.library.system.domain.Book;
+import com.library.system.domain.BookStatus;
+import com.library.system.domain.Loan;
+import com.library.system.domain.LoanStatus;
+import com.library.system.domain.User;
+import com.library.system.domain.UserRole;
+import com.library.system.repository.AppMetadataRepository;
+import com.library.system.repository.LoanRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DataInitializationServiceTest {
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private BookService bookService;
+
+    @Mock
+    private LoanRepository loanRepository;
+
+    @Mock
+    private AppMetadataRepository appMetadataRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private DataInitializationService dataInitializationService;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void initialize_FreshDatabase_InsertsMissingRowsInBatchesAndWritesMarker() {
+        // Given
+        when(appMetadataRepository.findById(DataInitializationService.SEED_VERSION_KEY)).thenReturn(Optional.empty());
+        when(userService.findExistingUsernames(anyCollection())).thenReturn(List.of("admin"));
+        when(bookService.findExistingIsbns(anyCollection())).thenReturn(List.of());
+        when(userService.getUserByUsername("john.doe")).thenReturn(Optional.empty());
+
+        // When
+        dataInitializationService.initialize();
+
+        // Then
+        ArgumentCaptor<List<User>> users = ArgumentCaptor.forClass(List.class);
+        verify(userService).saveUsers(users.capture());
+        assertEquals(4, users.getValue().size());
+        assertTrue(users.getValue().stream().noneMatch(user -> user.getUsername().equals("admin")));
+
+        ArgumentCaptor<List<Book>> books = ArgumentCaptor.forClass(List.class);
+        verify(bookService).saveBooks(books.capture());
+        assertEquals(books.getValue().size(), books.getValue().stream().map(Book::getIsbn).distinct().count());
+
+        verify(userService, never()).existsByUsername(any());
+        verify(bookService, never()).getBookByIsbn(any());
+        verify(appMetadataRepository).save(argThat(marker ->
+            marker.getKey().equals(DataInitializationService.SEED_VERSION_KEY)
+                && marker.getValue().equals(DataInitializationService.SEED_VERSION)));
+    }
+
+    @Test
+    void initialize_MarkerPresent_SkipsSeeding() {
+        // Given
+        when(appMetadataRepository.findById(DataInitializationService.SEED_VERSION_KEY))
+            .thenReturn(Optional.of(new AppMetadata(DataInitializationService.SEED_VERSION_KEY, DataInitializationService.SEED_VERSION)));
+        when(userService.getUserByUsername("john.doe")).thenReturn(Optional.empty());
+
+        // When
+        dataInitializationService.initialize();
+
+        // Then
+        verify(userService, never()).findExistingUsernames(anyCollection());
+        verify(bookService, never()).findExistingIsbns(anyCollection());
+        verify(userService, never()).saveUsers(anyList());
+        verify(bookService, never()).saveBooks(anyList());
+        verify(appMetadataRepository, never()).save(any());
+    }
+
+    @Test
+    void initialize_SampleLoanAlreadyDueTomorrow_ChangesAndPublishesNothing() {
+        // Given
+        when(appMetadataRepository.findById(DataInitializationService.SEED_VERSION_KEY))
+            .thenReturn(Optional.of(new AppMetadata(DataInitializationService.SEED_VERSION_KEY, DataInitializationService.SEED_VERSION)));
+        User user = new User("john.doe", "password123", "John Doe", "john.doe@email.com", UserRole.MEMBER);
+        Book book = new Book("978-0134685991", "Effective Java", "Joshua Bloch", "Addison-Wesley", LocalDate.of(2017, 12, 27), null);
+        book.setStatus(BookStatus.BORROWED);
+        Loan loan = new Loan(user, book, LocalDate.now(), LocalDate.now().plusDays(1));
+        loan.setStatus(LoanStatus.ACTIVE);
+        when(userService.getUserByUsername("john.doe")).thenReturn(Optional.of(user));
+        when(bookService.getBookByIsbn("978-0134685991")).thenReturn(Optional.of(book));
+        when(loanRepository.findByUserAndBookAndStatus(user, book, LoanStatus.ACTIVE)).thenReturn(Optional.of(loan));
+
+        // When
+        dataInitializationService.initialize();
+
+        // Then
+        verify(loanRepository, never()).save(any());
+        verify(bookService, never()).saveBookStatus(any());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void initialize_SampleLoanReminded_ResetsItWithoutPublishing() {
+        // Given
+        when(appMetadataRepository.findById(DataInitializationService.SEED_VERSION_KEY))
+            .thenReturn(Optional.of(new AppMetadata(DataInitializationService.SEED_VERSION_KEY, DataInitializationService.SEED_VERSION)));
+        User user = new User("john.doe", "password123", "John Doe", "john.doe@email.com", UserRole.MEMBER);
+        Book book = new Book("978-0134685991", "Effective Java", "Joshua Bloch", "Addison-Wesley", LocalDate.of(2017, 12, 27), null);
+        book.setStatus(BookStatus.BORROWED);
+        Loan loan = new Loan(user, book, LocalDate.now().minusDays(13), LocalDate.now().minusDays(1));
+        loan.setStatus(LoanStatus.ACTIVE);
+        loan.setReminderSentAt(LocalDateTime.now().minusDays(2));
+        when(userService.getUserByUsername("john.doe")).thenReturn(Optional.of(user));
+        when(bookService.getBookByIsbn("978-0134685991")).thenReturn(Optional.of(book));
+        when(loanRepository.findByUserAndBookAndStatus(user, book, LoanStatus.ACTIVE)).thenReturn(Optional.of(loan));
+
+        // When
+        dataInitializationService.initialize();
+
+        // Then
+        verify(loanRepository).save(loan);
+        assertEquals(LocalDate.now().plusDays(1), loan.getDueDate());
+        assertNull(loan.getReminderSentAt());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+}
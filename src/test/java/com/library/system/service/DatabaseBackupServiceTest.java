@@ -0,0 +1,136 @@
+package com.library.system.service;
+
+import com.library.system.dto.BackupResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseBackupServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private SimpleMeterRegistry meterRegistry;
+    private DatabaseBackupService databaseBackupService;
+
+    @BeforeEach
+    void setUp() {
+        String url = "jdbc:sqlite:" + tempDir.resolve("library.db") + "?journal_mode=WAL";
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(url));
+        jdbcTemplate.execute("CREATE TABLE books (id integer primary key, title varchar(255))");
+        for (int i = 1; i <= 500; i++) {
+            jdbcTemplate.update("INSERT INTO books (id, title) VALUES (?, ?)", i, "Book " + i);
+        }
+
+        meterRegistry = new SimpleMeterRegistry();
+        databaseBackupService = new DatabaseBackupService(
+            Map.of("MAIN", url), meterRegistry, tempDir.resolve("backups").toString(), 2, 0, 2);
+    }
+
+    private static String createShard(Path file, int books) {
+        String url = "jdbc:sqlite:" + file + "?journal_mode=WAL";
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(url));
+        jdbcTemplate.execute("CREATE TABLE books (id integer primary key, title varchar(255))");
+        for (int i = 1; i <= books; i++) {
+            jdbcTemplate.update("INSERT INTO books (id, title) VALUES (?, ?)", i, "Book " + i);
+        }
+        return url;
+    }
+
+    @Test
+    void backup_CopiesLiveDatabaseAndVerifiesIt() {
+        // When
+        BackupResult result = databaseBackupService.backup().get(0);
+
+        // Then
+        assertTrue(result.verified());
+        assertEquals("ok", result.integrity());
+        assertTrue(result.pages() > 2);
+        JdbcTemplate snapshot = new JdbcTemplate(new DriverManagerDataSource(
+            "jdbc:sqlite:" + tempDir.resolve("backups").resolve(result.file())));
+        assertEquals(500, snapshot.queryForObject("SELECT COUNT(*) FROM books", Integer.class));
+        assertEquals(1.0, meterRegistry.get("library.backup.runs").tag("outcome", "success").counter().count());
+        assertEquals(1L, meterRegistry.get("library.backup.duration").timer().count());
+    }
+
+    @Test
+    void backup_KeepsOnlyConfiguredNumberOfSnapshots() throws InterruptedException {
+        // Given
+        databaseBackupService.backup();
+        Thread.sleep(1100);
+        databaseBackupService.backup();
+        Thread.sleep(1100);
+
+        // When
+        BackupResult newest = databaseBackupService.backup().get(0);
+
+        // Then
+        List<String> backups = databaseBackupService.listBackups();
+        assertEquals(2, backups.size());
+        assertEquals(newest.file(), backups.get(0));
+    }
+
+    @Test
+    void backup_WithShards_SnapshotsEveryBranchAndKeepsEachBranchsOwnHistory() throws InterruptedException {
+        // Given
+        Map<String, String> urls = new LinkedHashMap<>();
+        urls.put("MAIN", createShard(tempDir.resolve("main.db"), 10));
+        urls.put("NORTH", createShard(tempDir.resolve("library-north.db"), 20));
+        DatabaseBackupService shardedBackupService = new DatabaseBackupService(
+            urls, meterRegistry, tempDir.resolve("sharded-backups").toString(), 2, 0, 1);
+        shardedBackupService.backup();
+        Thread.sleep(1100);
+
+        // When
+        List<BackupResult> results = shardedBackupService.backup();
+
+        // Then
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).file().matches("library-\\d{8}-\\d{6}\\.db"));
+        assertTrue(results.get(1).file().startsWith("library-north-"));
+        assertTrue(results.stream().allMatch(BackupResult::verified));
+        JdbcTemplate north = new JdbcTemplate(new DriverManagerDataSource(
+            "jdbc:sqlite:" + tempDir.resolve("sharded-backups").resolve(results.get(1).file())));
+        assertEquals(20, north.queryForObject("SELECT COUNT(*) FROM books", Integer.class));
+        assertEquals(results.stream().map(BackupResult::file).toList(), shardedBackupService.listBackups());
+    }
+
+    @Test
+    void verify_ReportsCorruptSnapshot() throws IOException {
+        // Given
+        BackupResult result = databaseBackupService.backup().get(0);
+        try (RandomAccessFile file = new RandomAccessFile(tempDir.resolve("backups").resolve(result.file()).toFile(), "rw")) {
+            file.seek(file.length() - 4096);
+            file.write(new byte[4096]);
+        }
+
+        // When
+        BackupResult verification = databaseBackupService.verify(result.file());
+
+        // Then
+        assertFalse(verification.verified());
+        assertNotEquals("ok", verification.integrity());
+    }
+
+    @Test
+    void verify_UnknownFile_ThrowsNotFound() {
+        // Given
+        databaseBackupService.backup();
+
+        // When / Then
+        assertThrows(NoSuchElementException.class, () -> databaseBackupService.verify("library-19700101-000000.db"));
+    }
+}
@@ -0,0 +1,114 @@
+package com.library.system.service;
+
+import com.library.system.domain.IdempotentResponse;
+import com.library.system.repository.IdempotentResponseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceTest {
+
+    @Mock
+    private IdempotentResponseRepository repository;
+
+    private IdempotencyService idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new IdempotencyService(repository, 2, Duration.ofHours(24));
+    }
+
+    private IdempotentResponse response(String key) {
+        return new IdempotentResponse(IdempotencyService.scope("john", key), "/loans/borrow?bookId=1",
+            "/books/1", "Book borrowed successfully!", null);
+    }
+
+    @Test
+    void find_AfterComplete_AnswersFromMemory() {
+        // Given
+        IdempotentResponse stored = response("k1");
+        idempotencyService.complete(stored);
+
+        // When
+        Optional<IdempotentResponse> result = idempotencyService.find(stored.getScopedKey());
+
+        // Then
+        assertEquals(Optional.of(stored), result);
+        verify(repository).save(stored);
+        verify(repository, never()).findById(any());
+    }
+
+    @Test
+    void find_EvictedFromMemory_FallsBackToStore() {
+        // Given
+        IdempotentResponse first = response("k1");
+        idempotencyService.complete(first);
+        idempotencyService.complete(response("k2"));
+        idempotencyService.complete(response("k3"));
+        when(repository.findById(first.getScopedKey())).thenReturn(Optional.of(first));
+
+        // When
+        Optional<IdempotentResponse> result = idempotencyService.find(first.getScopedKey());
+
+        // Then
+        assertEquals(Optional.of(first), result);
+        verify(repository).findById(first.getScopedKey());
+    }
+
+    @Test
+    void find_Expired_ReturnsEmpty() {
+        // Given
+        IdempotentResponse stored = response("k1");
+        stored.setCreatedAt(LocalDateTime.now().minusDays(2));
+        when(repository.findById(stored.getScopedKey())).thenReturn(Optional.of(stored));
+
+        // When
+        Optional<IdempotentResponse> result = idempotencyService.find(stored.getScopedKey());
+
+        // Then
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    void begin_WhileInFlight_ReturnsFalseUntilReleased() {
+        // Given
+        String key = IdempotencyService.scope("john", "k1");
+        assertTrue(idempotencyService.begin(key));
+
+        // When
+        boolean second = idempotencyService.begin(key);
+        idempotencyService.abandon(key);
+        boolean afterAbandon = idempotencyService.begin(key);
+
+        // Then
+        assertFalse(second);
+        assertTrue(afterAbandon);
+    }
+
+    @Test
+    void complete_StoreFails_StillAnswersFromMemory() {
+        // Given
+        IdempotentResponse stored = response("k1");
+        when(repository.save(stored)).thenThrow(new DataAccessResourceFailureException("database is locked"));
+        idempotencyService.begin(stored.getScopedKey());
+
+        // When
+        idempotencyService.complete(stored);
+
+        // Then
+        assertEquals(Optional.of(stored), idempotencyService.find(stored.getScopedKey()));
+        assertTrue(idempotencyService.begin(stored.getScopedKey()));
+    }
+}
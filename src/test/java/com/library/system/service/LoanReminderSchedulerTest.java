@@ -0,0 +1,128 @@
+package com.library.system.service;
+
+import com.library.system.domain.*;
+import com.library.system.repository.LoanRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LoanReminderSchedulerTest {
+
+    @Mock
+    private LoanRepository loanRepository;
+
+    @Mock
+    private NotificationOutboxService notificationOutboxService;
+
+    @Mock
+    private NotificationDigestService notificationDigestService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private User testUser;
+    private Book testBook;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+
+        testUser = new User();
+        testUser.setId(1L);
+        testUser.setFullName("Test User");
+        testUser.setEmail("test@example.com");
+        testUser.setRole(UserRole.MEMBER);
+
+        testBook = new Book();
+        testBook.setId(1L);
+        testBook.setTitle("Test Book");
+    }
+
+    private Loan loan(long id) {
+        Loan loan = new Loan(testUser, testBook, LocalDate.now(), LocalDate.now().plusDays(1));
+        loan.setId(id);
+        return loan;
+    }
+
+    @Test
+    void sendDueSoonReminders_SingleTransaction_MarksAllLoans() {
+        // Given
+        LoanReminderScheduler scheduler = new LoanReminderScheduler(loanRepository, notificationOutboxService, notificationDigestService, transactionManager, false, 2);
+        List<Loan> loans = List.of(loan(1L), loan(2L), loan(3L));
+        when(loanRepository.findDueSoonLoansWithoutReminder(any(), any(), anyList())).thenReturn(loans);
+
+        // When
+        scheduler.sendDueSoonReminders();
+
+        // Then
+        loans.forEach(loan -> assertNotNull(loan.getReminderSentAt()));
+        verify(notificationOutboxService, times(3)).enqueueDueSoonReminder(any(Loan.class));
+        verify(loanRepository).saveAll(loans);
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void sendDueSoonReminders_Chunked_CommitsEachPageAndAdvancesCursor() {
+        // Given
+        LoanReminderScheduler scheduler = new LoanReminderScheduler(loanRepository, notificationOutboxService, notificationDigestService, transactionManager, true, 2);
+        when(loanRepository.findDueSoonLoansWithoutReminderAfter(eq(0L), any(), any(), anyList(), eq(Limit.of(2))))
+            .thenReturn(List.of(loan(1L), loan(4L)));
+        when(loanRepository.findDueSoonLoansWithoutReminderAfter(eq(4L), any(), any(), anyList(), eq(Limit.of(2))))
+            .thenReturn(List.of(loan(7L)));
+
+        // When
+        scheduler.sendDueSoonReminders();
+
+        // Then
+        verify(loanRepository).markRemindersSent(eq(List.of(1L, 4L)), any());
+        verify(loanRepository).markRemindersSent(eq(List.of(7L)), any());
+        verify(notificationOutboxService, times(3)).enqueueDueSoonReminder(any(Loan.class));
+        verify(loanRepository, never()).findDueSoonLoansWithoutReminder(any(), any(), anyList());
+        verify(loanRepository, never()).saveAll(anyList());
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    void sendDueSoonReminders_Chunked_NothingDue() {
+        // Given
+        LoanReminderScheduler scheduler = new LoanReminderScheduler(loanRepository, notificationOutboxService, notificationDigestService, transactionManager, true, 2);
+        when(loanRepository.findDueSoonLoansWithoutReminderAfter(eq(0L), any(), any(), anyList(), any()))
+            .thenReturn(List.of());
+
+        // When
+        scheduler.sendDueSoonReminders();
+
+        // Then
+        verify(loanRepository, never()).markRemindersSent(anyList(), any());
+        verify(notificationOutboxService, never()).enqueueDueSoonReminder(any());
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    void sendDueSoonReminders_DigestsEnabled_DelegatesToDigestService() {
+        // Given
+        LoanReminderScheduler scheduler = new LoanReminderScheduler(loanRepository, notificationOutboxService, notificationDigestService, transactionManager, true, 2);
+        when(notificationDigestService.isEnabled()).thenReturn(true);
+
+        // When
+        scheduler.sendDueSoonReminders();
+
+        // Then
+        verify(notificationDigestService).sendDueSoonDigests(
+            LocalDate.now().plusDays(1), LocalDate.now().plusDays(2), List.of(LoanStatus.ACTIVE, LoanStatus.EXTENDED));
+        verifyNoInteractions(loanRepository, notificationOutboxService);
+    }
+}
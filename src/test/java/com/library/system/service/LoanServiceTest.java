@@ -1,6 +1,8 @@
 package com.library.system.service;
 
 import com.library.system.domain.*;
+import com.library.system.dto.LoanHistoryPage;
+import com.library.system.dto.PatronLoanRow;
 import com.library.system.repository.LoanRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -8,12 +10,19 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -31,6 +40,12 @@ class LoanServiceTest {
     @Mock
     private ReservationService reservationService;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private TransientFailureRetry transientFailureRetry;
+
     @InjectMocks
     private LoanService loanService;
 
@@ -59,18 +74,21 @@ class LoanServiceTest {
         testLoan.setBorrowDate(LocalDate.now());
         testLoan.setDueDate(LocalDate.now().plusDays(14));
         testLoan.setStatus(LoanStatus.ACTIVE);
+
+        lenient().when(transientFailureRetry.inTransaction(any(), any()))
+            .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
     }
 
     @Test
     void borrowBook_Success() {
         // Given
         when(userService.getUserById(1L)).thenReturn(Optional.of(testUser));
-        when(bookService.getBookById(1L)).thenReturn(Optional.of(testBook));
+        when(bookService.getBookByIdForUpdate(1L)).thenReturn(Optional.of(testBook));
         when(loanRepository.findByUserAndBookAndStatus(testUser, testBook, LoanStatus.ACTIVE))
             .thenReturn(Optional.empty());
         when(loanRepository.countActiveLoansByUser(testUser)).thenReturn(0L);
         when(loanRepository.save(any(Loan.class))).thenReturn(testLoan);
-        when(bookService.saveBook(any(Book.class))).thenReturn(testBook);
+        when(bookService.saveBookStatus(any(Book.class))).thenReturn(testBook);
 
         // When
         Loan result = loanService.borrowBook(1L, 1L);
@@ -81,7 +99,42 @@ class LoanServiceTest {
         assertEquals(testBook, result.getBook());
         assertEquals(LoanStatus.ACTIVE, result.getStatus());
         verify(loanRepository).save(any(Loan.class));
-        verify(bookService).saveBook(any(Book.class));
+        verify(bookService).saveBookStatus(any(Book.class));
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof CirculationEvent circulation
+            && circulation.type() == CirculationEventType.LOAN_BORROWED && circulation.bookStatus() == BookStatus.BORROWED));
+    }
+
+    @Test
+    void getLoanHistory_DerivesActiveLoansFromFirstPage() {
+        // Given
+        PatronLoanRow active = new PatronLoanRow(3L, 1L, "Test Book", "Test Author",
+            LocalDate.now().minusDays(2), LocalDate.now().plusDays(12), null, LoanStatus.ACTIVE);
+        PatronLoanRow returned = new PatronLoanRow(2L, 2L, "Older Book", "Test Author",
+            LocalDate.now().minusDays(40), LocalDate.now().minusDays(26), LocalDate.now().minusDays(30), LoanStatus.RETURNED);
+        when(loanRepository.findPatronLoanRows(eq(1L), any()))
+            .thenReturn(new SliceImpl<>(List.of(active, returned), PageRequest.of(0, 5), true));
+
+        // When
+        LoanHistoryPage history = loanService.getLoanHistory(1L, 0);
+
+        // Then
+        assertEquals(List.of(active, returned), history.loans());
+        assertEquals(List.of(active), history.activeLoans());
+        assertTrue(history.hasNext());
+        verify(loanRepository, never()).findByUserFetchBook(any());
+    }
+
+    @Test
+    void getLoanHistory_PageSizeNeverBelowLoanLimit() {
+        // Given
+        when(loanRepository.findPatronLoanRows(eq(1L), any()))
+            .thenReturn(new SliceImpl<>(List.of(), PageRequest.of(2, 5), false));
+
+        // When
+        loanService.getLoanHistory(1L, 2);
+
+        // Then
+        verify(loanRepository).findPatronLoanRows(1L, PageRequest.of(2, 5));
     }
 
     @Test
@@ -97,7 +150,7 @@ class LoanServiceTest {
     void borrowBook_BookNotFound() {
         // Given
         when(userService.getUserById(1L)).thenReturn(Optional.of(testUser));
-        when(bookService.getBookById(1L)).thenReturn(Optional.empty());
+        when(bookService.getBookByIdForUpdate(1L)).thenReturn(Optional.empty());
 
         // When & Then
         assertThrows(RuntimeException.class, () -> loanService.borrowBook(1L, 1L));
@@ -108,7 +161,7 @@ class LoanServiceTest {
         // Given
         testBook.setStatus(BookStatus.BORROWED);
         when(userService.getUserById(1L)).thenReturn(Optional.of(testUser));
-        when(bookService.getBookById(1L)).thenReturn(Optional.of(testBook));
+        when(bookService.getBookByIdForUpdate(1L)).thenReturn(Optional.of(testBook));
 
         // When & Then
         assertThrows(RuntimeException.class, () -> loanService.borrowBook(1L, 1L));
@@ -118,7 +171,7 @@ class LoanServiceTest {
     void borrowBook_UserAlreadyHasBook() {
         // Given
         when(userService.getUserById(1L)).thenReturn(Optional.of(testUser));
-        when(bookService.getBookById(1L)).thenReturn(Optional.of(testBook));
+        when(bookService.getBookByIdForUpdate(1L)).thenReturn(Optional.of(testBook));
         when(loanRepository.findByUserAndBookAndStatus(testUser, testBook, LoanStatus.ACTIVE))
             .thenReturn(Optional.of(testLoan));
 
@@ -130,7 +183,7 @@ class LoanServiceTest {
     void borrowBook_MaxLoansReached() {
         // Given
         when(userService.getUserById(1L)).thenReturn(Optional.of(testUser));
-        when(bookService.getBookById(1L)).thenReturn(Optional.of(testBook));
+        when(bookService.getBookByIdForUpdate(1L)).thenReturn(Optional.of(testBook));
         when(loanRepository.findByUserAndBookAndStatus(testUser, testBook, LoanStatus.ACTIVE))
             .thenReturn(Optional.empty());
         when(loanRepository.countActiveLoansByUser(testUser)).thenReturn(5L);
@@ -144,7 +197,7 @@ class LoanServiceTest {
         // Given
         when(loanRepository.findById(1L)).thenReturn(Optional.of(testLoan));
         when(loanRepository.save(any(Loan.class))).thenReturn(testLoan);
-        when(bookService.saveBook(any(Book.class))).thenReturn(testBook);
+        when(bookService.saveBookStatus(any(Book.class))).thenReturn(testBook);
         when(reservationService.hasActiveReservations(testBook)).thenReturn(false);
 
         // When
@@ -155,7 +208,7 @@ class LoanServiceTest {
         assertEquals(LoanStatus.RETURNED, result.getStatus());
         assertNotNull(result.getReturnDate());
         verify(loanRepository).save(any(Loan.class));
-        verify(bookService).saveBook(any(Book.class));
+        verify(bookService).saveBookStatus(any(Book.class));
         verify(reservationService).hasActiveReservations(testBook);
         verify(reservationService, never()).promoteQueue(any());
     }
@@ -246,7 +299,7 @@ class LoanServiceTest {
         // Given
         when(loanRepository.findById(1L)).thenReturn(Optional.of(testLoan));
         when(loanRepository.save(any(Loan.class))).thenReturn(testLoan);
-        when(bookService.saveBook(any(Book.class))).thenReturn(testBook);
+        when(bookService.saveBookStatus(any(Book.class))).thenReturn(testBook);
         when(reservationService.hasActiveReservations(testBook)).thenReturn(true);
 
         // When
@@ -257,7 +310,7 @@ class LoanServiceTest {
         assertEquals(LoanStatus.RETURNED, result.getStatus());
         verify(reservationService).hasActiveReservations(testBook);
         verify(reservationService).promoteQueue(testBook);
-        verify(bookService).saveBook(any(Book.class));
+        verify(bookService).saveBookStatus(any(Book.class));
     }
 
     @Test
@@ -266,7 +319,7 @@ class LoanServiceTest {
         testLoan.setStatus(LoanStatus.EXTENDED);
         when(loanRepository.findById(1L)).thenReturn(Optional.of(testLoan));
         when(loanRepository.save(any(Loan.class))).thenReturn(testLoan);
-        when(bookService.saveBook(any(Book.class))).thenReturn(testBook);
+        when(bookService.saveBookStatus(any(Book.class))).thenReturn(testBook);
         when(reservationService.hasActiveReservations(testBook)).thenReturn(false);
 
         // When
@@ -0,0 +1,126 @@
+package com.library.system.service;
+
+import com.library.system.domain.LoanStatus;
+import com.library.system.dto.DigestHoldRow;
+import com.library.system.dto.DigestLoanRow;
+import com.library.system.dto.PatronDigest;
+import com.library.system.repository.LoanRepository;
+import com.library.system.repository.ReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationDigestServiceTest {
+
+    private static final List<LoanStatus> STATUSES = List.of(LoanStatus.ACTIVE, LoanStatus.EXTENDED);
+
+    @Mock
+    private LoanRepository loanRepository;
+
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    @Mock
+    private NotificationOutboxService notificationOutboxService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private NotificationDigestService digestService;
+    private LocalDate windowStart;
+    private LocalDate windowEnd;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        digestService = new NotificationDigestService(loanRepository, reservationRepository,
+            notificationOutboxService, transactionManager, true, 10);
+        windowStart = LocalDate.now().plusDays(1);
+        windowEnd = LocalDate.now().plusDays(2);
+    }
+
+    @Test
+    void sendDueSoonDigests_GroupsLoansAndHoldsPerPatron() {
+        // Given
+        when(loanRepository.findDueSoonReminderUserIds(eq(0L), eq(windowStart), eq(windowEnd), eq(STATUSES), any()))
+            .thenReturn(List.of(1L, 2L));
+        when(loanRepository.streamDueSoonDigestRows(List.of(1L, 2L), windowStart, windowEnd, STATUSES))
+            .thenReturn(Stream.of(
+                new DigestLoanRow(10L, 1L, "John Doe", "john@example.com", "Book A", windowStart),
+                new DigestLoanRow(11L, 1L, "John Doe", "john@example.com", "Book B", windowStart),
+                new DigestLoanRow(12L, 1L, "John Doe", "john@example.com", "Book C", windowEnd),
+                new DigestLoanRow(13L, 2L, "Jane Smith", "jane@example.com", "Book D", windowEnd)
+            ));
+        when(reservationRepository.streamPickupDigestRows(eq(List.of(1L, 2L)), any()))
+            .thenReturn(Stream.of(
+                new DigestHoldRow(20L, 2L, "Jane Smith", "jane@example.com", "Book E", LocalDateTime.now().plusHours(20))
+            ));
+        when(reservationRepository.findPickupNoticeUserIds(eq(0L), any(), any())).thenReturn(List.of());
+
+        // When
+        int messages = digestService.sendDueSoonDigests(windowStart, windowEnd, STATUSES);
+
+        // Then
+        assertEquals(2, messages);
+        ArgumentCaptor<PatronDigest> captor = ArgumentCaptor.forClass(PatronDigest.class);
+        verify(notificationOutboxService, times(2)).enqueueDigest(captor.capture());
+        PatronDigest john = captor.getAllValues().get(0);
+        PatronDigest jane = captor.getAllValues().get(1);
+        assertEquals(3, john.loans().size());
+        assertTrue(john.holds().isEmpty());
+        assertEquals(1, jane.loans().size());
+        assertEquals(1, jane.holds().size());
+        verify(loanRepository).markRemindersSent(eq(List.of(10L, 11L, 12L, 13L)), any());
+        verify(reservationRepository).markPickupNoticesSent(eq(List.of(20L)), any());
+    }
+
+    @Test
+    void flushPickupDigests_OneMessagePerPatron() {
+        // Given
+        when(reservationRepository.findPickupNoticeUserIds(eq(0L), any(), any())).thenReturn(List.of(3L));
+        when(reservationRepository.streamPickupDigestRows(eq(List.of(3L)), any()))
+            .thenReturn(Stream.of(
+                new DigestHoldRow(30L, 3L, "Bob Wilson", "bob@example.com", "Book F", LocalDateTime.now().plusHours(5)),
+                new DigestHoldRow(31L, 3L, "Bob Wilson", "bob@example.com", "Book G", LocalDateTime.now().plusHours(6))
+            ));
+
+        // When
+        int messages = digestService.flushPickupDigests();
+
+        // Then
+        assertEquals(1, messages);
+        verify(notificationOutboxService, times(1)).enqueueDigest(argThat(digest -> digest.holds().size() == 2));
+        verify(reservationRepository).markPickupNoticesSent(eq(List.of(30L, 31L)), any());
+        verify(loanRepository, never()).markRemindersSent(anyList(), any());
+    }
+
+    @Test
+    void flushPickupDigests_Disabled_DoesNothing() {
+        // Given
+        NotificationDigestService disabled = new NotificationDigestService(loanRepository, reservationRepository,
+            notificationOutboxService, transactionManager, false, 10);
+        reset(transactionManager);
+
+        // When
+        int messages = disabled.flushPickupDigests();
+
+        // Then
+        assertEquals(0, messages);
+        verifyNoInteractions(reservationRepository, notificationOutboxService);
+    }
+}
@@ -0,0 +1,151 @@
+package com.library.system.service;
+
+import com.library.system.domain.NotificationChannel;
+import com.library.system.domain.OutboxMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationDispatcherTest {
+
+    @Mock
+    private NotificationOutboxService outboxService;
+
+    @Mock
+    private NotificationSender emailSender;
+
+    private NotificationDispatcher dispatcher;
+    private OutboxMessage message;
+
+    @BeforeEach
+    void setUp() {
+        when(emailSender.channel()).thenReturn(NotificationChannel.EMAIL);
+        dispatcher = new NotificationDispatcher(outboxService, List.of(emailSender), new MockEnvironment(),
+            2, 10, 1000, 3, Duration.ofMinutes(5), Duration.ofSeconds(30), Duration.ofMinutes(5));
+
+        message = new OutboxMessage(NotificationChannel.EMAIL, "test@example.com", "Subject", "Body");
+        message.setId(1L);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void deliver_Success_MarksDelivered() {
+        // When
+        dispatcher.deliver(message);
+
+        // Then
+        verify(emailSender).send(message);
+        verify(outboxService).markDelivered(1L);
+        verify(outboxService, never()).markRetry(any(), any(), any());
+    }
+
+    @Test
+    void deliver_Failure_SchedulesRetryWithBackoff() {
+        // Given
+        doThrow(new RuntimeException("relay unavailable")).when(emailSender).send(message);
+        LocalDateTime before = LocalDateTime.now();
+
+        // When
+        dispatcher.deliver(message);
+
+        // Then
+        verify(outboxService).markRetry(eq(1L),
+            argThat(next -> !next.isBefore(before.plusSeconds(30))), eq("relay unavailable"));
+        verify(outboxService, never()).markDelivered(any());
+    }
+
+    @Test
+    void deliver_FailureOnLastAttempt_MarksFailed() {
+        // Given
+        message.setAttempts(2);
+        doThrow(new RuntimeException("relay unavailable")).when(emailSender).send(message);
+
+        // When
+        dispatcher.deliver(message);
+
+        // Then
+        verify(outboxService).markFailed(1L, "relay unavailable");
+        verify(outboxService, never()).markRetry(any(), any(), any());
+    }
+
+    @Test
+    void backoff_DoublesUpToMaximum() {
+        assertEquals(Duration.ofSeconds(30), dispatcher.backoff(1));
+        assertEquals(Duration.ofSeconds(60), dispatcher.backoff(2));
+        assertEquals(Duration.ofSeconds(120), dispatcher.backoff(3));
+        assertEquals(Duration.ofMinutes(5), dispatcher.backoff(10));
+    }
+
+    @Test
+    void dispatchPending_SubmitsDueMessagesToWorkers() {
+        // Given
+        OutboxMessage second = new OutboxMessage(NotificationChannel.EMAIL, "other@example.com", "Subject", "Body");
+        second.setId(2L);
+        when(outboxService.findDispatchable(10)).thenReturn(List.of(message, second));
+        when(outboxService.claim(eq(List.of(1L, 2L)), any(), any())).thenReturn(List.of(message, second));
+
+        // When
+        int submitted = dispatcher.dispatchPending();
+
+        // Then
+        assertEquals(2, submitted);
+        verify(outboxService, times(1)).claim(anyCollection(), any(), any());
+        verify(outboxService, timeout(1000)).markDelivered(1L);
+        verify(outboxService, timeout(1000)).markDelivered(2L);
+    }
+
+    @Test
+    void dispatchPending_MessageClaimedElsewhere_IsSkipped() {
+        // Given
+        OutboxMessage second = new OutboxMessage(NotificationChannel.EMAIL, "other@example.com", "Subject", "Body");
+        second.setId(2L);
+        when(outboxService.findDispatchable(10)).thenReturn(List.of(message, second));
+        when(outboxService.claim(eq(List.of(1L, 2L)), any(), argThat(lease -> lease.isAfter(LocalDateTime.now().plusMinutes(4)))))
+            .thenReturn(List.of(second));
+
+        // When
+        int submitted = dispatcher.dispatchPending();
+
+        // Then
+        assertEquals(1, submitted);
+        verify(outboxService, timeout(1000)).markDelivered(2L);
+        verify(emailSender, never()).send(message);
+    }
+
+    @Test
+    void deliver_UsesTheChannelsOwnRate() throws Exception {
+        // Given
+        NotificationDispatcher throttled = new NotificationDispatcher(outboxService, List.of(emailSender),
+            new MockEnvironment().withProperty("library.notifications.dispatcher.channels.email.rate-per-second", "5"),
+            2, 10, 1000, 3, Duration.ofMinutes(5), Duration.ofSeconds(30), Duration.ofMinutes(5));
+
+        // When
+        long start = System.nanoTime();
+        throttled.deliver(message);
+        throttled.deliver(message);
+        throttled.deliver(message);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        throttled.shutdown();
+
+        // Then
+        assertTrue(elapsedMillis >= 350, "three sends at 5 per second took " + elapsedMillis + "ms");
+        verify(outboxService, times(3)).markDelivered(1L);
+    }
+}
@@ -0,0 +1,109 @@
+package com.library.system.service;
+
+import com.library.system.domain.BookStatus;
+import com.library.system.domain.CirculationEvent;
+import com.library.system.domain.CirculationEventType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageCacheTest {
+
+    private static final String HTML = "text/html;charset=UTF-8";
+
+    private PageCache pageCache;
+
+    @BeforeEach
+    void setUp() {
+        pageCache = new PageCache(new SimpleMeterRegistry(), 10, Duration.ofMinutes(10));
+    }
+
+    @Test
+    void put_StoresCompressedPageWithEtag() {
+        // Given
+        byte[] body = "<html>Effective Java</html>".repeat(50).getBytes(StandardCharsets.UTF_8);
+
+        // When
+        pageCache.put("/books/1", pageCache.generation(), body, HTML, Set.of(1L), false, false);
+        PageCache.CachedPage page = pageCache.get("/books/1").orElseThrow();
+
+        // Then
+        assertArrayEquals(body, page.body());
+        assertTrue(page.gzipped().length < body.length);
+        assertTrue(page.etag().startsWith("\""));
+    }
+
+    @Test
+    void on_LoanEvent_DropsOnlyPagesShowingThatBook() {
+        // Given
+        pageCache.put("/books/1", pageCache.generation(), new byte[]{1}, HTML, Set.of(1L), false, false);
+        pageCache.put("/books/2", pageCache.generation(), new byte[]{2}, HTML, Set.of(2L), false, false);
+        pageCache.put("/search?q=java", pageCache.generation(), new byte[]{3}, HTML, Set.of(1L, 3L), true, false);
+        pageCache.put("/search?q=sql", pageCache.generation(), new byte[]{4}, HTML, Set.of(4L), true, false);
+
+        // When
+        pageCache.on(event(CirculationEventType.LOAN_BORROWED, 1L));
+
+        // Then
+        assertTrue(pageCache.get("/books/1").isEmpty());
+        assertTrue(pageCache.get("/search?q=java").isEmpty());
+        assertTrue(pageCache.get("/books/2").isPresent());
+        assertTrue(pageCache.get("/search?q=sql").isPresent());
+    }
+
+    @Test
+    void on_BookUpdated_AlsoDropsResultLists() {
+        // Given
+        pageCache.put("/books/2", pageCache.generation(), new byte[]{2}, HTML, Set.of(2L), false, false);
+        pageCache.put("/search?q=sql", pageCache.generation(), new byte[]{4}, HTML, Set.of(4L), true, false);
+
+        // When
+        pageCache.on(event(CirculationEventType.BOOK_UPDATED, 9L));
+
+        // Then
+        assertTrue(pageCache.get("/books/2").isPresent());
+        assertTrue(pageCache.get("/search?q=sql").isEmpty());
+    }
+
+    @Test
+    void on_Borrow_KeepsUnrelatedResultLists() {
+        // Given
+        pageCache.put("/search?q=sql", pageCache.generation(), new byte[]{4}, HTML, Set.of(4L), true, false);
+        pageCache.put("/search?q=java", pageCache.generation(), new byte[]{3}, HTML, Set.of(1L, 3L), true, false);
+        pageCache.put("/search?q=java&status=AVAILABLE", pageCache.generation(), new byte[]{5}, HTML, Set.of(3L), true, true);
+
+        // When
+        pageCache.on(event(CirculationEventType.LOAN_BORROWED, 9L));
+        pageCache.on(event(CirculationEventType.BOOK_STATUS_CHANGED, 9L));
+
+        // Then
+        assertTrue(pageCache.get("/search?q=sql").isPresent());
+        assertTrue(pageCache.get("/search?q=java").isPresent());
+        assertTrue(pageCache.get("/search?q=java&status=AVAILABLE").isEmpty());
+    }
+
+    @Test
+    void put_RenderedAcrossAChange_IsNotStored() {
+        // Given
+        long generation = pageCache.generation();
+        pageCache.on(event(CirculationEventType.LOAN_RETURNED, 5L));
+
+        // When
+        pageCache.put("/books/1", generation, new byte[]{1}, HTML, Set.of(1L), false, false);
+
+        // Then
+        assertTrue(pageCache.get("/books/1").isEmpty());
+    }
+
+    private static CirculationEvent event(CirculationEventType type, long bookId) {
+        return new CirculationEvent(type, bookId, 7L, 1L, BookStatus.BORROWED, LocalDate.now(), Instant.now());
+    }
+}
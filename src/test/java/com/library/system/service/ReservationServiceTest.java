@@ -8,11 +8,13 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -24,6 +26,15 @@ class ReservationServiceTest {
     @Mock
     private ReservationRepository reservationRepository;
 
+    @Mock
+    private NotificationOutboxService notificationOutboxService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private TransientFailureRetry transientFailureRetry;
+
     @InjectMocks
     private ReservationService reservationService;
 
@@ -58,6 +69,9 @@ class ReservationServiceTest {
         testReservation.setStatus(ReservationStatus.PENDING);
         testReservation.setQueuePosition(1);
         testReservation.setCreatedAt(LocalDateTime.now());
+
+        lenient().when(transientFailureRetry.inTransaction(any(), any()))
+            .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
     }
 
     @Test
@@ -162,6 +176,7 @@ class ReservationServiceTest {
             reservation.getNotifiedAt() != null &&
             reservation.getExpiresAt() != null
         ));
+        verify(notificationOutboxService).enqueuePickupNotice(firstReservation);
     }
 
     @Test
@@ -175,6 +190,7 @@ class ReservationServiceTest {
 
         // Then
         verify(reservationRepository, never()).save(any());
+        verify(notificationOutboxService, never()).enqueuePickupNotice(any());
     }
 
     @Test
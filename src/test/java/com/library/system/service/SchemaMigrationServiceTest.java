@@ -0,0 +1,86 @@
+package com.library.system.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaMigrationServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private JdbcTemplate jdbcTemplate;
+    private SchemaMigrationService schemaMigrationService;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:sqlite:" + tempDir.resolve("test.db"));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        schemaMigrationService = new SchemaMigrationService(
+            jdbcTemplate, new DataSourceTransactionManager(dataSource), "classpath:db/migration", true);
+
+        // Tables as created by ddl-auto, without any secondary indexes
+        jdbcTemplate.execute("CREATE TABLE users (id integer, active boolean not null, email varchar(255), full_name varchar(255), password varchar(255), role varchar(255), username varchar(255), primary key (id))");
+        jdbcTemplate.execute("CREATE TABLE books (id integer, author varchar(255), description varchar(255), isbn varchar(255), publication_date date, publisher varchar(255), status varchar(255), title varchar(255), primary key (id))");
+        jdbcTemplate.execute("CREATE TABLE loans (id integer, borrow_date date not null, created_at timestamp, due_date date not null, reminder_sent_at timestamp, return_date date, status varchar(255), updated_at timestamp, book_id bigint not null, user_id bigint not null, primary key (id))");
+        jdbcTemplate.execute("CREATE TABLE reservations (id integer, created_at timestamp, expires_at timestamp, notified_at timestamp, queue_position integer, status varchar(255) check (status in ('PENDING','READY_FOR_PICKUP','EXPIRED','CANCELLED','FULFILLED')), book_id bigint not null, user_id bigint not null, pickup_notice_sent_at timestamp, branch varchar(20) default 'MAIN' not null, pickup_branch varchar(20), primary key (id))");
+        jdbcTemplate.execute("CREATE TABLE notification_outbox (id integer, attempts integer not null, body varchar(4000), channel varchar(255) not null, created_at timestamp, delivered_at timestamp, last_error varchar(500), next_attempt_at timestamp not null, recipient varchar(255) not null, status varchar(255) not null, subject varchar(255), primary key (id))");
+    }
+
+    @Test
+    void checkQueryPlans_WithoutIndexes_ReportsScans() {
+        // When
+        List<String> scanning = schemaMigrationService.checkQueryPlans();
+
+        // Then
+        assertTrue(scanning.contains("LoanRepository.countActiveLoansByUser"));
+        assertTrue(scanning.contains("UserRepository.findByUsername"));
+    }
+
+    @Test
+    void migrate_AppliesPendingMigrationsOnce() {
+        // When
+        int first = schemaMigrationService.migrate();
+        int second = schemaMigrationService.migrate();
+
+        // Then
+        assertEquals(3, first);
+        assertEquals(0, second);
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM schema_migrations", Integer.class));
+        assertEquals(1, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND name = 'ux_users_username'", Integer.class));
+    }
+
+    @Test
+    void migrate_RebuildsReservationsToAcceptInTransit() {
+        // Given
+        jdbcTemplate.update("INSERT INTO reservations (id, queue_position, status, book_id, user_id, pickup_branch) VALUES (7, 1, 'PENDING', 3, 4, 'NORTH')");
+
+        // When
+        schemaMigrationService.migrate();
+        jdbcTemplate.update("UPDATE reservations SET status = 'IN_TRANSIT' WHERE id = 7");
+
+        // Then
+        assertEquals("IN_TRANSIT", jdbcTemplate.queryForObject("SELECT status FROM reservations WHERE id = 7", String.class));
+        assertEquals("NORTH", jdbcTemplate.queryForObject("SELECT pickup_branch FROM reservations WHERE id = 7", String.class));
+        assertEquals(1, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND name = 'idx_reservations_user_status'", Integer.class));
+    }
+
+    @Test
+    void migrate_CoversEveryHotQuery() {
+        // When
+        schemaMigrationService.migrate();
+
+        // Then
+        assertEquals(List.of(), schemaMigrationService.checkQueryPlans());
+    }
+}
@@ -0,0 +1,127 @@
+package com.library.system.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqliteMaintenanceServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SqliteMaintenanceService sqliteMaintenanceService;
+    private SingleConnectionDataSource dataSource;
+
+    @BeforeEach
+    void setUp() {
+        String url = "jdbc:sqlite:" + tempDir.resolve("library.db") + "?journal_mode=WAL";
+        // Autocheckpoint off, so the WAL only shrinks when the service checkpoints it
+        dataSource = new SingleConnectionDataSource(url, true);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("PRAGMA wal_autocheckpoint=0");
+        jdbcTemplate.execute("CREATE TABLE books (id integer primary key, title varchar(255))");
+        for (int i = 1; i <= 200; i++) {
+            jdbcTemplate.update("INSERT INTO books (id, title) VALUES (?, ?)", i, "Book " + i);
+        }
+
+        meterRegistry = new SimpleMeterRegistry();
+        sqliteMaintenanceService = new SqliteMaintenanceService(Map.of("MAIN", url), meterRegistry, true, 100);
+    }
+
+    @Test
+    void checkpoint_CopiesWalIntoDatabaseAndRecordsLatency() {
+        // When
+        sqliteMaintenanceService.checkpoint();
+
+        // Then
+        assertTrue(meterRegistry.get("library.sqlite.wal.frames").gauge().value() > 0);
+        assertEquals(0.0, meterRegistry.get("library.sqlite.wal.uncheckpointed.frames").gauge().value());
+        assertEquals(1L, meterRegistry.get("library.sqlite.checkpoint.duration").tag("mode", "passive").timer().count());
+    }
+
+    @Test
+    void maintain_TruncatesWal() {
+        // Given
+        assertTrue(sqliteMaintenanceService.walSizeBytes() > 0);
+
+        // When
+        sqliteMaintenanceService.maintain();
+
+        // Then
+        assertEquals(0L, sqliteMaintenanceService.walSizeBytes());
+        assertTrue(meterRegistry.get("library.sqlite.page.count").gauge().value() > 0);
+    }
+
+    @Test
+    void maintain_ConvertsExistingFileSoLaterRunsFreePages() {
+        // Given
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        assertEquals(0, jdbcTemplate.queryForObject("PRAGMA auto_vacuum", Integer.class));
+
+        // When
+        sqliteMaintenanceService.maintain();
+        jdbcTemplate.update("DELETE FROM books");
+        sqliteMaintenanceService.maintain();
+
+        // Then
+        assertEquals(2, jdbcTemplate.queryForObject("PRAGMA auto_vacuum", Integer.class));
+        assertEquals(0.0, meterRegistry.get("library.sqlite.freelist.count").gauge().value());
+    }
+
+    @Test
+    void maintain_IncrementalVacuumDisabled_LeavesTheFileAlone() {
+        // Given
+        SqliteMaintenanceService disabled = new SqliteMaintenanceService(
+            Map.of("MAIN", "jdbc:sqlite:" + tempDir.resolve("library.db") + "?journal_mode=WAL"), new SimpleMeterRegistry(), false, 100);
+
+        // When
+        disabled.maintain();
+
+        // Then
+        assertEquals(0, new JdbcTemplate(dataSource).queryForObject("PRAGMA auto_vacuum", Integer.class));
+    }
+
+    @Test
+    void checkpoint_WithShards_CheckpointsEveryBranch() {
+        // Given
+        String northUrl = "jdbc:sqlite:" + tempDir.resolve("library-north.db") + "?journal_mode=WAL";
+        SingleConnectionDataSource north = new SingleConnectionDataSource(northUrl, true);
+        JdbcTemplate northTemplate = new JdbcTemplate(north);
+        northTemplate.execute("PRAGMA wal_autocheckpoint=0");
+        northTemplate.execute("CREATE TABLE loans (id integer primary key, note varchar(255))");
+        northTemplate.update("INSERT INTO loans (id, note) VALUES (1, 'north')");
+        Map<String, String> urls = new LinkedHashMap<>();
+        urls.put("MAIN", "jdbc:sqlite:" + tempDir.resolve("library.db") + "?journal_mode=WAL");
+        urls.put("NORTH", northUrl);
+        SimpleMeterRegistry shardedRegistry = new SimpleMeterRegistry();
+        SqliteMaintenanceService sharded = new SqliteMaintenanceService(urls, shardedRegistry, true, 100);
+
+        // When
+        sharded.maintain();
+
+        // Then
+        assertEquals(0L, sharded.walSizeBytes());
+        assertTrue(shardedRegistry.get("library.sqlite.page.count").tag("branch", "MAIN").gauge().value() > 0);
+        assertTrue(shardedRegistry.get("library.sqlite.page.count").tag("branch", "NORTH").gauge().value() > 0);
+        assertEquals(2L, shardedRegistry.get("library.sqlite.checkpoint.duration").tag("mode", "truncate").timer().count());
+        north.destroy();
+    }
+
+    @Test
+    void databaseFile_StripsPrefixAndParameters() {
+        assertEquals("/app/data/library.db", SqliteMaintenanceService.databaseFile("jdbc:sqlite:/app/data/library.db"));
+        assertEquals("library.db", SqliteMaintenanceService.databaseFile("jdbc:sqlite:library.db?busy_timeout=5000&journal_mode=WAL"));
+        assertNull(SqliteMaintenanceService.databaseFile("jdbc:sqlite::memory:"));
+        assertNull(SqliteMaintenanceService.databaseFile("jdbc:h2:mem:library"));
+    }
+}
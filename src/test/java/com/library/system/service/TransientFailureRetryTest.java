@@ -0,0 +1,70 @@
+package com.library.system.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransientFailureRetryTest {
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private TransientFailureRetry transientFailureRetry;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        transientFailureRetry = new TransientFailureRetry(transactionManager, 3, 1);
+    }
+
+    @Test
+    void inTransaction_RetriesLockConflictInNewTransaction() {
+        // Given
+        AtomicInteger attempts = new AtomicInteger();
+
+        // When
+        String result = transientFailureRetry.inTransaction("test", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new CannotAcquireLockException("database is locked");
+            }
+            return "done";
+        });
+
+        // Then
+        assertEquals("done", result);
+        verify(transactionManager, times(3)).getTransaction(any());
+        verify(transactionManager, times(2)).rollback(any());
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    void inTransaction_GivesUpAfterMaxAttempts() {
+        // When / Then
+        assertThrows(CannotAcquireLockException.class, () -> transientFailureRetry.inTransaction("test", () -> {
+            throw new CannotAcquireLockException("database is locked");
+        }));
+        verify(transactionManager, times(3)).getTransaction(any());
+    }
+
+    @Test
+    void inTransaction_DoesNotRetryPermanentFailures() {
+        // When / Then
+        assertThrows(DataIntegrityViolationException.class, () -> transientFailureRetry.inTransaction("test", () -> {
+            throw new DataIntegrityViolationException("duplicate key");
+        }));
+        verify(transactionManager, times(1)).getTransaction(any());
+    }
+}
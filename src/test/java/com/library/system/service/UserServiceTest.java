@@ -1,5 +1,6 @@
 package com.library.system.service;
 
+import com.library.system.config.CustomUserDetailsService;
 import com.library.system.domain.User;
 import com.library.system.domain.UserRole;
 import com.library.system.repository.UserRepository;
@@ -27,6 +28,12 @@ class UserServiceTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    @Mock
+    private BranchShardService branchShardService;
+
+    @Mock
+    private CustomUserDetailsService userDetailsService;
+
     @InjectMocks
     private UserService userService;
 
@@ -123,6 +130,7 @@ class UserServiceTest {
         // Then
         assertEquals(testUser, result);
         verify(userRepository).save(testUser);
+        verify(userDetailsService).invalidate(1L, "testuser");
     }
 
     @Test
@@ -132,6 +140,7 @@ class UserServiceTest {
 
         // Then
         verify(userRepository).deleteById(1L);
+        verify(userDetailsService).invalidate(1L, null);
     }
 
     @Test
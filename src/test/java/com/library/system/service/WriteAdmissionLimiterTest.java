@@ -0,0 +1,94 @@
+package com.library.system.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAdmissionLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(2);
+
+    private SimpleMeterRegistry meterRegistry;
+    private WriteAdmissionLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        limiter = new WriteAdmissionLimiter(meterRegistry, true, 4, 1, 8, Duration.ofMillis(500), 0.5);
+    }
+
+    @Test
+    void tryAcquire_OverLimit_RejectsAndCounts() {
+        // Given
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+
+        // When
+        boolean admitted = limiter.tryAcquire();
+
+        // Then
+        assertFalse(admitted);
+        assertEquals(4, limiter.getInFlight());
+        assertEquals(1.0, meterRegistry.get("library.admission.requests").tag("outcome", "rejected").counter().count());
+    }
+
+    @Test
+    void release_SlowWrites_ShrinkLimitDownToMinimum() {
+        // When
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire();
+            limiter.release(SLOW);
+        }
+
+        // Then
+        assertEquals(1, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void release_FastWritesUnderLoad_GrowLimitUpToMaximum() {
+        // Given
+        for (int i = 0; i < 4; i++) {
+            limiter.tryAcquire();
+        }
+
+        // When
+        for (int i = 0; i < 10; i++) {
+            limiter.release(FAST);
+            limiter.tryAcquire();
+        }
+
+        // Then
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    void release_FastWritesWhileIdle_KeepLimit() {
+        // When
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire();
+            limiter.release(FAST);
+        }
+
+        // Then
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    void tryAcquire_Disabled_AlwaysAdmits() {
+        // Given
+        limiter = new WriteAdmissionLimiter(meterRegistry, false, 1, 1, 1, Duration.ofMillis(500), 0.5);
+
+        // When / Then
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+    }
+}